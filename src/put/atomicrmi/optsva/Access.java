@@ -24,10 +24,26 @@ public @interface Access {
 	 * from an object means using methods annotated as reads. Only objects in
 	 * ANY mode can use methods which are neither reads or writes.
 	 * 
+	 * <p>
+	 * COMMUTATIVE mode means objects are only modified by methods annotated
+	 * with {@link Commutative}. Such methods are logged and applied when the
+	 * transaction commits, so the transaction does not wait for other
+	 * transactions to release the object. Commutative methods are writes in
+	 * the other modes.
+	 * 
+	 * <p>
+	 * SNAPSHOT mode means objects are only read, from the versions committed
+	 * before the transaction started, so the transaction neither takes a
+	 * version of the object nor waits for other transactions. Only objects
+	 * annotated with {@link put.atomicrmi.optsva.Versioned} can be read in
+	 * this mode. The versions read from objects placed on the same node are
+	 * consistent with one another, but objects placed on different nodes may
+	 * be read as of different points in time.
+	 * 
 	 * @author Konrad Siek
 	 */
 	public enum Mode {
-		READ_ONLY, WRITE_ONLY, ANY
+		READ_ONLY, WRITE_ONLY, ANY, COMMUTATIVE, SNAPSHOT
 	}
 
 	/**
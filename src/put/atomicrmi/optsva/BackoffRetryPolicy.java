@@ -0,0 +1,137 @@
+package put.atomicrmi.optsva;
+
+import java.rmi.RemoteException;
+import java.util.Random;
+
+/**
+ * A {@link RetryPolicy} with exponential backoff. The delay before each
+ * subsequent attempt is doubled, up to a given maximum, and a random part of
+ * it (up to a half) is dropped, so that transactions that aborted each other
+ * do not restart at the same time again.
+ * 
+ * Aborts are caused by contention and failures are caused by the system, so
+ * there are separate limits on the number of each. The policy also gives up
+ * once the deadline since the first attempt passes.
+ */
+public class BackoffRetryPolicy implements RetryPolicy {
+
+	/**
+	 * Value of a limit or a deadline meaning that there is none.
+	 */
+	public static final int UNLIMITED = 0;
+
+	/**
+	 * Delay before the first re-execution (ms).
+	 */
+	private final long initialDelay;
+
+	/**
+	 * Upper bound on a delay (ms).
+	 */
+	private final long maxDelay;
+
+	/**
+	 * Number of aborts after which the policy gives up.
+	 */
+	private final int maxAborts;
+
+	/**
+	 * Number of failures after which the policy gives up.
+	 */
+	private final int maxFailures;
+
+	/**
+	 * Time since the first attempt after which the policy gives up (ms).
+	 */
+	private final long deadline;
+
+	/**
+	 * Source of jitter.
+	 */
+	private final Random random;
+
+	/**
+	 * Creates the default policy. The delays start at 1ms and grow up to
+	 * 100ms. Aborted transactions are always re-executed, and the policy
+	 * gives up after 5 failures.
+	 */
+	public BackoffRetryPolicy() {
+		this(1, 100, UNLIMITED, 5, UNLIMITED);
+	}
+
+	/**
+	 * Creates the policy.
+	 * 
+	 * @param initialDelay
+	 *            delay before the first re-execution (ms).
+	 * @param maxDelay
+	 *            upper bound on a delay (ms).
+	 * @param maxAborts
+	 *            number of aborts after which the policy gives up, or
+	 *            {@link #UNLIMITED}.
+	 * @param maxFailures
+	 *            number of failures after which the policy gives up, or
+	 *            {@link #UNLIMITED}.
+	 * @param deadline
+	 *            time since the first attempt after which the policy gives up
+	 *            (ms), or {@link #UNLIMITED}.
+	 */
+	public BackoffRetryPolicy(long initialDelay, long maxDelay, int maxAborts, int maxFailures, long deadline) {
+		this(initialDelay, maxDelay, maxAborts, maxFailures, deadline, new Random());
+	}
+
+	/**
+	 * Creates the policy with the given source of jitter.
+	 * 
+	 * @param initialDelay
+	 *            delay before the first re-execution (ms).
+	 * @param maxDelay
+	 *            upper bound on a delay (ms).
+	 * @param maxAborts
+	 *            number of aborts after which the policy gives up, or
+	 *            {@link #UNLIMITED}.
+	 * @param maxFailures
+	 *            number of failures after which the policy gives up, or
+	 *            {@link #UNLIMITED}.
+	 * @param deadline
+	 *            time since the first attempt after which the policy gives up
+	 *            (ms), or {@link #UNLIMITED}.
+	 * @param random
+	 *            source of jitter, shared by the transactions using the
+	 *            policy.
+	 */
+	public BackoffRetryPolicy(long initialDelay, long maxDelay, int maxAborts, int maxFailures, long deadline,
+			Random random) {
+		this.initialDelay = initialDelay;
+		this.maxDelay = maxDelay;
+		this.maxAborts = maxAborts;
+		this.maxFailures = maxFailures;
+		this.deadline = deadline;
+		this.random = random;
+	}
+
+	public long backoff(RemoteException cause, int aborts, int failures, long elapsed) {
+		if (maxAborts != UNLIMITED && aborts >= maxAborts)
+			return GIVE_UP;
+
+		if (maxFailures != UNLIMITED && failures >= maxFailures)
+			return GIVE_UP;
+
+		if (deadline != UNLIMITED && elapsed >= deadline)
+			return GIVE_UP;
+
+		long delay = initialDelay;
+		for (int i = 1; i < aborts + failures && delay < maxDelay; i++)
+			delay *= 2;
+		delay = Math.min(delay, maxDelay);
+
+		/** Equal jitter: keep the first half, randomize the second one. */
+		long half = delay / 2;
+		delay = half + (long) (random.nextDouble() * (delay - half + 1));
+
+		if (deadline != UNLIMITED)
+			delay = Math.min(delay, deadline - elapsed);
+
+		return delay;
+	}
+}
@@ -0,0 +1,31 @@
+package put.atomicrmi.optsva;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a write method whose invocations commute with each other and with the
+ * invocations of the other commutative methods of the object, like adding to
+ * a counter. The result of such a method is never returned to the caller.
+ * 
+ * <p>
+ * A transaction that accesses an object in {@link Access.Mode#COMMUTATIVE}
+ * mode only logs the invocations of commutative methods and applies them when
+ * it commits. Such a transaction does not wait for the transactions that
+ * read or write the object while it executes, does not abort them and is not
+ * aborted by them. At commit, the logged invocations are applied once the
+ * transactions that took versions of the object earlier are finished. A
+ * transaction that accesses all its objects in this mode takes their versions
+ * when it commits, otherwise when it starts.
+ * 
+ * <p>
+ * If the effects of the invocations have to be bounded (e.g. a counter must
+ * not drop below zero), the object can implement {@link Escrow}. The
+ * annotation has to be placed on the method of the remote interface.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Commutative {
+}
@@ -0,0 +1,48 @@
+package put.atomicrmi.optsva;
+
+import java.lang.reflect.Method;
+
+/**
+ * Bounds checks for invocations of {@link Commutative} methods of a remote
+ * object. Commutative invocations are applied only when their transactions
+ * commit, so checking the state of the object when a method is called is not
+ * enough: other transactions may commit their invocations in the meantime.
+ * Instead, a remote object implementing this interface reserves the effect of
+ * every commutative invocation when it is called, and rejects invocations for
+ * which there is not enough left, in the manner of escrow transactions.
+ * 
+ * <p>
+ * Reservations are made and released concurrently by many transactions, so
+ * implementations must be thread safe. Reservations must not be kept in fields
+ * that are restored from snapshots, because other transactions can restore the
+ * object at any time; final fields (e.g. of type
+ * {@link java.util.concurrent.atomic.AtomicLong}) are never restored. The
+ * bounds only hold with respect to commutative invocations, so they can be
+ * broken by transactions writing to the object in other modes.
+ */
+public interface Escrow {
+
+	/**
+	 * Reserves the effect of a commutative invocation. Called when the
+	 * invocation is logged.
+	 * 
+	 * @param method
+	 *            method of the remote interface.
+	 * @param args
+	 *            arguments of the invocation.
+	 * @return <code>true</code> if the effect was reserved, or
+	 *         <code>false</code> if the invocation has to be rejected.
+	 */
+	boolean reserve(Method method, Object[] args);
+
+	/**
+	 * Releases the reservation of a commutative invocation. Called after the
+	 * invocation was applied at commit, or when the transaction rolls back.
+	 * 
+	 * @param method
+	 *            method of the remote interface.
+	 * @param args
+	 *            arguments of the invocation.
+	 */
+	void release(Method method, Object[] args);
+}
@@ -0,0 +1,20 @@
+package put.atomicrmi.optsva;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Gives the transaction lock of the annotated remote object to waiting
+ * transactions in the order in which they came (see
+ * {@link put.atomicrmi.optsva.sync.TransactionLock}). By default the lock can
+ * be taken by any transaction when it is free, which gives more throughput but
+ * can keep a transaction waiting indefinitely on a heavily contended object.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Inherited
+public @interface FairLock {
+}
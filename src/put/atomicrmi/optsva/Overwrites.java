@@ -0,0 +1,23 @@
+package put.atomicrmi.optsva;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a write method whose invocation makes all earlier invocations of the
+ * same method redundant, like a setter of a field. When such a method is
+ * called several times before the writes of a transaction are applied to the
+ * remote object, only the last call is applied.
+ * 
+ * <p>
+ * Earlier calls are dropped, not moved, so the method may be annotated only if
+ * the other write methods of the object do not depend on the state that it
+ * overwrites. The annotation has to be placed on the method of the remote
+ * interface.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Overwrites {
+}
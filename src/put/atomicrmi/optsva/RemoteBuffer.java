@@ -0,0 +1,21 @@
+package put.atomicrmi.optsva;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Keeps the buffers of the annotated remote object on its node. By default,
+ * when a transaction accesses a remote object in read-only mode, the copy of
+ * the object made for the transaction is sent to the client by value, so that
+ * every read is executed locally. Objects that are too large to be
+ * transferred, or that cannot be serialized, should be annotated, so that
+ * every read is a remote invocation of the copy instead.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Inherited
+public @interface RemoteBuffer {
+}
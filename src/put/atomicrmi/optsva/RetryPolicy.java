@@ -0,0 +1,40 @@
+package put.atomicrmi.optsva;
+
+import java.rmi.RemoteException;
+
+/**
+ * Decides whether and when a transaction executed by
+ * {@link Transaction#start(Transactional)} is re-executed after an
+ * unsuccessful attempt. An attempt is unsuccessful either because it was
+ * aborted (the transaction called {@link Transaction#retry()} or a rollback
+ * was forced) or because of a failure (any other {@link RemoteException}).
+ * 
+ * A single policy can be shared by many transactions, so implementations
+ * must be thread safe.
+ */
+public interface RetryPolicy {
+
+	/**
+	 * Value returned by {@link #backoff(RemoteException, int, int, long)} when
+	 * the transaction should not be re-executed anymore.
+	 */
+	public static final long GIVE_UP = -1;
+
+	/**
+	 * Determines how long to wait before the next attempt to execute a
+	 * transaction.
+	 * 
+	 * @param cause
+	 *            exception that ended the last attempt.
+	 * @param aborts
+	 *            number of attempts aborted so far, including the last one.
+	 * @param failures
+	 *            number of attempts that failed so far, including the last
+	 *            one.
+	 * @param elapsed
+	 *            time in milliseconds since the first attempt started.
+	 * @return time in milliseconds to wait before the next attempt, or
+	 *         {@link #GIVE_UP} if the transaction should not be re-executed.
+	 */
+	long backoff(RemoteException cause, int aborts, int failures, long elapsed);
+}
@@ -28,10 +28,20 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 
 import put.atomicrmi.optsva.Access.Mode;
 import put.atomicrmi.optsva.objects.ObjectProxy;
+import put.atomicrmi.optsva.objects.ObjectProxyHandler;
+import put.atomicrmi.optsva.objects.TransactionalNode;
+import put.atomicrmi.optsva.objects.TransactionalUnicastRemoteObject;
+import put.atomicrmi.optsva.sync.AsyncExecutor;
 import put.atomicrmi.optsva.sync.Heartbeat;
+import put.atomicrmi.optsva.sync.ProxyExecutor;
+import put.util.ids.IdGenerators;
 
 /**
  * The main class for controlling transaction life time. Provides methods to
@@ -83,7 +93,7 @@ public class Transaction extends UnicastRemoteObject implements TransactionRef {
 	protected State state;
 
 	/**
-	 * Randomly generated transaction unique identifier.
+	 * Transaction unique identifier (see {@link IdGenerators}).
 	 */
 	protected final UUID id;
 
@@ -92,6 +102,38 @@ public class Transaction extends UnicastRemoteObject implements TransactionRef {
 	 */
 	protected final List<ObjectProxy> proxies;
 
+	/**
+	 * Retry policy used by transactions unless a different one is set.
+	 */
+	private static final RetryPolicy defaultRetryPolicy = new BackoffRetryPolicy();
+
+	/**
+	 * Policy deciding when {@link #start(Transactional)} re-executes the
+	 * transaction. If <code>null</code> then the default policy is used.
+	 */
+	private RetryPolicy retryPolicy;
+
+	/**
+	 * Executes the asynchronous operations of this transaction in order.
+	 * Created when the first asynchronous operation is submitted.
+	 */
+	private AsyncExecutor async;
+
+	/**
+	 * Number of attempts made by the last {@link #start(Transactional)}.
+	 */
+	private int attempts;
+
+	/**
+	 * Number of aborted attempts made by the last {@link #start(Transactional)}.
+	 */
+	private int aborts;
+
+	/**
+	 * Number of failed attempts made by the last {@link #start(Transactional)}.
+	 */
+	private int failures;
+
 	/**
 	 * Creates new transaction. The required argument is a JavaRMI registry
 	 * instance. It is used to obtain global lock instance.
@@ -105,14 +147,14 @@ public class Transaction extends UnicastRemoteObject implements TransactionRef {
 	 */
 	public Transaction() throws RemoteException {
 		state = State.PREPARING;
-		id = UUID.randomUUID();
+		id = IdGenerators.next();
 
 		Heartbeat.thread.register(id);
 		proxies = new ArrayList<ObjectProxy>();
 	}
 
 	/**
-	 * Gives the transaction randomly generated unique identifier.
+	 * Gives the transaction unique identifier.
 	 * 
 	 * @return transaction unique identifier.
 	 */
@@ -120,6 +162,71 @@ public class Transaction extends UnicastRemoteObject implements TransactionRef {
 		return id;
 	}
 
+	/**
+	 * Gives the policy deciding when {@link #start(Transactional)} re-executes
+	 * the transaction.
+	 * 
+	 * @return retry policy.
+	 */
+	public RetryPolicy getRetryPolicy() {
+		return retryPolicy == null ? defaultRetryPolicy : retryPolicy;
+	}
+
+	/**
+	 * Sets the policy deciding when {@link #start(Transactional)} re-executes
+	 * the transaction. By default a {@link BackoffRetryPolicy} is used.
+	 * 
+	 * @param retryPolicy
+	 *            retry policy.
+	 */
+	public void setRetryPolicy(RetryPolicy retryPolicy) {
+		this.retryPolicy = retryPolicy;
+	}
+
+	/**
+	 * Sets the executor that runs the asynchronous operations of this
+	 * transaction, such as {@link #startAsync()} or {@link #commitAsync()}. By
+	 * default they are run by a pool of threads shared by all transactions.
+	 * The operations of this transaction are run one at a time regardless of
+	 * the executor.
+	 * 
+	 * @param executor
+	 *            executor running asynchronous operations.
+	 */
+	public synchronized void setExecutor(Executor executor) {
+		async = new AsyncExecutor(executor);
+	}
+
+	/**
+	 * Gives the number of times the transaction was executed by the last call
+	 * to {@link #start(Transactional)}, including the last execution.
+	 * 
+	 * @return number of attempts.
+	 */
+	public int getAttempts() {
+		return attempts;
+	}
+
+	/**
+	 * Gives the number of executions of the transaction that were aborted
+	 * during the last call to {@link #start(Transactional)}.
+	 * 
+	 * @return number of aborted attempts.
+	 */
+	public int getAborts() {
+		return aborts;
+	}
+
+	/**
+	 * Gives the number of executions of the transaction that failed due to a
+	 * remote exception during the last call to {@link #start(Transactional)}.
+	 * 
+	 * @return number of failed attempts.
+	 */
+	public int getFailures() {
+		return failures;
+	}
+
 	/**
 	 * Gives the current transaction state.
 	 * 
@@ -262,6 +369,82 @@ public class Transaction extends UnicastRemoteObject implements TransactionRef {
 		return accesses(obj, calls, 0L, calls, Mode.WRITE_ONLY);
 	}
 
+	/**
+	 * Adds given remote object to the list of accessed remote objects with
+	 * infinite upper bound on number of this object invocations. The object
+	 * will only be modified by {@link Commutative} methods.
+	 * 
+	 * @param obj
+	 *            remote object accessed by transaction.
+	 * @return given remote object wrapped by special object proxy that monitors
+	 *         object access.
+	 * @throws TransactionException
+	 *             when remote exception occurs during initialization of object
+	 *             proxy.
+	 */
+	public <T> T commutes(T obj) throws TransactionException {
+		return accesses(obj, INF, 0L, INF, Mode.COMMUTATIVE);
+	}
+
+	/**
+	 * Adds given remote object to the list of accessed remote objects with the
+	 * given upper bound on number of this object invocations. The object will
+	 * only be modified by {@link Commutative} methods.
+	 * 
+	 * @param obj
+	 *            remote object accessed by transaction.
+	 * @param calls
+	 *            the maximum number of time this object will be accessed within
+	 *            the transaction
+	 * @return given remote object wrapped by special object proxy that monitors
+	 *         object access.
+	 * @throws TransactionException
+	 *             when remote exception occurs during initialization of object
+	 *             proxy.
+	 */
+	public <T> T commutes(T obj, int calls) throws TransactionException {
+		return accesses(obj, calls, 0L, calls, Mode.COMMUTATIVE);
+	}
+
+	/**
+	 * Adds given remote object to the list of accessed remote objects with
+	 * infinite upper bound on number of this object invocations. The object
+	 * will only be read from, as of the versions committed before the
+	 * transaction started. The object must be annotated with {@link Versioned}.
+	 * 
+	 * @param obj
+	 *            remote object accessed by transaction.
+	 * @return given remote object wrapped by special object proxy that monitors
+	 *         object access.
+	 * @throws TransactionException
+	 *             when remote exception occurs during initialization of object
+	 *             proxy.
+	 */
+	public <T> T snapshots(T obj) throws TransactionException {
+		return accesses(obj, INF, INF, 0L, Mode.SNAPSHOT);
+	}
+
+	/**
+	 * Adds given remote object to the list of accessed remote objects with the
+	 * given upper bound on number of this object invocations. The object will
+	 * only be read from, as of the versions committed before the transaction
+	 * started. The object must be annotated with {@link Versioned}.
+	 * 
+	 * @param obj
+	 *            remote object accessed by transaction.
+	 * @param calls
+	 *            the maximum number of time this object will be accessed within
+	 *            the transaction
+	 * @return given remote object wrapped by special object proxy that monitors
+	 *         object access.
+	 * @throws TransactionException
+	 *             when remote exception occurs during initialization of object
+	 *             proxy.
+	 */
+	public <T> T snapshots(T obj, int calls) throws TransactionException {
+		return accesses(obj, calls, calls, 0L, Mode.SNAPSHOT);
+	}
+
 	/**
 	 * Adds given remote object to the list of accessed remote objects with
 	 * given upper bound on number of this object invocations. The object is
@@ -295,6 +478,10 @@ public class Transaction extends UnicastRemoteObject implements TransactionRef {
 	 * execution only this proxy must be used to guarantee atomicity and
 	 * isolation properties.
 	 * 
+	 * If the remote object is placed in the same JVM as the transaction, the
+	 * object proxy is not exported and both the proxy and the object are
+	 * invoked directly instead of through RMI.
+	 * 
 	 * @param obj
 	 *            remote object accessed by transaction.
 	 * @param calls
@@ -330,8 +517,9 @@ public class Transaction extends UnicastRemoteObject implements TransactionRef {
 			throw new TransactionException("Object access information can be added only in preparation state.");
 
 		try {
-			TransactionalRemoteObject remote = (TransactionalRemoteObject) obj;
+			TransactionalRemoteObject remote = TransactionalUnicastRemoteObject.getLocal((TransactionalRemoteObject) obj);
 			ObjectProxy proxy = (ObjectProxy) remote.createProxy(this, id, allCalls, reads, writes, mode);
+			ObjectProxyHandler.getHandler(proxy).setAccess(mode, allCalls, writes);
 			proxies.add(proxy);
 
 			Heartbeat.thread.addFailureMonitor(id, remote.getFailureMonitor());
@@ -352,16 +540,27 @@ public class Transaction extends UnicastRemoteObject implements TransactionRef {
 	 * If no commit or roll-back operation is performed by the transaction then
 	 * commit action is assumed by default.
 	 * 
+	 * Whether the transaction is re-executed, and after how long, is decided
+	 * by the {@link RetryPolicy} of this transaction.
+	 * 
 	 * @param transaction
 	 *            implementation of a transaction method.
 	 * @throws TransactionException
-	 *             when execution of a transaction was unsuccessful after
-	 *             multiple retries.
+	 *             when execution of a transaction was unsuccessful and the
+	 *             retry policy gave up.
 	 */
 	public void start(Transactional transaction) throws TransactionException {
-		int restartsByFailure = 0;
+		long began = System.currentTimeMillis();
+
+		attempts = 0;
+		aborts = 0;
+		failures = 0;
 
 		while (true) {
+			RemoteException cause;
+			boolean aborted;
+
+			attempts++;
 			try {
 				try {
 					start();
@@ -371,27 +570,50 @@ public class Transaction extends UnicastRemoteObject implements TransactionRef {
 					if (getState() == State.RUNNING)
 						commit();
 
-					break;
+					return;
 
 				} catch (RetryCalledException e) {
+					cause = e;
 					rollback();
 				} catch (RollbackForcedException e) {
 					// Transaction already aborted no abort required.
+					cause = e;
 				}
 
+				aborts++;
+				aborted = true;
+
 			} catch (RemoteException e) {
 				/**
 				 * Retry caused by system failure. This situation should be
 				 * monitored and handled separately.
 				 */
-				System.err.println(e.getMessage());
-				e.printStackTrace();
-				if (++restartsByFailure == 5)
-					throw new TransactionException("Fatal error after multiple restarts of transaction.");
-				rollback();
+				cause = e;
+				failures++;
+				aborted = false;
+			}
+
+			long delay = getRetryPolicy().backoff(cause, aborts, failures, System.currentTimeMillis() - began);
+			if (delay == RetryPolicy.GIVE_UP) {
+				if (aborted)
+					throw new TransactionException("Transaction gave up after " + attempts + " attempts.", cause);
+				throw new TransactionException("Fatal error after multiple restarts of transaction.", cause);
 			}
 
+			/** A transaction that could not be started has nothing to roll back. */
+			if (!aborted && state == State.RUNNING)
+				rollback();
+
 			state = State.PREPARING;
+
+			if (delay > 0) {
+				try {
+					Thread.sleep(delay);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new TransactionException("Interrupted while waiting to restart transaction.", e);
+				}
+			}
 		}
 	}
 
@@ -405,26 +627,147 @@ public class Transaction extends UnicastRemoteObject implements TransactionRef {
 	 */
 	public void start() throws TransactionException {
 		try {
+			/** Transactions that only commute take their versions at commit. */
+			if (commutesOnly())
+				deferProxies();
+			else
+				startProxies();
+		} catch (RemoteException e) {
+			throw new TransactionException("Unable to initialize transaction.", e);
+		}
 
-			Collections.sort(proxies, comparator);
+		setState(State.RUNNING);
 
-			for (ObjectProxy proxy : proxies) {
-				proxy.lock();
-			}
+		for (ObjectProxy proxy : proxies)
+			ObjectProxyHandler.getHandler(proxy).start();
+	}
 
-			for (ObjectProxy proxy : proxies) {
-				proxy.startTransaction();
-			}
+	/**
+	 * Locks the accessed object proxies, notifies them that the transaction is
+	 * starting and unlocks them again. Proxies are locked in the global order
+	 * given by {@link #comparator}, which keeps the proxies placed on the same
+	 * node next to each other. All proxies of a node are then handled by a
+	 * single call to that node.
+	 * 
+	 * The locks of each node are kept until the transaction is started on
+	 * every node, so the remote objects are versioned consistently. If it
+	 * cannot be started on some node, the nodes where it was started are
+	 * unlocked and their proxies are finished as rolled back before the
+	 * failure is reported, so that the versions taken are released.
+	 * 
+	 * @throws RemoteException
+	 *             when remote error during transaction initialization occurs.
+	 */
+	protected void startProxies() throws RemoteException {
+		List<TransactionalNode> nodes = new ArrayList<TransactionalNode>();
+		List<long[]> handles = new ArrayList<long[]>();
+		groupProxies(nodes, handles);
 
-			for (ObjectProxy proxy : proxies) {
-				proxy.unlock();
+		/** The last node can be unlocked straight away. */
+		int last = nodes.size() - 1;
+		for (int i = 0; i <= last; i++) {
+			try {
+				nodes.get(i).startTransaction(handles.get(i), i == last);
+			} catch (RemoteException e) {
+				int started = 0;
+				for (int j = 0; j < i; j++) {
+					started += handles.get(j).length;
+					try {
+						nodes.get(j).unlock(handles.get(j));
+					} catch (RemoteException f) {
+						// Report the original failure.
+					}
+				}
+				abandonProxies(proxies.subList(0, started));
+				throw e;
 			}
+		}
 
-		} catch (RemoteException e) {
-			throw new TransactionException("Unable to initialize transaction.", e);
+		for (int i = 0; i < last; i++)
+			nodes.get(i).unlock(handles.get(i));
+	}
+
+	/**
+	 * Finishes the given object proxies of a transaction that could not be
+	 * started as rolled back, so that other transactions do not wait for the
+	 * versions taken by them. The proxies are finished concurrently and their
+	 * failures are ignored.
+	 * 
+	 * @param started
+	 *            proxies that took versions of their objects.
+	 */
+	private void abandonProxies(List<ObjectProxy> started) {
+		List<Callable<Void>> rollbacks = new ArrayList<Callable<Void>>(started.size());
+
+		for (final ObjectProxy proxy : started) {
+			rollbacks.add(new Callable<Void>() {
+				public Void call() throws Exception {
+					/** Commutative invocations are dropped without being applied. */
+					if (ObjectProxyHandler.getHandler(proxy).getAccessMode() != Mode.COMMUTATIVE)
+						waitForSnapshot(proxy);
+					proxy.finishTransaction(true, false);
+					return null;
+				}
+			});
 		}
 
-		setState(State.RUNNING);
+		try {
+			ProxyExecutor.invokeAll(rollbacks);
+		} catch (InterruptedException e) {
+			// Do nothing, as in finishProxies.
+		}
+	}
+
+	/**
+	 * Notifies the accessed object proxies that the transaction is starting,
+	 * without taking versions of the objects, which are all accessed in
+	 * {@link Mode#COMMUTATIVE} mode. The versions are taken by
+	 * {@link #startProxies()} at commit.
+	 * 
+	 * @throws RemoteException
+	 *             when remote error during transaction initialization occurs.
+	 */
+	private void deferProxies() throws RemoteException {
+		List<TransactionalNode> nodes = new ArrayList<TransactionalNode>();
+		List<long[]> handles = new ArrayList<long[]>();
+		groupProxies(nodes, handles);
+
+		for (int i = 0; i < nodes.size(); i++)
+			nodes.get(i).deferTransaction(handles.get(i));
+	}
+
+	/**
+	 * Sorts the accessed object proxies in the global order given by
+	 * {@link #comparator} and groups the handles of the proxies placed on the
+	 * same node.
+	 * 
+	 * @param nodes
+	 *            list to which the nodes are added.
+	 * @param handles
+	 *            list to which the handles of the proxies of each node are
+	 *            added.
+	 */
+	private void groupProxies(List<TransactionalNode> nodes, List<long[]> handles) {
+		Collections.sort(proxies, comparator);
+
+		int first = 0;
+		while (first < proxies.size()) {
+			ObjectProxyHandler handler = ObjectProxyHandler.getHandler(proxies.get(first));
+
+			int last = first + 1;
+			while (last < proxies.size()
+					&& handler.getNodeId().equals(ObjectProxyHandler.getHandler(proxies.get(last)).getNodeId()))
+				last++;
+
+			long[] group = new long[last - first];
+			for (int i = first; i < last; i++)
+				group[i - first] = ObjectProxyHandler.getHandler(proxies.get(i)).getHandle();
+
+			nodes.add(handler.getNode());
+			handles.add(group);
+
+			first = last;
+		}
 	}
 
 	/**
@@ -438,6 +781,19 @@ public class Transaction extends UnicastRemoteObject implements TransactionRef {
 	 *             to be rolled-back.
 	 */
 	public void commit() throws TransactionException, RollbackForcedException {
+		if (commutesOnly()) {
+			try {
+				startProxies();
+			} catch (RemoteException e) {
+				finishProxies(true);
+				setState(State.ABORTED);
+
+				Heartbeat.thread.remove(id);
+
+				throw new RollbackForcedException("Rollback forced during commit.", e);
+			}
+		}
+
 		if (!waitForSnapshots()) {
 
 			finishProxies(true);
@@ -465,6 +821,10 @@ public class Transaction extends UnicastRemoteObject implements TransactionRef {
 	 *             after transaction end.
 	 */
 	public void rollback() throws TransactionException {
+		/** Writes still buffered by the handlers are never sent. */
+		for (ObjectProxy proxy : proxies)
+			ObjectProxyHandler.getHandler(proxy).discard();
+
 		waitForSnapshots();
 
 		finishProxies(true);
@@ -474,6 +834,87 @@ public class Transaction extends UnicastRemoteObject implements TransactionRef {
 		Heartbeat.thread.remove(id);
 	}
 
+	/**
+	 * Executes given operation asynchronously, after every asynchronous
+	 * operation of this transaction submitted earlier is finished. This allows
+	 * to invoke the object proxies of this transaction without blocking the
+	 * calling thread.
+	 * 
+	 * @param operation
+	 *            operation to execute.
+	 * @return future result of the operation.
+	 */
+	public <V> TransactionFuture<V> submit(Callable<V> operation) {
+		TransactionFuture<V> future = new TransactionFuture<V>(operation);
+
+		synchronized (this) {
+			if (async == null)
+				async = new AsyncExecutor();
+			async.execute(future);
+		}
+
+		return future;
+	}
+
+	/**
+	 * Starts the transaction asynchronously (see {@link #start()}).
+	 * 
+	 * @return future completed with this transaction once it is started.
+	 */
+	public TransactionFuture<Transaction> startAsync() {
+		return submit(new Callable<Transaction>() {
+			public Transaction call() throws Exception {
+				start();
+				return Transaction.this;
+			}
+		});
+	}
+
+	/**
+	 * Starts and executes the transaction given by {@link Transactional}
+	 * implementation asynchronously (see {@link #start(Transactional)}).
+	 * 
+	 * @param transaction
+	 *            implementation of a transaction method.
+	 * @return future completed with this transaction once it is finished.
+	 */
+	public TransactionFuture<Transaction> startAsync(final Transactional transaction) {
+		return submit(new Callable<Transaction>() {
+			public Transaction call() throws Exception {
+				start(transaction);
+				return Transaction.this;
+			}
+		});
+	}
+
+	/**
+	 * Commits the transaction asynchronously (see {@link #commit()}).
+	 * 
+	 * @return future completed with this transaction once it is committed.
+	 */
+	public TransactionFuture<Transaction> commitAsync() {
+		return submit(new Callable<Transaction>() {
+			public Transaction call() throws Exception {
+				commit();
+				return Transaction.this;
+			}
+		});
+	}
+
+	/**
+	 * Rolls-back the transaction asynchronously (see {@link #rollback()}).
+	 * 
+	 * @return future completed with this transaction once it is rolled-back.
+	 */
+	public TransactionFuture<Transaction> rollbackAsync() {
+		return submit(new Callable<Transaction>() {
+			public Transaction call() throws Exception {
+				rollback();
+				return Transaction.this;
+			}
+		});
+	}
+
 	/**
 	 * Rolls-back all the changes made by this transaction and re-executes it.
 	 * This method can be called only when transaction was started using the
@@ -486,26 +927,56 @@ public class Transaction extends UnicastRemoteObject implements TransactionRef {
 	/**
 	 * Waits for all remote objects to be ready for commit or roll-back
 	 * operations. Determines if commit is allowed or roll-back must be
-	 * performed.
+	 * performed. All remote objects are waited for concurrently, and the
+	 * commit is allowed only if every one of them allows it.
 	 * 
 	 * @return true when commit is allowed, false when roll-back operation is
 	 *         forced and must be performed.
 	 */
 	protected boolean waitForSnapshots() {
+		List<Callable<Boolean>> votes = new ArrayList<Callable<Boolean>>(proxies.size());
+
+		for (final ObjectProxy proxy : proxies) {
+			votes.add(new Callable<Boolean>() {
+				public Boolean call() throws Exception {
+					return waitForSnapshot(proxy);
+				}
+			});
+		}
+
 		boolean commit = true;
 
-		for (ObjectProxy proxy : proxies) {
-			try {
-				if (!proxy.waitForSnapshot(false))
+		try {
+			for (Future<Boolean> vote : ProxyExecutor.invokeAll(votes)) {
+				try {
+					if (!vote.get())
+						commit = false;
+				} catch (ExecutionException e) {
 					commit = false;
-			} catch (RemoteException e) {
-				commit = false;
+				}
 			}
+		} catch (InterruptedException e) {
+			commit = false;
 		}
 
 		return commit;
 	}
 
+	/**
+	 * Waits for a single remote object to be ready for commit or roll-back
+	 * operations. Called concurrently for all the accessed remote objects.
+	 * 
+	 * @param proxy
+	 *            proxy of the remote object.
+	 * @return true when commit is allowed, false when roll-back operation is
+	 *         forced and must be performed.
+	 * @throws RemoteException
+	 *             when remote execution fails.
+	 */
+	protected boolean waitForSnapshot(ObjectProxy proxy) throws RemoteException {
+		return proxy.waitForSnapshot(false);
+	}
+
 	/**
 	 * Release object early.
 	 * 
@@ -524,22 +995,55 @@ public class Transaction extends UnicastRemoteObject implements TransactionRef {
 
 	/**
 	 * Finalizes and releases all remote objects accessed by this transaction.
+	 * The remote objects are finalized concurrently.
 	 * 
 	 * @param restore
 	 *            determines if changes made by this transaction should be
 	 *            restored or committed.
 	 */
-	protected void finishProxies(boolean restore) {
-		for (ObjectProxy proxy : proxies) {
-			try {
-				proxy.finishTransaction(restore, false);
-			} catch (RemoteException e) {
-				// Do nothing. This situation is treated as remote object
-				// failure would occur after this operation.
-			}
+	protected void finishProxies(final boolean restore) {
+		List<Callable<Void>> finishes = new ArrayList<Callable<Void>>(proxies.size());
+
+		for (final ObjectProxy proxy : proxies) {
+			finishes.add(new Callable<Void>() {
+				public Void call() throws Exception {
+					proxy.finishTransaction(restore, false);
+					return null;
+				}
+			});
+		}
+
+		try {
+			/**
+			 * Failures are ignored. This situation is treated as remote object
+			 * failure would occur after this operation.
+			 */
+			ProxyExecutor.invokeAll(finishes);
+		} catch (InterruptedException e) {
+			// Do nothing, as above.
 		}
 	}
 
+	/**
+	 * Checks whether every remote object accessed by this transaction is
+	 * accessed in {@link Mode#COMMUTATIVE} mode. Such a transaction does not
+	 * take the versions of the objects when it starts, but when it commits, so
+	 * it does not wait for other transactions while it executes.
+	 * 
+	 * If the transaction accesses any object in another mode, all versions are
+	 * taken when it starts, so that every transaction sees either all or none
+	 * of its effects.
+	 * 
+	 * @return <code>true</code> if all the objects are accessed in
+	 *         {@link Mode#COMMUTATIVE} mode.
+	 */
+	private boolean commutesOnly() {
+		for (ObjectProxy proxy : proxies)
+			if (ObjectProxyHandler.getHandler(proxy).getAccessMode() != Mode.COMMUTATIVE)
+				return false;
+		return true;
+	}
+
 	/**
 	 * Performs state transition and checks this transition validity.
 	 * 
@@ -568,15 +1072,20 @@ public class Transaction extends UnicastRemoteObject implements TransactionRef {
 	}
 
 	/**
-	 * A comparator object for sorting remote object proxies by their IDs.
+	 * A comparator object for sorting remote object proxies by the IDs of
+	 * their nodes and then by the IDs of their objects. The IDs are cached in
+	 * the proxies, so sorting does not require remote calls.
 	 */
 	protected Comparator<ObjectProxy> comparator = new Comparator<ObjectProxy>() {
 		public int compare(ObjectProxy a, ObjectProxy b) {
-			try {
-				return a.getUID().compareTo(b.getUID());
-			} catch (RemoteException e) {
-				throw new RuntimeException(e.getMessage(), e.getCause());
-			}
+			ObjectProxyHandler ha = ObjectProxyHandler.getHandler(a);
+			ObjectProxyHandler hb = ObjectProxyHandler.getHandler(b);
+
+			int node = ha.getNodeId().compareTo(hb.getNodeId());
+			if (node != 0)
+				return node;
+
+			return ha.getObjectId().compareTo(hb.getObjectId());
 		}
 
 	};
@@ -0,0 +1,65 @@
+package put.atomicrmi.optsva;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Result of an asynchronous operation of a {@link Transaction}. Besides
+ * waiting for the result, it is possible to register listeners that are
+ * notified when the operation is finished, so that no thread has to be
+ * blocked while the operation is in progress.
+ * 
+ * @param <V>
+ *            type of the result.
+ */
+public class TransactionFuture<V> extends FutureTask<V> {
+
+	/**
+	 * Listeners waiting for the operation to finish.
+	 */
+	private final List<Runnable> listeners = new ArrayList<Runnable>();
+
+	/**
+	 * Creates the future of a given operation.
+	 * 
+	 * @param operation
+	 *            operation to execute.
+	 */
+	public TransactionFuture(Callable<V> operation) {
+		super(operation);
+	}
+
+	/**
+	 * Registers a listener that is run when the operation is finished,
+	 * successfully or not. If the operation is already finished, the listener
+	 * is run immediately by the calling thread. Otherwise, it is run by the
+	 * thread that finishes the operation.
+	 * 
+	 * @param listener
+	 *            listener to run.
+	 */
+	public void whenDone(Runnable listener) {
+		synchronized (listeners) {
+			if (!isDone()) {
+				listeners.add(listener);
+				return;
+			}
+		}
+
+		listener.run();
+	}
+
+	@Override
+	protected void done() {
+		List<Runnable> finished;
+		synchronized (listeners) {
+			finished = new ArrayList<Runnable>(listeners);
+			listeners.clear();
+		}
+
+		for (Runnable listener : finished)
+			listener.run();
+	}
+}
@@ -1,11 +1,12 @@
 package put.atomicrmi.optsva;
 
 import java.rmi.RemoteException;
-import java.util.Collections;
 import java.util.concurrent.Callable;
 
 import put.atomicrmi.optsva.Access.Mode;
 import put.atomicrmi.optsva.objects.ObjectProxy;
+import put.atomicrmi.optsva.objects.ObjectProxyHandler;
+import put.atomicrmi.optsva.objects.TransactionalUnicastRemoteObject;
 import put.atomicrmi.optsva.sync.Heartbeat;
 
 public class Update extends Transaction {
@@ -61,10 +62,15 @@ public class Update extends Transaction {
 			throw new TransactionException("Object access information can be added only in preparation state.");
 
 		try {
-			TransactionalRemoteObject remote = (TransactionalRemoteObject) obj;
+			TransactionalRemoteObject remote = TransactionalUnicastRemoteObject.getLocal((TransactionalRemoteObject) obj);
 			ObjectProxy proxy = (ObjectProxy) remote.createUpdateProxy(this, id, writes);
 			proxies.add(proxy);
 
+			/** Writes are only logged until commit, so buffer them all. */
+			ObjectProxyHandler handler = ObjectProxyHandler.getHandler(proxy);
+			handler.setAccess(Mode.WRITE_ONLY, writes, writes);
+			handler.start();
+
 			// XXX possibly remove until actually starting writes?
 			Heartbeat.thread.addFailureMonitor(id, remote.getFailureMonitor());
 			return (T) proxy;
@@ -79,21 +85,10 @@ public class Update extends Transaction {
 	}
 
 	@Override
-	protected boolean waitForSnapshots() {
-		boolean commit = true;
-
-		for (ObjectProxy proxy : proxies) {
-			try {
-				proxy.update();
-
-				if (!proxy.waitForSnapshot(false))
-					commit = false;
-			} catch (RemoteException e) {
-				commit = false;
-			}
-		}
+	protected boolean waitForSnapshot(ObjectProxy proxy) throws RemoteException {
+		proxy.update();
 
-		return commit;
+		return proxy.waitForSnapshot(false);
 	}
 
 	public void commit() throws TransactionException, RollbackForcedException {
@@ -102,19 +97,7 @@ public class Update extends Transaction {
 		try {
 			Heartbeat.thread.register(id);
 
-			Collections.sort(proxies, comparator);
-
-			for (ObjectProxy proxy : proxies) {
-				proxy.lock();
-			}
-
-			for (ObjectProxy proxy : proxies) {
-				proxy.startTransaction();
-			}
-
-			for (ObjectProxy proxy : proxies) {
-				proxy.unlock();
-			}
+			startProxies();
 
 		} catch (RemoteException e) {
 			throw new TransactionException("Unable to initialize transaction.", e);
@@ -155,20 +138,8 @@ public class Update extends Transaction {
 	public <T> void commitInterrupted(Callable<T> postStart, Callable<T> postSnapshots) throws TransactionException,
 			RollbackForcedException {
 
-		try {			
-			Collections.sort(proxies, comparator);
-
-			for (ObjectProxy proxy : proxies) {
-				proxy.lock();
-			}
-
-			for (ObjectProxy proxy : proxies) {
-				proxy.startTransaction();
-			}
-
-			for (ObjectProxy proxy : proxies) {
-				proxy.unlock();
-			}
+		try {
+			startProxies();
 
 		} catch (RemoteException e) {
 			throw new TransactionException("Unable to initialize transaction.", e);
@@ -0,0 +1,28 @@
+package put.atomicrmi.optsva;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Keeps the last committed versions of the annotated remote object, so that
+ * transactions can access it in {@link Access.Mode#SNAPSHOT} mode. Every
+ * transaction modifying such an object copies it when it releases the object,
+ * and the copy is kept as a version once the transaction commits. Objects are
+ * copied by {@link Object#clone()}, which must therefore copy every part of
+ * the state that later transactions can modify.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Inherited
+public @interface Versioned {
+
+	/**
+	 * Number of committed versions kept.
+	 * 
+	 * @return number of versions.
+	 */
+	int value() default 8;
+}
@@ -0,0 +1,116 @@
+package put.atomicrmi.optsva.collections;
+
+import java.rmi.RemoteException;
+import java.util.HashSet;
+import java.util.Set;
+
+import put.atomicrmi.optsva.TransactionException;
+
+/**
+ * The view of a {@link TransactionalMap} used by a single transaction. It
+ * gives access only to the keys in the buckets declared by the transaction.
+ * 
+ * @param <K>
+ *            type of keys.
+ * @param <V>
+ *            type of values.
+ */
+public class MapAccess<K, V> {
+
+	/**
+	 * Accessed map.
+	 */
+	private final TransactionalMap<K, V> map;
+
+	/**
+	 * Object proxies of the declared buckets by their indices, or
+	 * <code>null</code> for buckets that were not declared.
+	 */
+	private final MapBucket<K, V>[] buckets;
+
+	@SuppressWarnings("unchecked")
+	MapAccess(TransactionalMap<K, V> map) {
+		this.map = map;
+		this.buckets = (MapBucket<K, V>[]) new MapBucket<?, ?>[map.getBuckets()];
+	}
+
+	/**
+	 * Checks whether the given bucket was declared.
+	 */
+	boolean declares(int bucket) {
+		return buckets[bucket] != null;
+	}
+
+	/**
+	 * Sets the object proxy of the given bucket.
+	 */
+	void declare(int bucket, MapBucket<K, V> proxy) {
+		buckets[bucket] = proxy;
+	}
+
+	public V get(K key) throws RemoteException {
+		return bucketFor(key).get(key);
+	}
+
+	public boolean containsKey(K key) throws RemoteException {
+		return bucketFor(key).containsKey(key);
+	}
+
+	public void put(K key, V value) throws RemoteException {
+		bucketFor(key).put(key, value);
+	}
+
+	public void remove(K key) throws RemoteException {
+		bucketFor(key).remove(key);
+	}
+
+	/**
+	 * Gives the number of entries in the map. Requires all the buckets to be
+	 * declared.
+	 * 
+	 * @return number of entries.
+	 * @throws RemoteException
+	 *             when not all the buckets were declared or remote execution
+	 *             fails.
+	 */
+	public int size() throws RemoteException {
+		int size = 0;
+		for (int i = 0; i < buckets.length; i++)
+			size += bucket(i).size();
+		return size;
+	}
+
+	/**
+	 * Gives the keys in the map. Requires all the buckets to be declared.
+	 * 
+	 * @return set of keys.
+	 * @throws RemoteException
+	 *             when not all the buckets were declared or remote execution
+	 *             fails.
+	 */
+	public Set<K> keys() throws RemoteException {
+		Set<K> keys = new HashSet<K>();
+		for (int i = 0; i < buckets.length; i++)
+			keys.addAll(bucket(i).keys());
+		return keys;
+	}
+
+	/**
+	 * Gives the object proxy of the bucket holding the given key.
+	 */
+	private MapBucket<K, V> bucketFor(Object key) throws TransactionException {
+		int bucket = map.bucketOf(key);
+		if (buckets[bucket] == null)
+			throw new TransactionException("Key " + key + " was not declared by the transaction.");
+		return buckets[bucket];
+	}
+
+	/**
+	 * Gives the object proxy of the given bucket.
+	 */
+	private MapBucket<K, V> bucket(int bucket) throws TransactionException {
+		if (buckets[bucket] == null)
+			throw new TransactionException("Bucket " + bucket + " was not declared by the transaction.");
+		return buckets[bucket];
+	}
+}
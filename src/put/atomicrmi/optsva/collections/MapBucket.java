@@ -0,0 +1,46 @@
+package put.atomicrmi.optsva.collections;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.Set;
+
+import put.atomicrmi.optsva.Access;
+import put.atomicrmi.optsva.Access.Mode;
+
+/**
+ * A partition of the entries of a {@link TransactionalMap}. Each bucket is a
+ * separate transactional remote object, so transactions accessing keys in
+ * different buckets do not wait for one another.
+ * 
+ * @param <K>
+ *            type of keys.
+ * @param <V>
+ *            type of values.
+ */
+public interface MapBucket<K, V> extends Remote {
+
+	@Access(Mode.READ_ONLY)
+	V get(K key) throws RemoteException;
+
+	@Access(Mode.READ_ONLY)
+	boolean containsKey(K key) throws RemoteException;
+
+	@Access(Mode.READ_ONLY)
+	int size() throws RemoteException;
+
+	/**
+	 * Gives the keys in this bucket.
+	 * 
+	 * @return copy of the set of keys.
+	 * @throws RemoteException
+	 *             when remote execution fails.
+	 */
+	@Access(Mode.READ_ONLY)
+	Set<K> keys() throws RemoteException;
+
+	@Access(Mode.WRITE_ONLY)
+	void put(K key, V value) throws RemoteException;
+
+	@Access(Mode.WRITE_ONLY)
+	void remove(K key) throws RemoteException;
+}
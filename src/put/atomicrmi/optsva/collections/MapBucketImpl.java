@@ -0,0 +1,89 @@
+package put.atomicrmi.optsva.collections;
+
+import java.lang.reflect.Method;
+import java.rmi.RemoteException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+import put.atomicrmi.optsva.objects.TransactionalUnicastRemoteObject;
+import put.atomicrmi.optsva.snapshots.Undoable;
+
+/**
+ * A bucket of a {@link TransactionalMap} holding its entries in a hash map.
+ * Writes are rolled back by undoing them, so only the entries touched by a
+ * transaction are ever copied.
+ * 
+ * @param <K>
+ *            type of keys.
+ * @param <V>
+ *            type of values.
+ */
+public class MapBucketImpl<K, V> extends TransactionalUnicastRemoteObject implements MapBucket<K, V>, Undoable,
+		Cloneable {
+
+	private static final long serialVersionUID = -2905306372262520542L;
+
+	/**
+	 * Entries of the bucket.
+	 */
+	private HashMap<K, V> entries = new HashMap<K, V>();
+
+	public MapBucketImpl() throws RemoteException {
+		super();
+	}
+
+	public V get(K key) {
+		return entries.get(key);
+	}
+
+	public boolean containsKey(K key) {
+		return entries.containsKey(key);
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public Set<K> keys() {
+		return new HashSet<K>(entries.keySet());
+	}
+
+	public void put(K key, V value) {
+		entries.put(key, value);
+	}
+
+	public void remove(K key) {
+		entries.remove(key);
+	}
+
+	@SuppressWarnings("unchecked")
+	public Runnable inverse(Method method, Object[] args) {
+		final K key = (K) args[0];
+		if (!entries.containsKey(key)) {
+			return new Runnable() {
+				public void run() {
+					entries.remove(key);
+				}
+			};
+		}
+
+		final V old = entries.get(key);
+		return new Runnable() {
+			public void run() {
+				entries.put(key, old);
+			}
+		};
+	}
+
+	/**
+	 * Copies the entries, so that buffers are not affected by later writes.
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public Object clone() throws CloneNotSupportedException {
+		MapBucketImpl<K, V> copy = (MapBucketImpl<K, V>) super.clone();
+		copy.entries = (HashMap<K, V>) entries.clone();
+		return copy;
+	}
+}
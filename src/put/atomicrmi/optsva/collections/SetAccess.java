@@ -0,0 +1,54 @@
+package put.atomicrmi.optsva.collections;
+
+import java.rmi.RemoteException;
+import java.util.Set;
+
+/**
+ * The view of a {@link TransactionalSet} used by a single transaction. It
+ * gives access only to the elements in the buckets declared by the
+ * transaction.
+ * 
+ * @param <E>
+ *            type of elements.
+ */
+public class SetAccess<E> {
+
+	/**
+	 * View of the underlying map.
+	 */
+	private final MapAccess<E, Boolean> map;
+
+	SetAccess(MapAccess<E, Boolean> map) {
+		this.map = map;
+	}
+
+	public boolean contains(E element) throws RemoteException {
+		return map.containsKey(element);
+	}
+
+	public void add(E element) throws RemoteException {
+		map.put(element, Boolean.TRUE);
+	}
+
+	public void remove(E element) throws RemoteException {
+		map.remove(element);
+	}
+
+	/**
+	 * Gives the number of elements. Requires all the buckets to be declared.
+	 * 
+	 * @see MapAccess#size()
+	 */
+	public int size() throws RemoteException {
+		return map.size();
+	}
+
+	/**
+	 * Gives the elements. Requires all the buckets to be declared.
+	 * 
+	 * @see MapAccess#keys()
+	 */
+	public Set<E> elements() throws RemoteException {
+		return map.keys();
+	}
+}
@@ -0,0 +1,70 @@
+package put.atomicrmi.optsva.collections;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+import put.atomicrmi.optsva.Access;
+import put.atomicrmi.optsva.Access.Mode;
+
+/**
+ * A list indexed from zero. Writes are buffered until the transaction gains
+ * access to the list unless it read the list before, so they return nothing.
+ * Writes with an index out of bounds are ignored.
+ * 
+ * @param <E>
+ *            type of elements.
+ */
+public interface TransactionalList<E> extends Remote {
+
+	@Access(Mode.READ_ONLY)
+	E get(int index) throws RemoteException;
+
+	@Access(Mode.READ_ONLY)
+	int size() throws RemoteException;
+
+	@Access(Mode.READ_ONLY)
+	boolean contains(E element) throws RemoteException;
+
+	@Access(Mode.READ_ONLY)
+	int indexOf(E element) throws RemoteException;
+
+	/**
+	 * Appends an element to the end of the list.
+	 * 
+	 * @param element
+	 *            appended element.
+	 * @throws RemoteException
+	 *             when remote execution fails.
+	 */
+	@Access(Mode.WRITE_ONLY)
+	void add(E element) throws RemoteException;
+
+	/**
+	 * Inserts an element at the given position, shifting the following
+	 * elements.
+	 * 
+	 * @param index
+	 *            position of the element.
+	 * @param element
+	 *            inserted element.
+	 * @throws RemoteException
+	 *             when remote execution fails.
+	 */
+	@Access(Mode.WRITE_ONLY)
+	void add(int index, E element) throws RemoteException;
+
+	@Access(Mode.WRITE_ONLY)
+	void set(int index, E element) throws RemoteException;
+
+	/**
+	 * Removes the element at the given position, shifting the following
+	 * elements.
+	 * 
+	 * @param index
+	 *            position of the element.
+	 * @throws RemoteException
+	 *             when remote execution fails.
+	 */
+	@Access(Mode.WRITE_ONLY)
+	void remove(int index) throws RemoteException;
+}
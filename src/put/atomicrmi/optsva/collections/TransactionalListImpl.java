@@ -0,0 +1,140 @@
+package put.atomicrmi.optsva.collections;
+
+import java.lang.reflect.Method;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+
+import put.atomicrmi.optsva.objects.TransactionalUnicastRemoteObject;
+import put.atomicrmi.optsva.snapshots.Undoable;
+
+/**
+ * A transactional list backed by an array list. Writes are rolled back by
+ * undoing them, so rolling back takes time proportional to the number of
+ * writes, not to the length of the list.
+ * 
+ * @param <E>
+ *            type of elements.
+ */
+public class TransactionalListImpl<E> extends TransactionalUnicastRemoteObject implements TransactionalList<E>,
+		Undoable, Cloneable {
+
+	private static final long serialVersionUID = -3207455436186981785L;
+
+	/**
+	 * Elements of the list.
+	 */
+	private ArrayList<E> elements = new ArrayList<E>();
+
+	public TransactionalListImpl() throws RemoteException {
+		super();
+	}
+
+	public E get(int index) {
+		return elements.get(index);
+	}
+
+	public int size() {
+		return elements.size();
+	}
+
+	public boolean contains(E element) {
+		return elements.contains(element);
+	}
+
+	public int indexOf(E element) {
+		return elements.indexOf(element);
+	}
+
+	public void add(E element) {
+		elements.add(element);
+	}
+
+	public void add(int index, E element) {
+		if (index >= 0 && index <= elements.size())
+			elements.add(index, element);
+	}
+
+	public void set(int index, E element) {
+		if (index >= 0 && index < elements.size())
+			elements.set(index, element);
+	}
+
+	public void remove(int index) {
+		if (index >= 0 && index < elements.size())
+			elements.remove(index);
+	}
+
+	public Runnable inverse(Method method, Object[] args) {
+		boolean appends = method.getName().equals("add") && args.length == 1;
+		final int index = appends ? elements.size() : (Integer) args[0];
+
+		if (method.getName().equals("add")) {
+			if (index < 0 || index > elements.size())
+				return null;
+
+			final Object element = args[args.length - 1];
+			return new Runnable() {
+				public void run() {
+					int i = find(index, element);
+					if (i >= 0)
+						elements.remove(i);
+				}
+			};
+		}
+
+		if (index < 0 || index >= elements.size())
+			return null;
+
+		final E old = elements.get(index);
+		if (method.getName().equals("set")) {
+			final Object element = args[1];
+			return new Runnable() {
+				public void run() {
+					int i = find(index, element);
+					if (i >= 0)
+						elements.set(i, old);
+				}
+			};
+		}
+
+		return new Runnable() {
+			public void run() {
+				elements.add(Math.min(index, elements.size()), old);
+			}
+		};
+	}
+
+	/**
+	 * Finds the position of an element put in the list by an undone write.
+	 * The element is usually still where the write put it, but it is looked
+	 * up by identity, so that an inverse never touches elements put there by
+	 * others.
+	 * 
+	 * @param index
+	 *            position where the element was put.
+	 * @param element
+	 *            the element.
+	 * @return position of the element, or -1 if it is no longer there.
+	 */
+	private int find(int index, Object element) {
+		if (index < elements.size() && elements.get(index) == element)
+			return index;
+
+		for (int i = elements.size() - 1; i >= 0; i--)
+			if (elements.get(i) == element)
+				return i;
+
+		return -1;
+	}
+
+	/**
+	 * Copies the elements, so that buffers are not affected by later writes.
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public Object clone() throws CloneNotSupportedException {
+		TransactionalListImpl<E> copy = (TransactionalListImpl<E>) super.clone();
+		copy.elements = (ArrayList<E>) elements.clone();
+		return copy;
+	}
+}
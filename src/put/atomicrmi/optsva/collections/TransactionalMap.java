@@ -0,0 +1,194 @@
+package put.atomicrmi.optsva.collections;
+
+import java.io.Serializable;
+import java.rmi.RemoteException;
+
+import put.atomicrmi.optsva.Access.Mode;
+import put.atomicrmi.optsva.Transaction;
+import put.atomicrmi.optsva.TransactionException;
+
+/**
+ * A map whose entries are partitioned by the hashes of their keys among a
+ * fixed number of {@link MapBucket}s. Each bucket is versioned and restored
+ * separately, so transactions accessing keys in different buckets of the same
+ * map run in parallel, and a transaction pays only for the entries it changes.
+ * 
+ * <p>
+ * Like any transactional remote object, the buckets a transaction accesses
+ * must be declared before it starts. A transaction declares them by giving
+ * the keys it is going to access, and then uses the returned
+ * {@link MapAccess}:
+ * 
+ * <pre>
+ * Transaction t = new Transaction();
+ * MapAccess&lt;String, Integer&gt; accounts = map.accesses(t, &quot;alice&quot;, &quot;bob&quot;);
+ * t.start();
+ * accounts.put(&quot;alice&quot;, accounts.get(&quot;alice&quot;) - 10);
+ * accounts.put(&quot;bob&quot;, accounts.get(&quot;bob&quot;) + 10);
+ * t.commit();
+ * </pre>
+ * 
+ * The map itself is not a remote object, so it cannot be bound in a registry.
+ * It is shared by passing it to other nodes, for instance as an argument of a
+ * remote call or as a field of a remote object bound in a registry. It is
+ * then serialized with remote references to its buckets, so every copy of the
+ * map accesses the same buckets.
+ * 
+ * @param <K>
+ *            type of keys.
+ * @param <V>
+ *            type of values.
+ */
+public class TransactionalMap<K, V> implements Serializable {
+
+	private static final long serialVersionUID = 2329117307312669707L;
+
+	/**
+	 * Default number of buckets.
+	 */
+	public static final int DEFAULT_BUCKETS = 16;
+
+	/**
+	 * Buckets of the map.
+	 */
+	private final MapBucket<K, V>[] buckets;
+
+	/**
+	 * Creates an empty map with the default number of buckets.
+	 * 
+	 * @throws RemoteException
+	 *             when the buckets cannot be exported.
+	 */
+	public TransactionalMap() throws RemoteException {
+		this(DEFAULT_BUCKETS);
+	}
+
+	/**
+	 * Creates an empty map with the given number of buckets. The more buckets,
+	 * the fewer transactions wait for one another, but the more buckets a
+	 * transaction accessing many keys needs to declare.
+	 * 
+	 * @param buckets
+	 *            number of buckets.
+	 * @throws RemoteException
+	 *             when the buckets cannot be exported.
+	 */
+	@SuppressWarnings("unchecked")
+	public TransactionalMap(int buckets) throws RemoteException {
+		if (buckets < 1)
+			throw new IllegalArgumentException("Invalid number of buckets: " + buckets + ".");
+
+		this.buckets = (MapBucket<K, V>[]) new MapBucket<?, ?>[buckets];
+		for (int i = 0; i < buckets; i++)
+			this.buckets[i] = new MapBucketImpl<K, V>();
+	}
+
+	/**
+	 * Gives the number of buckets.
+	 * 
+	 * @return number of buckets.
+	 */
+	public int getBuckets() {
+		return buckets.length;
+	}
+
+	/**
+	 * Gives the bucket holding the given key.
+	 * 
+	 * @param key
+	 *            key.
+	 * @return index of the bucket.
+	 */
+	public int bucketOf(Object key) {
+		int hash = key == null ? 0 : key.hashCode();
+		hash ^= hash >>> 16;
+		return (hash & Integer.MAX_VALUE) % buckets.length;
+	}
+
+	/**
+	 * Declares that the transaction will read and write the given keys.
+	 * 
+	 * @param transaction
+	 *            transaction in preparation.
+	 * @param keys
+	 *            keys accessed by the transaction.
+	 * @return view of the map used by the transaction.
+	 * @throws TransactionException
+	 *             when the accesses cannot be declared.
+	 */
+	public MapAccess<K, V> accesses(Transaction transaction, Object... keys) throws TransactionException {
+		return declare(transaction, Mode.ANY, keys);
+	}
+
+	/**
+	 * Declares that the transaction will only read the given keys.
+	 * 
+	 * @param transaction
+	 *            transaction in preparation.
+	 * @param keys
+	 *            keys read by the transaction.
+	 * @return view of the map used by the transaction.
+	 * @throws TransactionException
+	 *             when the accesses cannot be declared.
+	 */
+	public MapAccess<K, V> reads(Transaction transaction, Object... keys) throws TransactionException {
+		return declare(transaction, Mode.READ_ONLY, keys);
+	}
+
+	/**
+	 * Declares that the transaction will only write the given keys.
+	 * 
+	 * @param transaction
+	 *            transaction in preparation.
+	 * @param keys
+	 *            keys written by the transaction.
+	 * @return view of the map used by the transaction.
+	 * @throws TransactionException
+	 *             when the accesses cannot be declared.
+	 */
+	public MapAccess<K, V> writes(Transaction transaction, Object... keys) throws TransactionException {
+		return declare(transaction, Mode.WRITE_ONLY, keys);
+	}
+
+	/**
+	 * Declares that the transaction will read and write any keys. The
+	 * transaction accesses all the buckets, so it waits for every other
+	 * transaction accessing the map.
+	 * 
+	 * @param transaction
+	 *            transaction in preparation.
+	 * @return view of the map used by the transaction.
+	 * @throws TransactionException
+	 *             when the accesses cannot be declared.
+	 */
+	public MapAccess<K, V> accessesAll(Transaction transaction) throws TransactionException {
+		MapAccess<K, V> access = new MapAccess<K, V>(this);
+		for (int i = 0; i < buckets.length; i++)
+			access.declare(i, transaction.accesses(buckets[i]));
+		return access;
+	}
+
+	/**
+	 * Declares accesses to the buckets of the given keys, each bucket once.
+	 */
+	private MapAccess<K, V> declare(Transaction transaction, Mode mode, Object[] keys) throws TransactionException {
+		MapAccess<K, V> access = new MapAccess<K, V>(this);
+		for (Object key : keys) {
+			int bucket = bucketOf(key);
+			if (access.declares(bucket))
+				continue;
+
+			switch (mode) {
+			case READ_ONLY:
+				access.declare(bucket, transaction.reads(buckets[bucket]));
+				break;
+			case WRITE_ONLY:
+				access.declare(bucket, transaction.writes(buckets[bucket]));
+				break;
+			default:
+				access.declare(bucket, transaction.accesses(buckets[bucket]));
+			}
+		}
+		return access;
+	}
+}
@@ -0,0 +1,55 @@
+package put.atomicrmi.optsva.collections;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+import put.atomicrmi.optsva.Access;
+import put.atomicrmi.optsva.Access.Mode;
+
+/**
+ * A first-in first-out queue. Writes are buffered until the transaction gains
+ * access to the queue unless it read the queue before, so they return
+ * nothing: an element is taken from the queue by reading it with
+ * {@link #peek()} and then removing it with {@link #removeHead()}.
+ * 
+ * @param <E>
+ *            type of elements.
+ */
+public interface TransactionalQueue<E> extends Remote {
+
+	/**
+	 * Gives the head of the queue.
+	 * 
+	 * @return head of the queue or <code>null</code> if the queue is empty.
+	 * @throws RemoteException
+	 *             when remote execution fails.
+	 */
+	@Access(Mode.READ_ONLY)
+	E peek() throws RemoteException;
+
+	@Access(Mode.READ_ONLY)
+	int size() throws RemoteException;
+
+	@Access(Mode.READ_ONLY)
+	boolean isEmpty() throws RemoteException;
+
+	/**
+	 * Adds an element at the tail of the queue.
+	 * 
+	 * @param element
+	 *            added element.
+	 * @throws RemoteException
+	 *             when remote execution fails.
+	 */
+	@Access(Mode.WRITE_ONLY)
+	void offer(E element) throws RemoteException;
+
+	/**
+	 * Removes the head of the queue, if any.
+	 * 
+	 * @throws RemoteException
+	 *             when remote execution fails.
+	 */
+	@Access(Mode.WRITE_ONLY)
+	void removeHead() throws RemoteException;
+}
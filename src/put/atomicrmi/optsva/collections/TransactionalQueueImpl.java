@@ -0,0 +1,91 @@
+package put.atomicrmi.optsva.collections;
+
+import java.lang.reflect.Method;
+import java.rmi.RemoteException;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+import put.atomicrmi.optsva.objects.TransactionalUnicastRemoteObject;
+import put.atomicrmi.optsva.snapshots.Undoable;
+
+/**
+ * A transactional queue backed by a linked list. Writes are rolled back by
+ * undoing them, so rolling back takes time proportional to the number of
+ * writes, not to the length of the queue.
+ * 
+ * @param <E>
+ *            type of elements.
+ */
+public class TransactionalQueueImpl<E> extends TransactionalUnicastRemoteObject implements TransactionalQueue<E>,
+		Undoable, Cloneable {
+
+	private static final long serialVersionUID = 7571398062773829137L;
+
+	/**
+	 * Elements of the queue, from head to tail.
+	 */
+	private LinkedList<E> elements = new LinkedList<E>();
+
+	public TransactionalQueueImpl() throws RemoteException {
+		super();
+	}
+
+	public E peek() {
+		return elements.peek();
+	}
+
+	public int size() {
+		return elements.size();
+	}
+
+	public boolean isEmpty() {
+		return elements.isEmpty();
+	}
+
+	public void offer(E element) {
+		elements.addLast(element);
+	}
+
+	public void removeHead() {
+		elements.poll();
+	}
+
+	public Runnable inverse(Method method, Object[] args) {
+		if (method.getName().equals("offer")) {
+			final Object element = args[0];
+			return new Runnable() {
+				public void run() {
+					/** The offered element itself, wherever it is now. */
+					Iterator<E> i = elements.descendingIterator();
+					while (i.hasNext()) {
+						if (i.next() == element) {
+							i.remove();
+							return;
+						}
+					}
+				}
+			};
+		}
+
+		if (elements.isEmpty())
+			return null;
+
+		final E head = elements.getFirst();
+		return new Runnable() {
+			public void run() {
+				elements.addFirst(head);
+			}
+		};
+	}
+
+	/**
+	 * Copies the elements, so that buffers are not affected by later writes.
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public Object clone() throws CloneNotSupportedException {
+		TransactionalQueueImpl<E> copy = (TransactionalQueueImpl<E>) super.clone();
+		copy.elements = (LinkedList<E>) elements.clone();
+		return copy;
+	}
+}
@@ -0,0 +1,83 @@
+package put.atomicrmi.optsva.collections;
+
+import java.io.Serializable;
+import java.rmi.RemoteException;
+
+import put.atomicrmi.optsva.Transaction;
+import put.atomicrmi.optsva.TransactionException;
+
+/**
+ * A set whose elements are partitioned among buckets, like the keys of a
+ * {@link TransactionalMap}, so transactions accessing elements in different
+ * buckets run in parallel.
+ * 
+ * @param <E>
+ *            type of elements.
+ */
+public class TransactionalSet<E> implements Serializable {
+
+	private static final long serialVersionUID = -6694563335302339838L;
+
+	/**
+	 * Map from the elements to {@link Boolean#TRUE}.
+	 */
+	private final TransactionalMap<E, Boolean> map;
+
+	/**
+	 * Creates an empty set with the default number of buckets.
+	 * 
+	 * @throws RemoteException
+	 *             when the buckets cannot be exported.
+	 */
+	public TransactionalSet() throws RemoteException {
+		this(TransactionalMap.DEFAULT_BUCKETS);
+	}
+
+	/**
+	 * Creates an empty set with the given number of buckets.
+	 * 
+	 * @param buckets
+	 *            number of buckets.
+	 * @throws RemoteException
+	 *             when the buckets cannot be exported.
+	 */
+	public TransactionalSet(int buckets) throws RemoteException {
+		map = new TransactionalMap<E, Boolean>(buckets);
+	}
+
+	/**
+	 * Declares that the transaction will read and write the given elements.
+	 * 
+	 * @see TransactionalMap#accesses(Transaction, Object...)
+	 */
+	public SetAccess<E> accesses(Transaction transaction, Object... elements) throws TransactionException {
+		return new SetAccess<E>(map.accesses(transaction, elements));
+	}
+
+	/**
+	 * Declares that the transaction will only read the given elements.
+	 * 
+	 * @see TransactionalMap#reads(Transaction, Object...)
+	 */
+	public SetAccess<E> reads(Transaction transaction, Object... elements) throws TransactionException {
+		return new SetAccess<E>(map.reads(transaction, elements));
+	}
+
+	/**
+	 * Declares that the transaction will only write the given elements.
+	 * 
+	 * @see TransactionalMap#writes(Transaction, Object...)
+	 */
+	public SetAccess<E> writes(Transaction transaction, Object... elements) throws TransactionException {
+		return new SetAccess<E>(map.writes(transaction, elements));
+	}
+
+	/**
+	 * Declares that the transaction will read and write any elements.
+	 * 
+	 * @see TransactionalMap#accessesAll(Transaction)
+	 */
+	public SetAccess<E> accessesAll(Transaction transaction) throws TransactionException {
+		return new SetAccess<E>(map.accessesAll(transaction));
+	}
+}
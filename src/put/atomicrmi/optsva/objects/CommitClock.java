@@ -0,0 +1,106 @@
+package put.atomicrmi.optsva.objects;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Source of commit stamps of the versions of {@link VersionHistory} kept on
+ * this node. All the versions committed by a transaction on this node get a
+ * single stamp, drawn when the first of them is installed. A transaction
+ * reading versions sees those whose stamps do not exceed its read stamp, which
+ * is lower than the stamp of any transaction still installing its versions,
+ * so it sees every transaction either entirely or not at all.
+ * 
+ * <p>
+ * A transaction installs its versions only after all of its objects are
+ * released, so every version it is going to install is expected by then.
+ * Stamps are local to the node: transactions committing on many nodes are
+ * stamped separately on each of them.
+ */
+final class CommitClock {
+
+	/**
+	 * Versions of a transaction that are expected but not yet installed or
+	 * discarded.
+	 */
+	private static class Commit {
+		long stamp = 0;
+		int pending = 0;
+	}
+
+	/**
+	 * Last stamp drawn.
+	 */
+	private static long clock = 0;
+
+	/**
+	 * Transactions with expected versions by their identifiers.
+	 */
+	private static final Map<Object, Commit> commits = new HashMap<Object, Commit>();
+
+	/**
+	 * Stamps of the transactions that are installing their versions.
+	 */
+	private static final SortedSet<Long> installing = new TreeSet<Long>();
+
+	private CommitClock() {
+	}
+
+	/**
+	 * Notes that a transaction is going to install or discard a version.
+	 * 
+	 * @param tid
+	 *            transaction identifier.
+	 */
+	static synchronized void expect(Object tid) {
+		Commit commit = commits.get(tid);
+		if (commit == null) {
+			commit = new Commit();
+			commits.put(tid, commit);
+		}
+		commit.pending++;
+	}
+
+	/**
+	 * Gives the stamp of an expected version that is being installed. The
+	 * version must then be finished with {@link #finish(Object)}.
+	 * 
+	 * @param tid
+	 *            transaction identifier.
+	 * @return commit stamp of the transaction.
+	 */
+	static synchronized long install(Object tid) {
+		Commit commit = commits.get(tid);
+		if (commit.stamp == 0) {
+			commit.stamp = ++clock;
+			installing.add(commit.stamp);
+		}
+		return commit.stamp;
+	}
+
+	/**
+	 * Notes that an expected version was installed or discarded.
+	 * 
+	 * @param tid
+	 *            transaction identifier.
+	 */
+	static synchronized void finish(Object tid) {
+		Commit commit = commits.get(tid);
+		if (--commit.pending == 0) {
+			commits.remove(tid);
+			if (commit.stamp != 0)
+				installing.remove(commit.stamp);
+		}
+	}
+
+	/**
+	 * Gives the stamp of the latest versions that can be read consistently.
+	 * 
+	 * @return read stamp.
+	 */
+	static synchronized long getReadStamp() {
+		return installing.isEmpty() ? clock : installing.first() - 1;
+	}
+}
@@ -0,0 +1,217 @@
+package put.atomicrmi.optsva.objects;
+
+import java.lang.reflect.Method;
+import java.rmi.RemoteException;
+import java.util.UUID;
+
+import put.atomicrmi.optsva.Access.Mode;
+import put.atomicrmi.optsva.Commutative;
+import put.atomicrmi.optsva.Escrow;
+import put.atomicrmi.optsva.Transaction;
+import put.atomicrmi.optsva.TransactionException;
+import put.atomicrmi.optsva.TransactionRef;
+import put.atomicrmi.optsva.sync.TaskController;
+import put.atomicrmi.optsva.sync.TransactionFailureMonitorImpl;
+
+/**
+ * An object proxy for objects accessed in {@link Mode#COMMUTATIVE} mode. It
+ * only logs invocations of {@link Commutative} methods, so the transaction
+ * does not wait for other transactions to release the object while it
+ * executes.
+ * 
+ * The transaction takes a version of the object when it starts, like with the
+ * other modes, unless it accesses all its objects in {@link Mode#COMMUTATIVE}
+ * mode, in which case it takes the versions when it commits (see
+ * {@link Transaction#commit()}). Either way, the versions of all the objects
+ * of the transaction are taken together, so other transactions see either all
+ * or none of its effects.
+ * 
+ * The logged invocations are applied before commit, as soon as every
+ * transaction with a lower version is finished, so no transaction that may
+ * still be rolled back can restore the object to a state preceding them. The
+ * object is released only after they are applied.
+ */
+public class CommutativeObjectProxyImpl extends ObjectProxyImpl {
+
+	/**
+	 * Whether the transaction took a version of the object.
+	 */
+	private boolean versioned = false;
+
+	/**
+	 * Whether the transaction started without taking a version, which is then
+	 * taken at commit.
+	 */
+	private boolean deferred = false;
+
+	/**
+	 * Invocations applied to the object, kept until the transaction finishes
+	 * to release their reservations (see {@link Escrow}).
+	 */
+	private WriteLog applied = null;
+
+	public CommutativeObjectProxyImpl(TransactionRef transaction, UUID tid, TransactionalUnicastRemoteObject object,
+			long calls) throws RemoteException {
+		super(transaction, tid, object, calls, 0, calls, Mode.COMMUTATIVE);
+	}
+
+	/**
+	 * Starts logging the invocations of a new transaction attempt.
+	 * 
+	 * @throws RemoteException
+	 *             when failure monitoring cannot be started.
+	 */
+	private void begin() throws RemoteException {
+		TransactionFailureMonitorImpl.getInstance().startMonitoring(this);
+
+		logBuffer = new WriteLog(methods);
+		applied = null;
+		snapshot = null;
+		mv = 0;
+		versioned = false;
+
+		over = false;
+	}
+
+	/**
+	 * Notifies this object proxy that the transaction is starting without
+	 * taking a version of the object. The version is taken by
+	 * {@link #startTransaction()} when the transaction commits, and the
+	 * invocations logged until then are kept.
+	 * 
+	 * @throws RemoteException
+	 *             when failure monitoring cannot be started.
+	 */
+	synchronized void defer() throws RemoteException {
+		begin();
+		deferred = true;
+	}
+
+	@Override
+	public synchronized void startTransaction() throws RemoteException {
+		if (!deferred)
+			begin();
+		deferred = false;
+
+		px = object.startTransaction(uid);
+		versioned = true;
+	}
+
+	/**
+	 * Releases the version taken for a transaction that could not be started
+	 * or could not take all its versions at commit. The logged invocations
+	 * are kept until the transaction is finished.
+	 */
+	@Override
+	void abandon(boolean started) throws RemoteException {
+		try {
+			if (started) {
+				TransactionFailureMonitorImpl.getInstance().stopMonitoring(this);
+				object.releaseTransaction();
+				object.finishTransaction(uid, null, true);
+				versioned = false;
+			}
+		} finally {
+			object.transactionUnlock(uid);
+		}
+	}
+
+	@Override
+	public Object invoke(int index, Object[] args) throws Exception {
+		Method method = methods.get(index);
+		if (method == null)
+			throw new TransactionException("Unknown method index: " + index + ".");
+
+		if (methods.getMode(index) != Mode.COMMUTATIVE)
+			throw new TransactionException("Method access mode was " + methods.getMode(index)
+					+ " which does not agree with the delared " + Mode.COMMUTATIVE);
+
+		synchronized (this) {
+			if (over || logBuffer == null)
+				throw new TransactionException("Attempting to access transactional object after commit.");
+
+			if (ub != Transaction.INF && mv == ub)
+				throw new TransactionException("Upper bound is lower then number of invocations: " + mv + "/" + ub);
+
+			if (object instanceof Escrow && !((Escrow) object).reserve(method, args))
+				throw new TransactionException("Escrow rejected invocation of " + method.getName() + ".");
+
+			logBuffer.add(index, args);
+			mv++;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Applies the logged invocations once the transactions with lower
+	 * versions are finished and releases the object. The state preceding them
+	 * is kept, in case the transaction is rolled back after all.
+	 */
+	@Override
+	public synchronized boolean waitForSnapshot(boolean readThread) throws RemoteException {
+		if (!versioned || logBuffer == null)
+			return true;
+
+		object.waitForCounter(px - 1);
+		object.waitForSnapshot(px - 1);
+
+		object.transactionLock(uid);
+		try {
+			if (mv > 0) {
+				snapshot = object.snapshot();
+				object.capture(snapshot);
+				applyWriteLog();
+				object.stage(uid);
+				object.setCurrentVersion(px);
+			}
+			object.releaseTransaction();
+		} finally {
+			object.transactionUnlock(uid);
+		}
+
+		applied = logBuffer;
+		logBuffer = null;
+		TaskController.theOneThread.ping();
+
+		/** Logged invocations never conflict, so commit is always allowed. */
+		return true;
+	}
+
+	@Override
+	public void finishTransaction(boolean restore, boolean readThread) throws RemoteException {
+		WriteLog log;
+		boolean pending;
+		synchronized (this) {
+			if (over)
+				return;
+
+			pending = logBuffer != null;
+			log = pending ? logBuffer : applied;
+			logBuffer = null;
+			applied = null;
+			over = true;
+		}
+
+		TransactionFailureMonitorImpl.getInstance().stopMonitoring(this);
+
+		try {
+			if (versioned) {
+				/** The object is released here if the invocations were never applied. */
+				if (pending)
+					object.releaseTransaction();
+				object.finishTransaction(uid, snapshot, restore);
+				TaskController.theOneThread.ping();
+			}
+		} finally {
+			snapshot = null;
+			if (object instanceof Escrow)
+				log.release((Escrow) object);
+		}
+	}
+
+	@Override
+	public void free() throws RemoteException {
+		// The object is released once the logged invocations are applied.
+	}
+}
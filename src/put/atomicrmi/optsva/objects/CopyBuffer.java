@@ -0,0 +1,39 @@
+package put.atomicrmi.optsva.objects;
+
+/**
+ * Copy of a state of a remote object, read by transactions after they release
+ * the object. A copy is shared by all the transactions reading the same state,
+ * so it must never be modified. It is counted by its readers and dropped by
+ * the object when the last of them is finished (see
+ * {@link TransactionalUnicastRemoteObject#acquireBuffer()}).
+ */
+class CopyBuffer {
+
+	/**
+	 * Stamp of the copied state.
+	 */
+	private final long stamp;
+
+	/**
+	 * Copy of the object.
+	 */
+	private final Object copy;
+
+	/**
+	 * Number of transactions reading the copy, guarded by the object.
+	 */
+	int readers = 0;
+
+	CopyBuffer(long stamp, Object copy) {
+		this.stamp = stamp;
+		this.copy = copy;
+	}
+
+	long getStamp() {
+		return stamp;
+	}
+
+	Object getCopy() {
+		return copy;
+	}
+}
@@ -0,0 +1,272 @@
+package put.atomicrmi.optsva.objects;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import put.atomicrmi.optsva.Access;
+import put.atomicrmi.optsva.Access.Mode;
+import put.atomicrmi.optsva.Commutative;
+import put.atomicrmi.optsva.Overwrites;
+import put.util.ids.IdentifiableRemote;
+
+/**
+ * Numbers the methods of the remote interfaces of a remote object, so that a
+ * method can be identified by its index instead of its name and parameter
+ * types. Methods are numbered in the order of their signatures, so the client
+ * and the server compute the same numbering as long as they see the same
+ * remote interfaces. The interfaces are sent to the client together with an
+ * object proxy, so the client builds its table without asking the server.
+ * 
+ * The table also holds everything else that is needed to invoke a method, so
+ * that nothing is looked up by reflection or annotation scanning during an
+ * invocation. There is a single table per set of remote interfaces, created
+ * when the interfaces are used for the first time.
+ */
+class MethodTable {
+
+	/**
+	 * Method tables by the classes of remote objects.
+	 */
+	private static final Map<Class<?>, MethodTable> tables = new ConcurrentHashMap<Class<?>, MethodTable>();
+
+	/**
+	 * Method tables by the remote interfaces they number.
+	 */
+	@SuppressWarnings("rawtypes")
+	private static final Map<Set<Class>, MethodTable> tablesByInterfaces
+			= new ConcurrentHashMap<Set<Class>, MethodTable>();
+
+	/**
+	 * Remote interfaces of the remote object.
+	 */
+	@SuppressWarnings("rawtypes")
+	private final Set<Class> interfaces;
+
+	/**
+	 * Methods by their indices. The methods are accessible.
+	 */
+	private final Method[] methods;
+
+	/**
+	 * Access modes of the methods by their indices.
+	 */
+	private final Mode[] modes;
+
+	/**
+	 * Whether the methods are annotated with {@link Overwrites}, by their
+	 * indices.
+	 */
+	private final boolean[] overwrites;
+
+	/**
+	 * Indices of methods. There may be more than one method with the same
+	 * index if it is declared by more than one interface.
+	 */
+	private final Map<Method, Integer> indices;
+
+	/**
+	 * Gives the method table of a class of remote objects.
+	 * 
+	 * @param objClass
+	 *            class of remote objects.
+	 * @return method table.
+	 */
+	static MethodTable get(Class<?> objClass) {
+		MethodTable table = tables.get(objClass);
+		if (table == null) {
+			table = get(ObjectProxyHandler.getRemoteInterfaces(objClass));
+			tables.put(objClass, table);
+		}
+		return table;
+	}
+
+	/**
+	 * Gives the method table of the given remote interfaces.
+	 * 
+	 * @param interfaces
+	 *            remote interfaces, as given by {@link #getInterfaces()}.
+	 * @return method table.
+	 */
+	@SuppressWarnings("rawtypes")
+	static MethodTable get(Class[] interfaces) {
+		return get(new HashSet<Class>(Arrays.asList(interfaces)));
+	}
+
+	/**
+	 * Gives the method table of the given set of remote interfaces.
+	 * 
+	 * @param interfaces
+	 *            remote interfaces, not modified afterwards.
+	 * @return method table.
+	 */
+	@SuppressWarnings("rawtypes")
+	private static MethodTable get(Set<Class> interfaces) {
+		MethodTable table = tablesByInterfaces.get(interfaces);
+		if (table == null) {
+			/** Racing threads build equal tables, so either one will do. */
+			table = new MethodTable(interfaces);
+			tablesByInterfaces.put(interfaces, table);
+		}
+		return table;
+	}
+
+	/**
+	 * Creates a method table for the given remote interfaces. Unique
+	 * identifiers of remote objects are never obtained through object proxies,
+	 * so {@link IdentifiableRemote#getUID()} is left out.
+	 * 
+	 * @param interfaces
+	 *            remote interfaces.
+	 */
+	@SuppressWarnings("rawtypes")
+	private MethodTable(Set<Class> interfaces) {
+		SortedMap<String, List<Method>> signatures = new TreeMap<String, List<Method>>();
+
+		for (Class<?> c : interfaces) {
+			for (Method m : c.getMethods()) {
+				if (m.getDeclaringClass() == IdentifiableRemote.class)
+					continue;
+
+				String signature = signature(m);
+				List<Method> same = signatures.get(signature);
+				if (same == null) {
+					same = new ArrayList<Method>(1);
+					signatures.put(signature, same);
+				}
+				same.add(m);
+			}
+		}
+
+		this.interfaces = Collections.unmodifiableSet(interfaces);
+		methods = new Method[signatures.size()];
+		modes = new Mode[signatures.size()];
+		overwrites = new boolean[signatures.size()];
+		indices = new HashMap<Method, Integer>();
+
+		int index = 0;
+		for (List<Method> same : signatures.values()) {
+			methods[index] = same.get(0);
+			methods[index].setAccessible(true);
+			modes[index] = getAccessMode(methods[index]);
+			overwrites[index] = methods[index].isAnnotationPresent(Overwrites.class)
+					&& modes[index] != Mode.COMMUTATIVE;
+			for (Method m : same)
+				indices.put(m, index);
+			index++;
+		}
+	}
+
+	/**
+	 * Gives the remote interfaces of the remote object.
+	 * 
+	 * @return unmodifiable set of remote interfaces.
+	 */
+	@SuppressWarnings("rawtypes")
+	Set<Class> getInterfaces() {
+		return interfaces;
+	}
+
+	/**
+	 * Gives the method under the given index.
+	 * 
+	 * @param index
+	 *            method index.
+	 * @return method or <code>null</code> if there is no method under the
+	 *         index.
+	 */
+	Method get(int index) {
+		if (index < 0 || index >= methods.length)
+			return null;
+		return methods[index];
+	}
+
+	/**
+	 * Gives the access mode of the method under the given index.
+	 * 
+	 * @param index
+	 *            valid method index.
+	 * @return {@link Mode#COMMUTATIVE} for methods annotated with
+	 *         {@link Commutative}, otherwise access mode declared by the
+	 *         {@link Access} annotation or {@link Mode#ANY} if there is none.
+	 */
+	Mode getMode(int index) {
+		return modes[index];
+	}
+
+	/**
+	 * Checks whether the method under the given index makes earlier calls to
+	 * itself redundant.
+	 * 
+	 * @param index
+	 *            valid method index.
+	 * @return <code>true</code> if the method is annotated with
+	 *         {@link Overwrites}.
+	 */
+	boolean overwrites(int index) {
+		return overwrites[index];
+	}
+
+	/**
+	 * Gives the number of methods in the table.
+	 * 
+	 * @return number of methods.
+	 */
+	int size() {
+		return methods.length;
+	}
+
+	/**
+	 * Gives the index of the given method.
+	 * 
+	 * @param method
+	 *            method declared by one of the remote interfaces.
+	 * @return method index or -1 if the method is not in the table.
+	 */
+	int indexOf(Method method) {
+		Integer index = indices.get(method);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * Determine the access mode of a method from annotations.
+	 * 
+	 * @param method
+	 * @return access mode
+	 */
+	private static Mode getAccessMode(Method method) {
+		if (method.isAnnotationPresent(Commutative.class)) {
+			return Mode.COMMUTATIVE;
+		}
+
+		Access access = method.getAnnotation(Access.class);
+		if (access == null) {
+			return Mode.ANY;
+		}
+		return access.value();
+	}
+
+	/**
+	 * Gives the signature of the method: its name and the names of the types
+	 * of its parameters.
+	 * 
+	 * @param method
+	 *            method.
+	 * @return signature of the method.
+	 */
+	private static String signature(Method method) {
+		StringBuilder builder = new StringBuilder(method.getName()).append('(');
+		for (Class<?> type : method.getParameterTypes())
+			builder.append(type.getName()).append(',');
+		return builder.append(')').toString();
+	}
+}
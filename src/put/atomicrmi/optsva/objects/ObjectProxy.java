@@ -145,18 +145,70 @@ public interface ObjectProxy extends IdentifiableRemote {
 	 */
 	void update() throws RemoteException;
 
+	/**
+	 * Gives a copy of the read-only buffer that is sent to the caller by
+	 * value, so that the caller can read from it locally. The copy is given
+	 * once it is ready, only if the object is accessed in read-only mode and
+	 * the class of the object is not annotated with
+	 * {@link put.atomicrmi.optsva.RemoteBuffer}.
+	 * 
+	 * @return copy of the buffer or <code>null</code> if it cannot be given.
+	 * @throws RemoteException
+	 *             when the copy cannot be transferred or remote invocation
+	 *             fails.
+	 */
+	Object getBufferCopy() throws RemoteException;
+
+	/**
+	 * Invokes a method of the wrapped remote object on behalf of the
+	 * transaction. The whole invocation takes place where this object proxy
+	 * is placed: the pre-read or pre-write synchronization, the execution of
+	 * the method on the remote object, a buffer, or the log buffer, and the
+	 * post-read or post-write synchronization. Hence, a single remote call is
+	 * needed per invocation.
+	 * 
+	 * Methods are identified by their indices in the table of methods of the
+	 * remote interfaces of the wrapped object, ordered by their signatures.
+	 * 
+	 * @param method
+	 *            method index
+	 * @param args
+	 *            argument values
+	 * @return result of the method or <code>null</code> if the method was
+	 *         logged for later execution.
+	 * @throws Exception
+	 *             exception thrown by the method, or {@link RemoteException}
+	 *             when synchronization fails or remote invocation fails.
+	 */
+	Object invoke(int method, Object[] args) throws Exception;
+
+	/**
+	 * Invokes a sequence of write methods of the wrapped remote object on
+	 * behalf of the transaction, as if {@link #invoke(int, Object[])} was
+	 * called for each of them in turn. Used to send the writes that the client
+	 * buffered, because they would only be logged, in a single remote call.
+	 * 
+	 * @param methods
+	 *            method indices
+	 * @param args
+	 *            argument values of each method
+	 * @throws Exception
+	 *             exception thrown by the first invocation that failed; the
+	 *             following invocations are not performed.
+	 */
+	void invokeAll(int[] methods, Object[][] args) throws Exception;
+
 	/**
 	 * Admit a method execution into the log buffer.
 	 * 
-	 * @param methodName
-	 *            method name
-	 * @param argTypes
-	 *            argument types
+	 * @param method
+	 *            index of the method among the methods of the remote
+	 *            interfaces of the wrapped object
 	 * @param args
 	 *            argument values
 	 * @throws RemoteException
 	 */
-	void log(String methodName, Class<?>[] argTypes, Object[] args) throws RemoteException;
+	void log(int method, Object[] args) throws RemoteException;
 
 	/**
 	 * Execute pre-read synchronization and preparation.
@@ -21,18 +21,28 @@
  */
 package put.atomicrmi.optsva.objects;
 
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.rmi.NoSuchObjectException;
+import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import net.sf.cglib.proxy.Enhancer;
+import net.sf.cglib.proxy.Factory;
 import net.sf.cglib.proxy.InvocationHandler;
-import put.atomicrmi.optsva.Access;
+import put.atomicrmi.optsva.Access.Mode;
+import put.atomicrmi.optsva.RemoteBuffer;
 import put.atomicrmi.optsva.RollbackForcedException;
+import put.atomicrmi.optsva.Transaction;
 import put.atomicrmi.optsva.TransactionException;
-import put.atomicrmi.optsva.Access.Mode;
-import put.atomicrmi.optsva.objects.ObjectProxy.BufferType;
+import put.util.ids.IdentifiableRemote;
 
 /**
  * Wrapper used to intercept remote object invocations. This is an
@@ -53,16 +63,133 @@ public class ObjectProxyHandler implements InvocationHandler {
 	 */
 	private static Method writeReplaceMethod;
 
+	/**
+	 * Method giving the unique identifier of the wrapped object.
+	 */
+	private static Method getUIDMethod;
+
+	/**
+	 * The {@link ObjectProxy#finishTransaction(boolean, boolean)} method.
+	 */
+	private static Method finishTransactionMethod;
+
 	/**
 	 * Interfaces specific for proxy mechanism.
 	 */
 	private static Class<?>[] proxyInterfaces = new Class<?>[] { ObjectProxy.class, ObjectProxySerializer.class };
 
+	/**
+	 * Prototypes of wrapped object proxies by the method tables of the remote
+	 * interfaces they implement. New wrapped object proxies are instantiated
+	 * from the prototypes, so that proxy classes are generated once per set of
+	 * interfaces.
+	 */
+	private static final Map<MethodTable, Factory> prototypes = new ConcurrentHashMap<MethodTable, Factory>();
+
+	/**
+	 * Invocation handler of the prototypes. Prototypes are never invoked.
+	 */
+	private static final InvocationHandler prototypeHandler = new InvocationHandler() {
+		public Object invoke(Object obj, Method method, Object[] args) throws Throwable {
+			throw new TransactionException("Prototype of an object proxy cannot be invoked.");
+		}
+	};
+
 	/**
 	 * An instance of {@link ObjectProxyImpl} or remote proxy to this object proxy.
 	 */
 	private ObjectProxy proxy;
 
+	/**
+	 * Methods of the remote interfaces of the wrapped remote object, numbered
+	 * in the same way as by the object proxy.
+	 */
+	private final MethodTable methods;
+
+	/**
+	 * Unique identifier of the wrapped remote object.
+	 */
+	private final UUID objectId;
+
+	/**
+	 * The node where the wrapped object proxy is placed.
+	 */
+	private final TransactionalNode node;
+
+	/**
+	 * Unique identifier of the node where the wrapped object proxy is placed.
+	 */
+	private final UUID nodeId;
+
+	/**
+	 * Handle of the wrapped object proxy in its node.
+	 */
+	private final long handle;
+
+	/**
+	 * Whether the class of the wrapped object is annotated with
+	 * {@link RemoteBuffer}, so that its buffers are never copied to this
+	 * handler.
+	 */
+	private final boolean remoteBuffer;
+
+	/**
+	 * Access mode to the wrapped object declared by the transaction.
+	 */
+	private Mode mode = Mode.ANY;
+
+	/**
+	 * Upper bound on the number of invocations of the wrapped object proxy.
+	 */
+	private long calls = Transaction.INF;
+
+	/**
+	 * Upper bound on the number of writes to the wrapped object proxy. No
+	 * writes are buffered until the bounds are set.
+	 */
+	private long writes = 0;
+
+	/**
+	 * Whether write-only invocations are buffered by this handler instead of
+	 * being passed to the object proxy one by one.
+	 */
+	private boolean buffering = false;
+
+	/**
+	 * Number of writes buffered since buffering started.
+	 */
+	private long buffered;
+
+	/**
+	 * Method indices of the writes that were buffered but not yet passed to
+	 * the object proxy.
+	 */
+	private int[] pendingMethods;
+
+	/**
+	 * Arguments of the writes that were buffered but not yet passed to the
+	 * object proxy.
+	 */
+	private Object[][] pendingArgs;
+
+	/**
+	 * Number of writes that were buffered but not yet passed to the object
+	 * proxy.
+	 */
+	private int pending;
+
+	/**
+	 * Copy of the read-only buffer of the object proxy, used to read from the
+	 * wrapped object without remote invocations.
+	 */
+	private Object localBuffer;
+
+	/**
+	 * Whether {@link #localBuffer} was already requested from the object
+	 * proxy in the current execution of the transaction.
+	 */
+	private boolean localBufferRequested;
+
 	static {
 		try {
 			neutralMethods.add(Object.class.getMethod("equals", new Class<?>[] { Object.class }));
@@ -73,6 +200,9 @@ public class ObjectProxyHandler implements InvocationHandler {
 				neutralMethods.add(m);
 
 			writeReplaceMethod = ObjectProxySerializer.class.getMethod("writeReplace", new Class<?>[] {});
+			getUIDMethod = IdentifiableRemote.class.getMethod("getUID", new Class<?>[] {});
+			finishTransactionMethod = ObjectProxy.class.getMethod("finishTransaction", new Class<?>[] { boolean.class,
+					boolean.class });
 		} catch (SecurityException e) {
 			e.printStackTrace();
 		} catch (NoSuchMethodException e) {
@@ -81,7 +211,8 @@ public class ObjectProxyHandler implements InvocationHandler {
 	}
 
 	/**
-	 * Wraps given object proxy by this invocation handler implementation.
+	 * Wraps given object proxy by this invocation handler implementation. The
+	 * object proxy is placed on the current node.
 	 * 
 	 * @param proxy
 	 *            proxy to be wrapped.
@@ -89,9 +220,76 @@ public class ObjectProxyHandler implements InvocationHandler {
 	 * @throws RemoteException
 	 *             when remote execution failed.
 	 */
-	public static Object create(ObjectProxy proxy) throws RemoteException {
-		return Enhancer.create(null, getArrayOfRemoteInterfaces(proxy.getWrapped().getClass()), new ObjectProxyHandler(
-				proxy));
+	public static Object create(ObjectProxyImpl proxy) throws RemoteException {
+		TransactionalNodeImpl node = TransactionalNodeImpl.getInstance();
+		Class<?> objClass = proxy.getWrapped().getClass();
+		return create(proxy, MethodTable.get(objClass), proxy.getUID(), node, node.getUID(), proxy.getHandle(),
+				objClass.isAnnotationPresent(RemoteBuffer.class));
+	}
+
+	/**
+	 * Wraps given object proxy by this invocation handler implementation.
+	 * 
+	 * @param proxy
+	 *            proxy to be wrapped.
+	 * @param methods
+	 *            methods of the remote interfaces of the wrapped object.
+	 * @param objectId
+	 *            unique identifier of the wrapped remote object.
+	 * @param node
+	 *            node where the object proxy is placed.
+	 * @param nodeId
+	 *            unique identifier of the node.
+	 * @param handle
+	 *            handle of the object proxy in the node.
+	 * @param remoteBuffer
+	 *            whether the class of the wrapped object is annotated with
+	 *            {@link RemoteBuffer}.
+	 * @return wrapped object proxy using this invocation handler.
+	 */
+	static Object create(ObjectProxy proxy, MethodTable methods, UUID objectId, TransactionalNode node, UUID nodeId,
+			long handle, boolean remoteBuffer) {
+		ObjectProxyHandler handler = new ObjectProxyHandler(proxy, methods, objectId, node, nodeId, handle,
+				remoteBuffer);
+
+		Factory prototype = prototypes.get(methods);
+		if (prototype == null) {
+			/** Proxy classes are cached by cglib, so racing threads share them. */
+			prototype = createPrototype(methods);
+			prototypes.put(methods, prototype);
+		}
+
+		return prototype.newInstance(handler);
+	}
+
+	/**
+	 * Generates the proxy class implementing the remote interfaces from the
+	 * given method table and the interfaces of the proxy mechanism, and
+	 * creates its instance that serves as a prototype of object proxies.
+	 * 
+	 * @param methods
+	 *            methods of the remote interfaces of the wrapped objects.
+	 * @return prototype of object proxies.
+	 */
+	@SuppressWarnings("rawtypes")
+	private static Factory createPrototype(MethodTable methods) {
+		Set<Class> interfaces = new HashSet<Class>(methods.getInterfaces());
+		for (Class c : proxyInterfaces)
+			interfaces.add(c);
+
+		return (Factory) Enhancer.create(null, interfaces.toArray(new Class[] {}), prototypeHandler);
+	}
+
+	/**
+	 * Gives the invocation handler of an object proxy wrapped by
+	 * {@link #create(ObjectProxyImpl)}.
+	 * 
+	 * @param proxy
+	 *            wrapped object proxy.
+	 * @return invocation handler of the object proxy.
+	 */
+	public static ObjectProxyHandler getHandler(Object proxy) {
+		return (ObjectProxyHandler) ((Factory) proxy).getCallback(0);
 	}
 
 	/**
@@ -99,147 +297,326 @@ public class ObjectProxyHandler implements InvocationHandler {
 	 * 
 	 * @param proxy
 	 *            object proxy that is wrapped.
+	 * @param methods
+	 *            methods of the remote interfaces of the wrapped object.
+	 * @param objectId
+	 *            unique identifier of the wrapped remote object.
+	 * @param node
+	 *            node where the object proxy is placed.
+	 * @param nodeId
+	 *            unique identifier of the node.
+	 * @param handle
+	 *            handle of the object proxy in the node.
+	 * @param remoteBuffer
+	 *            whether the class of the wrapped object is annotated with
+	 *            {@link RemoteBuffer}.
 	 */
-	private ObjectProxyHandler(ObjectProxy proxy) {
+	private ObjectProxyHandler(ObjectProxy proxy, MethodTable methods, UUID objectId, TransactionalNode node,
+			UUID nodeId, long handle, boolean remoteBuffer) {
 		this.proxy = proxy;
+		this.methods = methods;
+		this.objectId = objectId;
+		this.node = node;
+		this.nodeId = nodeId;
+		this.handle = handle;
+		this.remoteBuffer = remoteBuffer;
 	}
 
-	public Object invoke(Object obj, Method method, Object[] args) throws Throwable {
-		if (neutralMethods.contains(method)) {
-			return method.invoke(proxy, args);
-		}
+	/**
+	 * Gives the unique identifier of the wrapped remote object. The identifier
+	 * is obtained once, when the object proxy is created, so no remote call is
+	 * made.
+	 * 
+	 * @return remote object unique identifier.
+	 */
+	public UUID getObjectId() {
+		return objectId;
+	}
 
-		if (method.getName().equals("finalize")) {
-			return method.invoke(obj, args);
-		}
+	/**
+	 * Gives the node where the wrapped object proxy is placed.
+	 * 
+	 * @return node reference.
+	 */
+	public TransactionalNode getNode() {
+		return node;
+	}
 
-		if (writeReplaceMethod.equals(method)) {
-			return new ObjectProxySerializerImpl(proxy);
-		}
+	/**
+	 * Gives the unique identifier of the node where the wrapped object proxy
+	 * is placed.
+	 * 
+	 * @return node unique identifier.
+	 */
+	public UUID getNodeId() {
+		return nodeId;
+	}
 
-		Mode mode = getAccessMode(method);
-		if (!modesAgree(mode, proxy.getMode())) {
-			throw new TransactionException("Method access mode was " + mode + " which does not agree with the delared "
-					+ proxy.getMode());
-		}
+	/**
+	 * Gives the handle of the wrapped object proxy in its node.
+	 * 
+	 * @return object proxy handle.
+	 */
+	public long getHandle() {
+		return handle;
+	}
 
-		/**
-		 * PreSync
-		 */
-		BufferType bufferred;
-		try {
-			switch (mode) {
-			case READ_ONLY:
-				bufferred = proxy.preRead();
-				break;
-			case WRITE_ONLY:
-				bufferred = proxy.preWrite();
-				break;
-			default:
-				throw new RemoteException("Illegal access type: " + mode);
-			}
-		} catch (RemoteException e) {
-			if (e.getCause() instanceof RollbackForcedException) {
-				throw e.getCause();
-			} else {
-				if (e.getCause() instanceof TransactionException) {
-					throw e.getCause();
-				} else {
-					throw e;
-				}
-			}
-		}
+	/**
+	 * Gives a reference to the wrapped object proxy that can be sent to
+	 * another node. An object proxy that is placed on the current node is
+	 * exported first.
+	 * 
+	 * @return remote reference to the wrapped object proxy.
+	 * @throws RemoteException
+	 *             when the object proxy cannot be exported.
+	 */
+	private ObjectProxy export() throws RemoteException {
+		if (proxy instanceof ObjectProxyImpl)
+			return ((ObjectProxyImpl) proxy).export();
+		return proxy;
+	}
 
-		/**
-		 * Execute method on object or buffer
-		 */
-		Object result = null;
-		switch (bufferred) {
-		case LOG_BUFFER:
-			proxy.log(method.getName(), method.getParameterTypes(), args);
-			// Note: result == null; Not a huge problem, since this is
-			// write-only.
-			// TODO return some sort of promise/future
-			break;
-		case NONE:
-			method.setAccessible(true);
-			result = method.invoke(proxy.getWrapped(), args);
-			break;
-		case COPY_BUFFER:
-			method.setAccessible(true);
-			result = method.invoke(proxy.getBuffer(), args);
-		}
+	/**
+	 * Sets the access mode and the upper bounds on the number of invocations
+	 * of the wrapped object declared by the transaction. They determine how
+	 * invocations can be optimized by this handler.
+	 * 
+	 * @param mode
+	 *            access mode.
+	 * @param calls
+	 *            upper bound on the number of invocations or
+	 *            {@link Transaction#INF}.
+	 * @param writes
+	 *            upper bound on the number of writes or {@link Transaction#INF}.
+	 */
+	public synchronized void setAccess(Mode mode, long calls, long writes) {
+		this.mode = mode;
+		this.calls = calls;
+		this.writes = writes;
+	}
 
-		/**
-		 * PostSync
-		 */
-		switch (mode) {
-		case READ_ONLY:
-			proxy.postRead();
-			break;
-		case WRITE_ONLY:
-			proxy.postWrite();
-			break;
-		default:
-			throw new RemoteException("Illegal access type: " + mode);
-		}
+	/**
+	 * Gives the access mode to the wrapped object declared by the
+	 * transaction.
+	 * 
+	 * @return access mode.
+	 */
+	public synchronized Mode getAccessMode() {
+		return mode;
+	}
 
-		return result;
+	/**
+	 * Notifies the handler that the transaction started, so the wrapped
+	 * object proxy was not invoked yet.
+	 * 
+	 * Until the transaction reads from the wrapped object, its writes are only
+	 * logged by the object proxy, so they are kept by this handler and passed
+	 * to the object proxy in a single remote call. Buffered writes are passed
+	 * on before any other invocation of the object proxy and when the upper
+	 * bound on the number of invocations or writes is reached, which ends
+	 * buffering. If the transaction is rolled back instead, they are dropped
+	 * (see {@link #discard()}).
+	 * 
+	 * If the object is accessed in read-only mode, the transaction reads from
+	 * a buffer, which is copied to this handler on the first read (see
+	 * {@link ObjectProxy#getBufferCopy()}).
+	 */
+	public synchronized void start() {
+		buffering = mode != Mode.READ_ONLY && mode != Mode.COMMUTATIVE && writes != 0;
+		buffered = 0;
+		localBuffer = null;
+		localBufferRequested = false;
 	}
 
 	/**
-	 * Check whether the method access mode agrees with the declared access
-	 * mode.
+	 * Buffers a write, if possible.
 	 * 
-	 * @param actual
-	 *            the access mode of the method
-	 * @param declared
-	 *            the access mode declared at transaction start
-	 * @return <code>true</code> if the method mode is contained within the
-	 *         declared mode and <code>false</code> otherwise
-	 */
-	private boolean modesAgree(Mode actual, Mode declared) {
-		if (declared == Mode.ANY) {
-			return true;
+	 * @param index
+	 *            method index.
+	 * @param args
+	 *            arguments of the method.
+	 * @return <code>true</code> if the invocation was buffered.
+	 * @throws Exception
+	 *             when the invocation reached the upper bound and the buffered
+	 *             writes could not be passed to the object proxy.
+	 */
+	private synchronized boolean buffer(int index, Object[] args) throws Exception {
+		if (!buffering)
+			return false;
+
+		/** Commutative methods are writes in the other modes. */
+		Mode access = methods.getMode(index);
+		if (access != Mode.WRITE_ONLY && access != Mode.COMMUTATIVE)
+			return false;
+
+		if (pendingMethods == null) {
+			pendingMethods = new int[8];
+			pendingArgs = new Object[8][];
+		} else if (pending == pendingMethods.length) {
+			pendingMethods = Arrays.copyOf(pendingMethods, pending * 2);
+			pendingArgs = Arrays.copyOf(pendingArgs, pending * 2);
 		}
 
-		if (actual == declared) {
-			return true;
+		pendingMethods[pending] = index;
+		pendingArgs[pending] = args;
+		pending++;
+		buffered++;
+
+		if (buffered == calls || buffered == writes)
+			flush();
+
+		return true;
+	}
+
+	/**
+	 * Drops the buffered writes of a transaction that is rolled back, so that
+	 * they are never passed to the object proxy, and ends buffering.
+	 */
+	public synchronized void discard() {
+		buffering = false;
+		if (pending == 0)
+			return;
+
+		Arrays.fill(pendingArgs, 0, pending, null);
+		pending = 0;
+	}
+
+	/**
+	 * Passes the buffered writes to the object proxy and ends buffering.
+	 * 
+	 * @throws Exception
+	 *             when any of the writes fails.
+	 */
+	private synchronized void flush() throws Exception {
+		buffering = false;
+		if (pending == 0)
+			return;
+
+		int[] methods = Arrays.copyOf(pendingMethods, pending);
+		Object[][] args = Arrays.copyOf(pendingArgs, pending);
+		Arrays.fill(pendingArgs, 0, pending, null);
+		pending = 0;
+
+		proxy.invokeAll(methods, args);
+	}
+
+	/**
+	 * Gives the copy of the read-only buffer of the object proxy, if the
+	 * wrapped object is accessed in read-only mode. The copy is requested on
+	 * first use. It is not requested from an object proxy placed on the
+	 * current node, which reads from the buffer directly anyway, nor for
+	 * objects whose buffers are never copied.
+	 * 
+	 * @return copy of the buffer or <code>null</code> if reads have to be
+	 *         passed to the object proxy.
+	 */
+	private synchronized Object getLocalBuffer() {
+		if (mode != Mode.READ_ONLY && mode != Mode.SNAPSHOT || remoteBuffer || proxy instanceof ObjectProxyImpl)
+			return null;
+
+		if (!localBufferRequested) {
+			localBufferRequested = true;
+			try {
+				localBuffer = proxy.getBufferCopy();
+			} catch (RemoteException e) {
+				/** Copy cannot be transferred, so read remotely. */
+				localBuffer = null;
+			}
+
+			/** Remote objects are exported again when deserialized. */
+			if (localBuffer instanceof Remote) {
+				try {
+					UnicastRemoteObject.unexportObject((Remote) localBuffer, true);
+				} catch (NoSuchObjectException e) {
+					// Not exported.
+				}
+			}
 		}
 
-		return false;
+		return localBuffer;
 	}
 
 	/**
-	 * Determine the access mode of a method from annotations.
+	 * Gives the exception that should be thrown to the caller of the wrapped
+	 * object instead of a remote exception thrown by the object proxy.
 	 * 
-	 * @param method
-	 * @return access mode
+	 * @param e
+	 *            exception thrown by the object proxy.
+	 * @return exception to throw.
 	 */
-	private Mode getAccessMode(Method method) {
-		Access access = method.getAnnotation(Access.class);
-		if (access == null) {
-			return Mode.ANY;
+	private static Throwable unwrap(Exception e) {
+		if (e instanceof RemoteException) {
+			if (e.getCause() instanceof RollbackForcedException || e.getCause() instanceof TransactionException)
+				return e.getCause();
 		}
-		return access.value();
+		return e;
 	}
 
 	/**
-	 * Lists every interface that should be included when creating an enhanced
-	 * proxy.
+	 * Invokes a method on a local copy of the wrapped object.
 	 * 
-	 * @param objClass
-	 *            remote object class.
-	 * @return an array of interfaces that should be included.
+	 * @param copy
+	 *            copy of the wrapped object.
+	 * @param index
+	 *            method index.
+	 * @param args
+	 *            arguments of the method.
+	 * @return result of the method.
+	 * @throws Exception
+	 *             exception thrown by the method.
 	 */
-	@SuppressWarnings("rawtypes")
-	private static Class[] getArrayOfRemoteInterfaces(Class<? extends Object> objClass) {
-		Set<Class> interfaces = getRemoteInterfaces(objClass);
+	private Object invoke(Object copy, int index, Object[] args) throws Exception {
+		try {
+			return methods.get(index).invoke(copy, args);
+		} catch (InvocationTargetException e) {
+			if (e.getCause() instanceof Exception)
+				throw (Exception) e.getCause();
+			throw (Error) e.getCause();
+		}
+	}
 
-		for (Class c : proxyInterfaces)
-			interfaces.add(c);
+	public Object invoke(Object obj, Method method, Object[] args) throws Throwable {
+		int index = methods.indexOf(method);
+		if (index >= 0) {
+			try {
+				if (methods.getMode(index) == Mode.READ_ONLY) {
+					Object buffer = getLocalBuffer();
+					if (buffer != null)
+						return invoke(buffer, index, args);
+				}
+
+				if (buffer(index, args))
+					return null;
+
+				flush();
+				return proxy.invoke(index, args);
+			} catch (Exception e) {
+				throw unwrap(e);
+			}
+		}
+
+		if (getUIDMethod.equals(method)) {
+			return objectId;
+		}
+
+		if (neutralMethods.contains(method)) {
+			if (finishTransactionMethod.equals(method) && (Boolean) args[0])
+				discard();
+			else if (method.getDeclaringClass() == ObjectProxy.class)
+				flush();
+			return method.invoke(proxy, args);
+		}
+
+		if (method.getName().equals("finalize")) {
+			return method.invoke(obj, args);
+		}
+
+		if (writeReplaceMethod.equals(method)) {
+			return new ObjectProxySerializerImpl(export(), methods.getInterfaces().toArray(new Class<?>[0]), objectId,
+					node, nodeId, handle, remoteBuffer);
+		}
 
-		return interfaces.toArray(new Class[] {});
+		throw new TransactionException("Method " + method + " cannot be invoked through an object proxy.");
 	}
 
 	/**
@@ -251,7 +628,7 @@ public class ObjectProxyHandler implements InvocationHandler {
 	 * @return set of remote interfaces collected.
 	 */
 	@SuppressWarnings("rawtypes")
-	private static Set<Class> getRemoteInterfaces(Class<? extends Object> objClass) {
+	static Set<Class> getRemoteInterfaces(Class<? extends Object> objClass) {
 		Set<Class> infs = new HashSet<Class>();
 
 		if (objClass.getSuperclass() != null)
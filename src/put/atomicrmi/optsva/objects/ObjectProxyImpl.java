@@ -21,18 +21,21 @@
  */
 package put.atomicrmi.optsva.objects;
 
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
-import java.util.LinkedList;
 import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
 
 import put.atomicrmi.optsva.Access.Mode;
+import put.atomicrmi.optsva.RemoteBuffer;
 import put.atomicrmi.optsva.RollbackForcedException;
 import put.atomicrmi.optsva.Transaction;
 import put.atomicrmi.optsva.TransactionException;
 import put.atomicrmi.optsva.TransactionRef;
+import put.atomicrmi.optsva.snapshots.UndoLog;
+import put.atomicrmi.optsva.snapshots.Undoable;
 import put.atomicrmi.optsva.sync.TaskController;
 import put.atomicrmi.optsva.sync.TaskController.Task;
 import put.atomicrmi.optsva.sync.TransactionFailureMonitorImpl;
@@ -43,7 +46,7 @@ import put.atomicrmi.optsva.sync.TransactionFailureMonitorImpl;
  * 
  * @author Wojciech Mruczkiewicz, Konrad Siek
  */
-public class ObjectProxyImpl extends UnicastRemoteObject implements ObjectProxy {
+public class ObjectProxyImpl implements ObjectProxy {
 
 	/**
 	 * A semaphore that is closed until read buffering is completed.
@@ -61,22 +64,6 @@ public class ObjectProxyImpl extends UnicastRemoteObject implements ObjectProxy
 	 */
 	private transient CountDownLatch commitSemaphore = new CountDownLatch(1);
 
-	/**
-	 * A structure for holding information about executed methods for the
-	 * purposes of buffering/logging.
-	 * 
-	 * @author Konrad Siek
-	 */
-	final protected class Invocation {
-		public Invocation(Method m, Object[] args) {
-			this.method = m;
-			this.args = args;
-		}
-
-		final Method method;
-		final Object[] args;
-	}
-
 	/**
 	 * Separate read thread task: buffers a read-only object and releases it.
 	 * Also starts a new thread to commit that object as soon as possible.
@@ -101,7 +88,7 @@ public class ObjectProxyImpl extends UnicastRemoteObject implements ObjectProxy
 			 * Copy the object to buffer.
 			 */
 			snapshot = object.snapshot();
-			copyBuffer = object.clone();
+			acquireBuffer();
 			object.setCurrentVersion(px);
 
 			/**
@@ -171,11 +158,10 @@ public class ObjectProxyImpl extends UnicastRemoteObject implements ObjectProxy
 			 * We have to make a snapshot, else it thinks we didn't read the
 			 * object and in effect we don't get cv and rv.
 			 */
-			// TODO maybe we can have a fake snapshot instead, with only cv and
-			// rv, but no data?
 			snapshot = object.snapshot();
 
 			/** Apply logged method requests, if any. */
+			object.capture(snapshot);
 			applyWriteLog();
 
 			/** Prevent recorder from being used again */
@@ -187,14 +173,14 @@ public class ObjectProxyImpl extends UnicastRemoteObject implements ObjectProxy
 			 */
 			if (rub > mrv || rub == Transaction.INF) {
 				try {
-					copyBuffer = object.clone();
+					acquireBuffer();
 				} catch (CloneNotSupportedException e) {
 					e.printStackTrace();
 					throw new RemoteException(e.getLocalizedMessage(), e.getCause());
 				}
 			} else {
 				/** Release memory for buffer. */
-				copyBuffer = null;
+				releaseBuffer();
 			}
 
 			/** Release object. */
@@ -207,11 +193,6 @@ public class ObjectProxyImpl extends UnicastRemoteObject implements ObjectProxy
 		}
 	}
 
-	/**
-	 * Randomly generated serialization UID.
-	 */
-	private static final long serialVersionUID = -5524954471581314314L;
-
 	/**
 	 * The version counter value that determines when counter is released.
 	 */
@@ -221,7 +202,7 @@ public class ObjectProxyImpl extends UnicastRemoteObject implements ObjectProxy
 	 * Log buffer containing method call specification for application when the
 	 * object is synchronized.
 	 */
-	protected LinkedList<Invocation> logBuffer = null;
+	protected WriteLog logBuffer = null;
 
 	/**
 	 * Copy of object for the purpose of buffering writes and reading from
@@ -229,6 +210,18 @@ public class ObjectProxyImpl extends UnicastRemoteObject implements ObjectProxy
 	 */
 	protected Object copyBuffer = null;
 
+	/**
+	 * Copy buffer shared with other transactions reading the same state of the
+	 * object, whose copy is {@link #copyBuffer}.
+	 */
+	private CopyBuffer sharedBuffer = null;
+
+	/**
+	 * Lock guarding {@link #sharedBuffer}, separate from this proxy, which is
+	 * held while waiting for the object.
+	 */
+	private final Object bufferLock = new Object();
+
 	/**
 	 * Value returned by a commit done by a separate read thread. If this is
 	 * <code>false</code> after the thread is finished, we need to abort.
@@ -248,7 +241,7 @@ public class ObjectProxyImpl extends UnicastRemoteObject implements ObjectProxy
 	/**
 	 * Remote reference to the transaction that this proxy is working for.
 	 */
-	private final TransactionRef transaction;
+	protected final TransactionRef transaction;
 
 	/**
 	 * Transaction unique identifier.
@@ -294,7 +287,7 @@ public class ObjectProxyImpl extends UnicastRemoteObject implements ObjectProxy
 	/**
 	 * An upper bound on remote method invocations: all.
 	 */
-	private final long ub;
+	protected final long ub;
 
 	/**
 	 * An upper bound on remote method invocations: writes.
@@ -312,6 +305,22 @@ public class ObjectProxyImpl extends UnicastRemoteObject implements ObjectProxy
 	 */
 	private final Mode mode;
 
+	/**
+	 * Handle under which this object proxy is registered in its node.
+	 */
+	private final long handle;
+
+	/**
+	 * Remote reference to this object proxy. If <code>null</code> then the
+	 * proxy is not exported.
+	 */
+	private ObjectProxy stub;
+
+	/**
+	 * Methods of the remote interfaces of the wrapped object by their indices.
+	 */
+	protected final MethodTable methods;
+
 	/**
 	 * Creates the object proxy for given remote object.
 	 * 
@@ -334,10 +343,9 @@ public class ObjectProxyImpl extends UnicastRemoteObject implements ObjectProxy
 	public ObjectProxyImpl(TransactionRef transaction, UUID tid, TransactionalUnicastRemoteObject object, long calls, long reads,
 			long writes, Mode mode) throws RemoteException {
 
-		super();
-
 		this.transaction = transaction;
 		this.object = object;
+		this.methods = MethodTable.get(object.getClass());
 		this.uid = tid;
 		this.mode = mode;
 
@@ -345,6 +353,8 @@ public class ObjectProxyImpl extends UnicastRemoteObject implements ObjectProxy
 		wub = writes;
 		rub = reads;
 		over = true;
+
+		handle = TransactionalNodeImpl.getInstance().register(this);
 	}
 
 	/**
@@ -357,6 +367,32 @@ public class ObjectProxyImpl extends UnicastRemoteObject implements ObjectProxy
 		return uid;
 	}
 
+	/**
+	 * Gives the handle under which this object proxy is registered in the
+	 * {@link TransactionalNode} it is placed on.
+	 * 
+	 * @return object proxy handle.
+	 */
+	public long getHandle() {
+		return handle;
+	}
+
+	/**
+	 * Exports this object proxy so that it can be invoked remotely. A proxy
+	 * used by a transaction running in the same JVM as the wrapped object is
+	 * invoked directly, so it is exported only once it is sent to another
+	 * node.
+	 * 
+	 * @return remote reference to this object proxy.
+	 * @throws RemoteException
+	 *             when the export fails.
+	 */
+	synchronized ObjectProxy export() throws RemoteException {
+		if (stub == null)
+			stub = (ObjectProxy) UnicastRemoteObject.exportObject(this, 0);
+		return stub;
+	}
+
 	/**
 	 * Get the actual object for which this is a proxy.
 	 */
@@ -381,6 +417,21 @@ public class ObjectProxyImpl extends UnicastRemoteObject implements ObjectProxy
 		}
 	}
 
+	public Object getBufferCopy() throws RemoteException {
+		if (mode != Mode.READ_ONLY || object.getClass().isAnnotationPresent(RemoteBuffer.class))
+			return null;
+
+		try {
+			/** Synchronize with the Read Thread */
+			readSemaphore.await();
+		} catch (InterruptedException e) {
+			throw new RemoteException(e.getMessage(), e.getCause());
+		}
+
+		/** Copy buffers are not exported, so the copy is sent by value. */
+		return copyBuffer;
+	}
+
 	public void startTransaction() throws RemoteException {
 		TransactionFailureMonitorImpl.getInstance().startMonitoring(this);
 		px = object.startTransaction(uid);
@@ -423,7 +474,7 @@ public class ObjectProxyImpl extends UnicastRemoteObject implements ObjectProxy
 			/**
 			 * The transaction was neither writing nor reading yet.
 			 */
-			logBuffer = new LinkedList<Invocation>();
+			logBuffer = new WriteLog(methods);
 
 			mv++;
 			mwv++;
@@ -454,6 +505,9 @@ public class ObjectProxyImpl extends UnicastRemoteObject implements ObjectProxy
 				throw new RollbackForcedException("Rollback forced during invocation.");
 			}
 
+			/** The write modifies the object directly. */
+			object.capture(snapshot);
+
 			mv++;
 			mwv++;
 
@@ -477,7 +531,7 @@ public class ObjectProxyImpl extends UnicastRemoteObject implements ObjectProxy
 				 * reads. Create buffer for accessing objects after release.
 				 */
 				try {
-					copyBuffer = object.clone();
+					acquireBuffer();
 				} catch (CloneNotSupportedException e) {
 					e.printStackTrace();
 					object.transactionUnlock(uid);
@@ -586,6 +640,7 @@ public class ObjectProxyImpl extends UnicastRemoteObject implements ObjectProxy
 				object.waitForCounter(px - 1);
 				object.transactionLock(uid);
 				snapshot = object.snapshot();
+				object.capture(snapshot);
 
 				try {
 					applyWriteLog();
@@ -659,6 +714,10 @@ public class ObjectProxyImpl extends UnicastRemoteObject implements ObjectProxy
 
 	public void releaseTransaction() throws RemoteException {
 		if (mv != RELEASED) {
+			/** The released state is kept as a version if the object is versioned. */
+			if (snapshot != null && snapshot.isCaptured())
+				object.stage(uid);
+
 			object.releaseTransaction();
 			mv = RELEASED;
 		}
@@ -670,8 +729,9 @@ public class ObjectProxyImpl extends UnicastRemoteObject implements ObjectProxy
 		if (!readThread && mode == Mode.READ_ONLY) { 
 			/**
 			 * Nothing happens here, since everything is handled by a separate
-			 * thread.
+			 * thread, except that the buffer is no longer read.
 			 */
+			releaseBuffer();
 
 		} else {
 			TransactionFailureMonitorImpl.getInstance().stopMonitoring(this);
@@ -681,6 +741,40 @@ public class ObjectProxyImpl extends UnicastRemoteObject implements ObjectProxy
 
 			over = true;
 			snapshot = null;
+
+			/** Read-only buffers are read until the transaction finishes. */
+			if (mode != Mode.READ_ONLY)
+				releaseBuffer();
+		}
+	}
+
+	/**
+	 * Reads the object after release from the copy buffer of its current
+	 * state, which is shared with other transactions reading the same state.
+	 * It must be called while holding the object.
+	 * 
+	 * @throws CloneNotSupportedException
+	 *             when the object cannot be copied.
+	 */
+	protected void acquireBuffer() throws CloneNotSupportedException {
+		synchronized (bufferLock) {
+			releaseBuffer();
+			sharedBuffer = object.acquireBuffer();
+			copyBuffer = sharedBuffer.getCopy();
+		}
+	}
+
+	/**
+	 * Stops reading from the copy buffer, if any, so that it can be dropped
+	 * once no other transaction reads it.
+	 */
+	protected void releaseBuffer() {
+		synchronized (bufferLock) {
+			if (sharedBuffer != null) {
+				object.releaseBuffer(sharedBuffer);
+				sharedBuffer = null;
+			}
+			copyBuffer = null;
 		}
 	}
 
@@ -717,6 +811,7 @@ public class ObjectProxyImpl extends UnicastRemoteObject implements ObjectProxy
 					 * the object and in effect we don't get cv and rv.
 					 */
 					snapshot = object.snapshot();
+					object.capture(snapshot);
 
 					try {
 						applyWriteLog();
@@ -729,7 +824,7 @@ public class ObjectProxyImpl extends UnicastRemoteObject implements ObjectProxy
 					logBuffer = null;
 
 					/** Remove buffer. */
-					copyBuffer = null;
+					releaseBuffer();
 
 					/** Release object. */
 					object.setCurrentVersion(px);
@@ -799,6 +894,31 @@ public class ObjectProxyImpl extends UnicastRemoteObject implements ObjectProxy
 		object.transactionLock(uid);
 	}
 
+	/**
+	 * Unlocks this object proxy locked for a transaction that could not be
+	 * started. Unlike {@link #unlock()}, it does not buffer the object for
+	 * reading. If the transaction took a version of the object, the version is
+	 * released as if the transaction was rolled back, so that transactions
+	 * with higher versions do not wait for it.
+	 * 
+	 * @param started
+	 *            whether {@link #startTransaction()} was called.
+	 * @throws RemoteException
+	 *             when failure monitoring cannot be stopped.
+	 */
+	void abandon(boolean started) throws RemoteException {
+		try {
+			if (started) {
+				TransactionFailureMonitorImpl.getInstance().stopMonitoring(this);
+				object.releaseTransaction();
+				object.finishTransaction(uid, null, true);
+				over = true;
+			}
+		} finally {
+			object.transactionUnlock(uid);
+		}
+	}
+
 	public void unlock() throws RemoteException {
 		object.transactionUnlock(uid);
 
@@ -823,25 +943,132 @@ public class ObjectProxyImpl extends UnicastRemoteObject implements ObjectProxy
 		throw new RemoteException("Invalid operation type for general purpose proxy: update.");
 	}
 
-	public void log(String methodName, Class<?>[] argTypes, Object[] args) throws RemoteException {
-		Method method;
+	public Object invoke(int index, Object[] args) throws Exception {
+		Method method = methods.get(index);
+		if (method == null)
+			throw new TransactionException("Unknown method index: " + index + ".");
+
+		Mode access = methods.getMode(index);
+		if (!modesAgree(access, mode)) {
+			throw new TransactionException("Method access mode was " + access + " which does not agree with the delared "
+					+ mode);
+		}
+
+		/**
+		 * PreSync
+		 */
+		BufferType bufferred;
+		switch (access) {
+		case READ_ONLY:
+			bufferred = preRead();
+			break;
+		case WRITE_ONLY:
+		case COMMUTATIVE:
+			bufferred = preWrite();
+			break;
+		default:
+			throw new RemoteException("Illegal access type: " + access);
+		}
+
+		/**
+		 * Execute method on object or buffer
+		 */
+		Object result = null;
 		try {
-			method = object.getClass().getMethod(methodName, argTypes);
-		} catch (Exception e) {
-			e.printStackTrace();
-			throw new RemoteException(e.getLocalizedMessage(), e.getCause());
+			switch (bufferred) {
+			case LOG_BUFFER:
+				logBuffer.add(index, args);
+				// Note: result == null; Not a huge problem, since this is
+				// write-only.
+				break;
+			case NONE:
+				UndoLog undo = access == Mode.READ_ONLY ? null : getUndoLog();
+				if (undo != null)
+					undo.record((Undoable) object, method, args);
+
+				result = method.invoke(object, args);
+				break;
+			case COPY_BUFFER:
+				result = method.invoke(getBuffer(), args);
+			}
+		} catch (InvocationTargetException e) {
+			if (e.getCause() instanceof Exception)
+				throw (Exception) e.getCause();
+			throw (Error) e.getCause();
 		}
-		logBuffer.add(new Invocation(method, args));
+
+		/**
+		 * PostSync
+		 */
+		switch (access) {
+		case READ_ONLY:
+			postRead();
+			break;
+		case WRITE_ONLY:
+		case COMMUTATIVE:
+			postWrite();
+			break;
+		default:
+			throw new RemoteException("Illegal access type: " + access);
+		}
+
+		return result;
 	}
 
-	protected void applyWriteLog() throws RemoteException {
-		for (Invocation invocation : logBuffer) {
-			try {
-				invocation.method.invoke(object, invocation.args);
-			} catch (Exception e) {
-				e.printStackTrace();
-			}
+	/**
+	 * Check whether the method access mode agrees with the declared access
+	 * mode.
+	 * 
+	 * @param actual
+	 *            the access mode of the method
+	 * @param declared
+	 *            the access mode declared at transaction start
+	 * @return <code>true</code> if the method mode is contained within the
+	 *         declared mode and <code>false</code> otherwise
+	 */
+	private boolean modesAgree(Mode actual, Mode declared) {
+		if (declared == Mode.ANY) {
+			return true;
+		}
+
+		if (actual == declared) {
+			return true;
+		}
+
+		/** Commutative methods are writes. */
+		if (actual == Mode.COMMUTATIVE && declared == Mode.WRITE_ONLY) {
+			return true;
 		}
+
+		return false;
+	}
+
+	public void invokeAll(int[] methods, Object[][] args) throws Exception {
+		for (int i = 0; i < methods.length; i++)
+			invoke(methods[i], args[i]);
+	}
+
+	public void log(int method, Object[] args) throws RemoteException {
+		if (methods.get(method) == null)
+			throw new RemoteException("Unknown method index: " + method + ".");
+		logBuffer.add(method, args);
+	}
+
+	protected void applyWriteLog() throws RemoteException {
+		logBuffer.apply(object, getUndoLog());
+	}
+
+	/**
+	 * Gives the log recording the inverses of the writes applied to an
+	 * {@link Undoable} object.
+	 * 
+	 * @return undo log or <code>null</code> if the object is restored from an
+	 *         image of its state.
+	 */
+	protected UndoLog getUndoLog() {
+		if (snapshot != null && snapshot.getImage() instanceof UndoLog)
+			return (UndoLog) snapshot.getImage();
+		return null;
 	}
 
 }
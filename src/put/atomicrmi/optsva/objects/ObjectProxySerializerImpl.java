@@ -24,7 +24,7 @@ package put.atomicrmi.optsva.objects;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
-import java.rmi.RemoteException;
+import java.util.UUID;
 
 /**
  * Serialization replacement for {@link ObjectProxyHandler} class.
@@ -44,14 +44,65 @@ class ObjectProxySerializerImpl implements Serializable {
 	 */
 	private ObjectProxy proxy;
 
+	/**
+	 * Remote interfaces of the remote object wrapped by the object proxy.
+	 */
+	private Class<?>[] interfaces;
+
+	/**
+	 * Unique identifier of the remote object wrapped by the object proxy.
+	 */
+	private UUID objectId;
+
+	/**
+	 * The node where the object proxy is placed.
+	 */
+	private TransactionalNode node;
+
+	/**
+	 * Unique identifier of the node where the object proxy is placed.
+	 */
+	private UUID nodeId;
+
+	/**
+	 * Handle of the object proxy in its node.
+	 */
+	private long handle;
+
+	/**
+	 * Whether the class of the remote object is annotated with
+	 * {@link put.atomicrmi.optsva.RemoteBuffer}.
+	 */
+	private boolean remoteBuffer;
+
 	/**
 	 * Creates new serializer that serializes a particular object proxy.
 	 * 
 	 * @param proxy
 	 *            object proxy to serialize.
+	 * @param interfaces
+	 *            remote interfaces of the wrapped remote object.
+	 * @param objectId
+	 *            unique identifier of the wrapped remote object.
+	 * @param node
+	 *            node where the object proxy is placed.
+	 * @param nodeId
+	 *            unique identifier of the node.
+	 * @param handle
+	 *            handle of the object proxy in the node.
+	 * @param remoteBuffer
+	 *            whether the class of the remote object is annotated with
+	 *            {@link put.atomicrmi.optsva.RemoteBuffer}.
 	 */
-	ObjectProxySerializerImpl(ObjectProxy proxy) {
+	ObjectProxySerializerImpl(ObjectProxy proxy, Class<?>[] interfaces, UUID objectId, TransactionalNode node,
+			UUID nodeId, long handle, boolean remoteBuffer) {
 		this.proxy = proxy;
+		this.interfaces = interfaces;
+		this.objectId = objectId;
+		this.node = node;
+		this.nodeId = nodeId;
+		this.handle = handle;
+		this.remoteBuffer = remoteBuffer;
 	}
 
 	/**
@@ -73,10 +124,9 @@ class ObjectProxySerializerImpl implements Serializable {
 	 * {@link ObjectProxyHandler} and returned to user.
 	 * 
 	 * @return object proxy wrapped by {@link ObjectProxyHandler}.
-	 * @throws RemoteException
-	 *             when remote execution failed.
 	 */
-	private Object readResolve() throws RemoteException {
-		return ObjectProxyHandler.create(proxy);
+	private Object readResolve() {
+		return ObjectProxyHandler.create(proxy, MethodTable.get(interfaces), objectId, node, nodeId, handle,
+				remoteBuffer);
 	}
 }
@@ -2,16 +2,23 @@ package put.atomicrmi.optsva.objects;
 
 /**
  * Stores snapshot of particular remote object together with snapshot
- * version information.
+ * version information. The image of the object is taken separately, only
+ * when the object is about to be modified, so a snapshot of an object that
+ * is only read holds nothing but its version.
  * 
  * @author Wojciech Mruczkiewicz
  */
 class Snapshot {
 
 	/**
-	 * The binary representation of remote object.
+	 * The image of remote object taken by its snapshot strategy.
 	 */
-	private byte[] image;
+	private Object image;
+
+	/**
+	 * Determines if the image was taken.
+	 */
+	private boolean captured = false;
 
 	/**
 	 * Version information that determines when the snapshot was taken.
@@ -19,33 +26,58 @@ class Snapshot {
 	private long rv;
 
 	/**
-	 * Constructs the snapshot with given version and object's image.
+	 * Constructs the snapshot with given version and no image.
 	 * 
-	 * @param image
-	 *            a serialized remote object.
 	 * @param readVersion
-	 *            version when the serialization occurred.
+	 *            version when the snapshot was taken.
 	 */
-	Snapshot(byte[] image, long readVersion) {
-		this.image = image;
+	Snapshot(long readVersion) {
 		rv = readVersion;
 	}
 
 	/**
-	 * Gives the serialized image reference.
+	 * Gives the image reference.
 	 * 
-	 * @return the serialized image.
+	 * @return the image.
 	 */
-	byte[] getImage() {
+	Object getImage() {
 		return image;
 	}
 
 	/**
-	 * Gives the version of an image when the serialization occurred.
+	 * Sets the image of the remote object.
+	 * 
+	 * @param image
+	 *            an image of remote object.
+	 */
+	void setImage(Object image) {
+		this.image = image;
+		captured = true;
+	}
+
+	/**
+	 * Forgets the image of the remote object, once it was released.
+	 */
+	void clear() {
+		image = null;
+		captured = false;
+	}
+
+	/**
+	 * Checks whether the image of the remote object was taken.
+	 * 
+	 * @return <code>true</code> if the image was taken.
+	 */
+	boolean isCaptured() {
+		return captured;
+	}
+
+	/**
+	 * Gives the version of the object when the snapshot was taken.
 	 * 
-	 * @return image version.
+	 * @return snapshot version.
 	 */
 	long getReadVersion() {
 		return rv;
 	}
-}
\ No newline at end of file
+}
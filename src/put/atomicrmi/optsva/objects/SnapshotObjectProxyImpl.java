@@ -0,0 +1,161 @@
+package put.atomicrmi.optsva.objects;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.rmi.RemoteException;
+import java.util.UUID;
+
+import put.atomicrmi.optsva.Access.Mode;
+import put.atomicrmi.optsva.RemoteBuffer;
+import put.atomicrmi.optsva.RollbackForcedException;
+import put.atomicrmi.optsva.Transaction;
+import put.atomicrmi.optsva.TransactionException;
+import put.atomicrmi.optsva.TransactionRef;
+import put.atomicrmi.optsva.Versioned;
+
+/**
+ * An object proxy for objects accessed in {@link Mode#SNAPSHOT} mode. It reads
+ * the latest version of a {@link Versioned} object committed before the
+ * transaction started, so the transaction neither takes a version of the
+ * object nor waits for other transactions, and it never forces other
+ * transactions to roll back.
+ * 
+ * The version to read is given by the read stamp the transaction gets from
+ * {@link CommitClock} when it starts on the node of the object. The version is
+ * taken on first read and kept until the transaction finishes. If it is no
+ * longer kept by then, the transaction is rolled back, so that it can be
+ * restarted with a newer read stamp.
+ */
+public class SnapshotObjectProxyImpl extends ObjectProxyImpl {
+
+	/**
+	 * Read stamp of the transaction.
+	 */
+	private long stamp;
+
+	/**
+	 * Version of the object read by the transaction, taken on first read.
+	 */
+	private Object version;
+
+	public SnapshotObjectProxyImpl(TransactionRef transaction, UUID tid, TransactionalUnicastRemoteObject object,
+			long calls) throws RemoteException {
+		super(transaction, tid, object, calls, calls, 0, Mode.SNAPSHOT);
+	}
+
+	@Override
+	public void lock() throws RemoteException {
+		// Versions are not taken.
+	}
+
+	@Override
+	public void unlock() throws RemoteException {
+		// Versions are not taken.
+	}
+
+	@Override
+	void abandon(boolean started) {
+		// Versions are not taken.
+	}
+
+	@Override
+	public void startTransaction() throws RemoteException {
+		startTransaction(CommitClock.getReadStamp());
+	}
+
+	/**
+	 * Starts the transaction reading the versions visible at the given read
+	 * stamp.
+	 * 
+	 * @param stamp
+	 *            read stamp shared by the snapshot reads of the transaction on
+	 *            this node.
+	 */
+	synchronized void startTransaction(long stamp) {
+		this.stamp = stamp;
+		version = null;
+		mv = 0;
+
+		over = false;
+	}
+
+	@Override
+	public Object invoke(int index, Object[] args) throws Exception {
+		Method method = methods.get(index);
+		if (method == null)
+			throw new TransactionException("Unknown method index: " + index + ".");
+
+		if (methods.getMode(index) != Mode.READ_ONLY)
+			throw new TransactionException("Method access mode was " + methods.getMode(index)
+					+ " which does not agree with the delared " + Mode.SNAPSHOT);
+
+		synchronized (this) {
+			if (over)
+				throw new TransactionException("Attempting to access transactional object after commit.");
+
+			if (ub != Transaction.INF && mv == ub)
+				throw new TransactionException("Upper bound is lower then number of invocations: " + mv + "/" + ub);
+
+			mv++;
+		}
+
+		try {
+			return method.invoke(getVersion(), args);
+		} catch (InvocationTargetException e) {
+			if (e.getCause() instanceof Exception)
+				throw (Exception) e.getCause();
+			throw (Error) e.getCause();
+		}
+	}
+
+	/**
+	 * Gives the version read by the transaction.
+	 * 
+	 * @return copy of the object.
+	 * @throws RemoteException
+	 *             when the version is no longer kept, in which case the
+	 *             transaction is rolled back. The proxy must not be locked
+	 *             then, since roll-back finishes it.
+	 */
+	private Object getVersion() throws RemoteException {
+		synchronized (this) {
+			if (version == null)
+				version = object.getVersion(stamp);
+			if (version != null)
+				return version;
+		}
+
+		transaction.rollback();
+		throw new RollbackForcedException("Rollback forced: version " + stamp + " is no longer kept.");
+	}
+
+	@Override
+	public Object getBufferCopy() throws RemoteException {
+		if (object.getClass().isAnnotationPresent(RemoteBuffer.class))
+			return null;
+
+		return getVersion();
+	}
+
+	@Override
+	public boolean waitForSnapshot(boolean readThread) throws RemoteException {
+		/** Committed versions are never rolled back, so commit is always allowed. */
+		return true;
+	}
+
+	@Override
+	public synchronized void finishTransaction(boolean restore, boolean readThread) throws RemoteException {
+		version = null;
+		over = true;
+	}
+
+	@Override
+	public void releaseTransaction() throws RemoteException {
+		// No version is held.
+	}
+
+	@Override
+	public void free() throws RemoteException {
+		// No version is held.
+	}
+}
@@ -0,0 +1,59 @@
+package put.atomicrmi.optsva.objects;
+
+import java.rmi.RemoteException;
+
+import put.util.ids.IdentifiableRemote;
+
+/**
+ * Internal interface of a node that hosts transactional remote objects. It
+ * allows a transaction to operate on all of its object proxies placed on a
+ * single node using one remote invocation instead of one invocation per
+ * proxy. Object proxies are identified by the handles given out by the node
+ * when the proxies are created.
+ */
+public interface TransactionalNode extends IdentifiableRemote {
+
+	/**
+	 * Locks every given object proxy and then notifies each of them that the
+	 * transaction is starting (see {@link ObjectProxy#lock()} and
+	 * {@link ObjectProxy#startTransaction()}). The proxies are processed in the
+	 * order in which their handles are given. If <code>unlock</code> is
+	 * <code>true</code>, the proxies are also unlocked before returning. If
+	 * the transaction cannot be started, none of the proxies is left locked
+	 * and the versions taken by the proxies started so far are released.
+	 * 
+	 * @param handles
+	 *            handles of object proxies placed on this node.
+	 * @param unlock
+	 *            determines if the proxies should be unlocked after the
+	 *            transaction is started.
+	 * @throws RemoteException
+	 *             when remote execution fails or a handle is unknown.
+	 */
+	void startTransaction(long[] handles, boolean unlock) throws RemoteException;
+
+	/**
+	 * Notifies every given object proxy that the transaction is starting,
+	 * without taking versions of the objects. The proxies must access their
+	 * objects in {@link put.atomicrmi.optsva.Access.Mode#COMMUTATIVE} mode.
+	 * The versions are taken by {@link #startTransaction(long[], boolean)}
+	 * when the transaction commits.
+	 * 
+	 * @param handles
+	 *            handles of object proxies placed on this node.
+	 * @throws RemoteException
+	 *             when remote execution fails, a handle is unknown or an
+	 *             object is accessed in another mode.
+	 */
+	void deferTransaction(long[] handles) throws RemoteException;
+
+	/**
+	 * Unlocks every given object proxy (see {@link ObjectProxy#unlock()}).
+	 * 
+	 * @param handles
+	 *            handles of object proxies placed on this node.
+	 * @throws RemoteException
+	 *             when remote execution fails or a handle is unknown.
+	 */
+	void unlock(long[] handles) throws RemoteException;
+}
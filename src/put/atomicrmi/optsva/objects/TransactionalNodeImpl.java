@@ -0,0 +1,192 @@
+package put.atomicrmi.optsva.objects;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import put.atomicrmi.optsva.Access.Mode;
+import put.atomicrmi.optsva.TransactionException;
+import put.util.ids.IdGenerators;
+
+/**
+ * Implementation of {@link TransactionalNode}. There is a single instance of
+ * this class per node in distributed system. It keeps track of object proxies
+ * created on the node so that they can be addressed in batches by their
+ * handles.
+ * 
+ * Object proxies are referenced weakly, so that a proxy is forgotten once
+ * neither a local transaction nor the RMI runtime refers to it.
+ */
+public class TransactionalNodeImpl extends UnicastRemoteObject implements TransactionalNode {
+
+	/**
+	 * Randomly generated serialization UID.
+	 */
+	private static final long serialVersionUID = -2315364920481745870L;
+
+	/**
+	 * An instance of a transactional node.
+	 */
+	private static TransactionalNodeImpl node;
+
+	/**
+	 * Weak reference to an object proxy that remembers the proxy handle.
+	 */
+	private static class ProxyReference extends WeakReference<ObjectProxyImpl> {
+		private final long handle;
+
+		ProxyReference(ObjectProxyImpl proxy, long handle, ReferenceQueue<ObjectProxyImpl> queue) {
+			super(proxy, queue);
+			this.handle = handle;
+		}
+	}
+
+	/**
+	 * Object proxies placed on this node by their handles.
+	 */
+	private final Map<Long, ProxyReference> proxies;
+
+	/**
+	 * Queue of references to object proxies that were garbage collected.
+	 */
+	private final ReferenceQueue<ObjectProxyImpl> collected;
+
+	/**
+	 * Source of object proxy handles.
+	 */
+	private final AtomicLong sequence;
+
+	/**
+	 * Node unique identifier.
+	 */
+	private final UUID id = IdGenerators.next();
+
+	/**
+	 * Gives the instance of the transactional node. Returned value is unique
+	 * for a node in distributed system.
+	 * 
+	 * @return an instance of a transactional node.
+	 * @throws RemoteException
+	 */
+	synchronized public static TransactionalNodeImpl getInstance() throws RemoteException {
+		if (node == null)
+			node = new TransactionalNodeImpl();
+		return node;
+	}
+
+	/**
+	 * Creates an instance of transactional node.
+	 * 
+	 * @throws RemoteException
+	 *             when super class constructor throws an exception.
+	 */
+	protected TransactionalNodeImpl() throws RemoteException {
+		super();
+
+		proxies = new ConcurrentHashMap<Long, ProxyReference>();
+		collected = new ReferenceQueue<ObjectProxyImpl>();
+		sequence = new AtomicLong(0);
+	}
+
+	/**
+	 * Registers an object proxy placed on this node and gives it a handle by
+	 * which it can be addressed remotely.
+	 * 
+	 * @param proxy
+	 *            object proxy to register.
+	 * @return object proxy handle.
+	 */
+	long register(ObjectProxyImpl proxy) {
+		Reference<? extends ObjectProxyImpl> ref;
+		while ((ref = collected.poll()) != null)
+			proxies.remove(((ProxyReference) ref).handle);
+
+		long handle = sequence.incrementAndGet();
+		proxies.put(handle, new ProxyReference(proxy, handle, collected));
+		return handle;
+	}
+
+	public void startTransaction(long[] handles, boolean unlock) throws RemoteException {
+		ObjectProxyImpl[] group = resolve(handles);
+
+		int locked = 0;
+		int started = 0;
+		try {
+			for (; locked < group.length; locked++)
+				group[locked].lock();
+
+			/** Snapshot reads on this node see the same committed versions. */
+			long stamp = -1;
+			for (; started < group.length; started++) {
+				ObjectProxyImpl proxy = group[started];
+				if (proxy instanceof SnapshotObjectProxyImpl) {
+					if (stamp < 0)
+						stamp = CommitClock.getReadStamp();
+					((SnapshotObjectProxyImpl) proxy).startTransaction(stamp);
+				} else
+					proxy.startTransaction();
+			}
+		} catch (RemoteException e) {
+			/** Other transactions must not wait for one that failed to start. */
+			for (int i = 0; i < locked; i++) {
+				try {
+					group[i].abandon(i < started);
+				} catch (RemoteException f) {
+					// Report the original failure.
+				}
+			}
+			throw e;
+		}
+
+		if (unlock)
+			for (ObjectProxyImpl proxy : group)
+				proxy.unlock();
+	}
+
+	public void deferTransaction(long[] handles) throws RemoteException {
+		for (ObjectProxyImpl proxy : resolve(handles)) {
+			if (!(proxy instanceof CommutativeObjectProxyImpl))
+				throw new TransactionException("Versions can only be taken at commit in " + Mode.COMMUTATIVE
+						+ " mode.");
+			((CommutativeObjectProxyImpl) proxy).defer();
+		}
+	}
+
+	public void unlock(long[] handles) throws RemoteException {
+		for (ObjectProxyImpl proxy : resolve(handles))
+			proxy.unlock();
+	}
+
+	/**
+	 * Finds the object proxies registered under given handles.
+	 * 
+	 * @param handles
+	 *            object proxy handles.
+	 * @return object proxies in the order of handles.
+	 * @throws TransactionException
+	 *             when some handle is not registered on this node.
+	 */
+	private ObjectProxyImpl[] resolve(long[] handles) throws TransactionException {
+		ObjectProxyImpl[] group = new ObjectProxyImpl[handles.length];
+
+		for (int i = 0; i < handles.length; i++) {
+			ProxyReference ref = proxies.get(handles[i]);
+			group[i] = ref == null ? null : ref.get();
+			if (group[i] == null)
+				throw new TransactionException("Unknown object proxy handle: " + handles[i] + ".");
+		}
+
+		return group;
+	}
+
+	@Override
+	public UUID getUID() throws RemoteException {
+		return id;
+	}
+}
@@ -21,27 +21,32 @@
  */
 package put.atomicrmi.optsva.objects;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
+import java.lang.ref.WeakReference;
+import java.rmi.NoSuchObjectException;
+import java.rmi.Remote;
 import java.rmi.RemoteException;
 import java.rmi.server.RMIClientSocketFactory;
 import java.rmi.server.RMIServerSocketFactory;
 import java.rmi.server.UnicastRemoteObject;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
 
+import put.atomicrmi.optsva.FairLock;
 import put.atomicrmi.optsva.TransactionException;
 import put.atomicrmi.optsva.TransactionRef;
 import put.atomicrmi.optsva.TransactionalRemoteObject;
+import put.atomicrmi.optsva.Versioned;
 import put.atomicrmi.optsva.Access.Mode;
 import put.atomicrmi.optsva.refcells.LongHolder;
+import put.atomicrmi.optsva.snapshots.SnapshotStrategies;
 import put.atomicrmi.optsva.sync.Semaphore;
+import put.atomicrmi.optsva.sync.TransactionLock;
 import put.atomicrmi.optsva.sync.TransactionFailureMonitor;
 import put.atomicrmi.optsva.sync.TransactionFailureMonitorImpl;
+import put.util.ids.IdGenerators;
 
 /**
  * Base class for all remote object implementations that are part of some
@@ -59,6 +64,14 @@ public class TransactionalUnicastRemoteObject extends UnicastRemoteObject implem
 	 */
 	private static final long serialVersionUID = 1387578756217285118L;
 
+	/**
+	 * Remote objects exported in this JVM by their remote references. It is
+	 * used to recognize references to colocated remote objects. The remote
+	 * references are kept alive by the objects themselves.
+	 */
+	private static final Map<Remote, WeakReference<TransactionalUnicastRemoteObject>> colocated
+			= new WeakHashMap<Remote, WeakReference<TransactionalUnicastRemoteObject>>();
+
 	/**
 	 * Global versioning counter of this remote object.
 	 */
@@ -83,48 +96,113 @@ public class TransactionalUnicastRemoteObject extends UnicastRemoteObject implem
 	private transient LongHolder cv = new LongHolder(0);
 
 	/**
-	 * Lock used to implement reentrant per-transaction lock.
+	 * Stamp of the current state of this remote object, changed before every
+	 * modification. Copy buffers are shared by stamps rather than by versions,
+	 * since transactions that only read this object change its version too.
+	 */
+	private transient long stamp = 0;
+
+	/**
+	 * Copy buffers of the states of this remote object that are being read,
+	 * by stamps of the states.
 	 */
-	private transient LongHolder lock = new LongHolder(0);
+	private transient Map<Long, CopyBuffer> buffers = new HashMap<Long, CopyBuffer>();
 
 	/**
-	 * Unique identifier of a transaction that locked this object proxy.
+	 * Committed versions of this remote object, or <code>null</code> if its
+	 * class is not annotated with {@link Versioned}.
 	 */
-	private transient Object lockedId;
+	private transient VersionHistory history = VersionHistory.forClass(getClass());
+
+	/**
+	 * Reentrant per-transaction lock, fair if the class is annotated with
+	 * {@link FairLock}.
+	 */
+	private transient TransactionLock lock = new TransactionLock(getClass().isAnnotationPresent(FairLock.class));
 
 	/**
 	 * Unique identifier of this object.
 	 */
 	final private UUID uid;
 
+	/**
+	 * Remote reference to this object.
+	 */
+	private transient Remote stub;
+
 	protected TransactionalUnicastRemoteObject() throws RemoteException {
-		uid = UUID.randomUUID();
+		uid = IdGenerators.next();
+		register();
 	}
 
 	protected TransactionalUnicastRemoteObject(UUID uniqueID) throws RemoteException {
 		this.uid = uniqueID;
+		register();
 	}
 
 	protected TransactionalUnicastRemoteObject(int port) throws RemoteException {
 		super(port);
-		uid = UUID.randomUUID();
+		uid = IdGenerators.next();
+		register();
 	}
 
 	protected TransactionalUnicastRemoteObject(UUID uniqueID, int port) throws RemoteException {
 		super(port);
 		this.uid = uniqueID;
+		register();
 	}
 
 	protected TransactionalUnicastRemoteObject(int port, RMIClientSocketFactory csf, RMIServerSocketFactory ssf)
 			throws RemoteException {
 		super(port, csf, ssf);
-		uid = UUID.randomUUID();
+		uid = IdGenerators.next();
+		register();
 	}
 
 	protected TransactionalUnicastRemoteObject(UUID uniqueID, int port, RMIClientSocketFactory csf,
 			RMIServerSocketFactory ssf) throws RemoteException {
 		super(port, csf, ssf);
 		this.uid = uniqueID;
+		register();
+	}
+
+	/**
+	 * Remembers the remote reference to this object, so that the object can
+	 * be found by {@link #getLocal(TransactionalRemoteObject)}.
+	 */
+	private void register() {
+		try {
+			stub = toStub(this);
+		} catch (NoSuchObjectException e) {
+			return;
+		}
+
+		synchronized (colocated) {
+			colocated.put(stub, new WeakReference<TransactionalUnicastRemoteObject>(this));
+		}
+	}
+
+	/**
+	 * Gives the transactional remote object placed in this JVM that is
+	 * referred to by the given remote reference. Operating on such object
+	 * directly avoids the cost of remote invocations.
+	 * 
+	 * @param remote
+	 *            remote reference or a remote object.
+	 * @return the colocated remote object or the given reference if the
+	 *         object is placed on a different node.
+	 */
+	public static TransactionalRemoteObject getLocal(TransactionalRemoteObject remote) {
+		if (remote instanceof TransactionalUnicastRemoteObject)
+			return remote;
+
+		WeakReference<TransactionalUnicastRemoteObject> ref;
+		synchronized (colocated) {
+			ref = colocated.get(remote);
+		}
+
+		TransactionalUnicastRemoteObject local = ref == null ? null : ref.get();
+		return local == null ? remote : local;
 	}
 
 	@Override
@@ -134,6 +212,15 @@ public class TransactionalUnicastRemoteObject extends UnicastRemoteObject implem
 
 	public ObjectProxy createProxy(TransactionRef transaction, UUID tid, long calls, long reads, long writes, Mode mode)
 			throws RemoteException {
+		if (mode == Mode.SNAPSHOT) {
+			if (history == null)
+				throw new TransactionException("Remote object does not keep versions: " + getClass().getName() + ".");
+			return (ObjectProxy) ObjectProxyHandler.create(new SnapshotObjectProxyImpl(transaction, tid, this, calls));
+		}
+
+		if (mode == Mode.COMMUTATIVE)
+			return (ObjectProxy) ObjectProxyHandler.create(new CommutativeObjectProxyImpl(transaction, tid, this, calls));
+
 		return (ObjectProxy) ObjectProxyHandler.create(new ObjectProxyImpl(transaction, tid, this, calls, reads, writes,
 				mode));
 	}
@@ -178,16 +265,33 @@ public class TransactionalUnicastRemoteObject extends UnicastRemoteObject implem
 	 *             when error occurred during waiting for lock to be released.
 	 */
 	void transactionLock(Object tid) throws TransactionException {
-		synchronized (lock) {
-			try {
-				while (lockedId != null && !lockedId.equals(tid))
-					lock.wait();
-			} catch (InterruptedException e) {
-				throw new TransactionException("Interrupted while locking version counter.", e);
-			}
+		try {
+			lock.lock(tid);
+		} catch (InterruptedException e) {
+			throw new TransactionException("Interrupted while locking version counter.", e);
+		}
+	}
 
-			lockedId = tid;
-			lock.value++;
+	/**
+	 * Locks this remote object for given transaction usage only, unless it
+	 * cannot be done within the given time.
+	 * 
+	 * @param tid
+	 *            transaction identifier.
+	 * @param timeout
+	 *            maximum time to wait for the lock.
+	 * @param unit
+	 *            unit of the timeout.
+	 * @return <code>true</code> if the object was locked, or
+	 *         <code>false</code> if the time expired.
+	 * @throws TransactionException
+	 *             when error occurred during waiting for lock to be released.
+	 */
+	boolean transactionLock(Object tid, long timeout, TimeUnit unit) throws TransactionException {
+		try {
+			return lock.tryLock(tid, timeout, unit);
+		} catch (InterruptedException e) {
+			throw new TransactionException("Interrupted while locking version counter.", e);
 		}
 	}
 
@@ -199,16 +303,7 @@ public class TransactionalUnicastRemoteObject extends UnicastRemoteObject implem
 	 *            transaction identifier.
 	 */
 	void transactionUnlock(UUID tid) {
-		synchronized (lock) {
-			if (lockedId.equals(tid)) {
-				lock.value--;
-
-				if (lock.value == 0) {
-					lockedId = null;
-					lock.notify();
-				}
-			}
-		}
+		lock.unlock(tid);
 	}
 
 	/**
@@ -221,25 +316,200 @@ public class TransactionalUnicastRemoteObject extends UnicastRemoteObject implem
 	 *             when lock was acquired by other transaction.
 	 */
 	void transactionUnlockForce(Object tid) throws TransactionException {
-		synchronized (lock) {
-			if (lockedId.equals(tid)) {
-				lock.value = 0;
-				lockedId = null;
-				lock.notify();
-			} else
-				throw new TransactionException("Invalid state when releasing transactional remote object lock.");
-		}
+		if (!lock.unlockForce(tid))
+			throw new TransactionException("Invalid state when releasing transactional remote object lock.");
+	}
+
+	/**
+	 * Gives the per-transaction lock of this remote object, so that its use
+	 * can be observed.
+	 * 
+	 * @return the transaction lock.
+	 */
+	protected TransactionLock getTransactionLock() {
+		return lock;
 	}
 
 	/**
-	 * Makes the snapshot of the current state of this remote object.
+	 * Makes the snapshot of the current version of this remote object. The
+	 * image of the state is not taken until {@link #capture(Snapshot)} is
+	 * called, so that transactions that do not modify this object never pay
+	 * for it.
 	 * 
 	 * @return the created snapshot.
+	 */
+	Snapshot snapshot() {
+		return new Snapshot(cv.value);
+	}
+
+	/**
+	 * Takes the image of the current state of this remote object for the given
+	 * snapshot, unless it was already taken. It must be called by the
+	 * transaction holding this object before its first modification.
+	 * 
+	 * @param snapshot
+	 *            snapshot made by this transaction.
 	 * @throws TransactionException
 	 *             when error occurs during snapshot creation.
 	 */
-	Snapshot snapshot() throws TransactionException {
-		return new Snapshot(serializeThis(), cv.value);
+	void capture(Snapshot snapshot) throws TransactionException {
+		if (!snapshot.isCaptured())
+			snapshot.setImage(SnapshotStrategies.get(getClass()).capture(this));
+		modify();
+	}
+
+	/**
+	 * Changes the stamp of the state of this remote object, so that copy
+	 * buffers of the previous state are not given to readers of the next one.
+	 * The state of a versioned object that was never modified is kept as its
+	 * first version. It must be called by the transaction holding this object
+	 * before every modification.
+	 * 
+	 * @throws TransactionException
+	 *             when the first version cannot be copied.
+	 */
+	void modify() throws TransactionException {
+		if (history != null && history.isEmpty())
+			history.seed(copyVersion());
+
+		synchronized (buffers) {
+			stamp++;
+		}
+	}
+
+	/**
+	 * Makes a copy of the current state of this remote object that is never
+	 * modified. The copy is not exported, since it is only read locally or
+	 * sent by value.
+	 * 
+	 * @return the copy.
+	 * @throws CloneNotSupportedException
+	 *             when the object cannot be copied.
+	 */
+	private Object copy() throws CloneNotSupportedException {
+		Object copy = clone();
+		if (copy instanceof Remote) {
+			try {
+				UnicastRemoteObject.unexportObject((Remote) copy, true);
+			} catch (NoSuchObjectException e) {
+				// Not exported.
+			}
+		}
+		return copy;
+	}
+
+	/**
+	 * Makes a copy of the current state of this remote object to be kept as a
+	 * version.
+	 * 
+	 * @return the copy.
+	 * @throws TransactionException
+	 *             when the object cannot be copied.
+	 */
+	private Object copyVersion() throws TransactionException {
+		try {
+			return copy();
+		} catch (CloneNotSupportedException e) {
+			throw new TransactionException("Unable to copy version.", e);
+		}
+	}
+
+	/**
+	 * Stages the current state of this remote object, released by the given
+	 * transaction, to be kept as a version once the transaction commits. Does
+	 * nothing if the object is not versioned. It must be called by the
+	 * transaction holding this object, after its last modification.
+	 * 
+	 * @param tid
+	 *            transaction identifier.
+	 * @throws TransactionException
+	 *             when the object cannot be copied.
+	 */
+	void stage(Object tid) throws TransactionException {
+		if (history != null)
+			history.stage(tid, copyVersion());
+	}
+
+	/**
+	 * Notes that the given transaction is going to stage a version of this
+	 * remote object before it finishes, if the object is versioned. It must be
+	 * called before the transaction finishes any of its objects.
+	 * 
+	 * @param tid
+	 *            transaction identifier.
+	 */
+	void expect(Object tid) {
+		if (history != null)
+			history.expect(tid);
+	}
+
+	/**
+	 * Discards the version of this remote object staged or expected from the
+	 * given transaction, if any, for transactions that do not call
+	 * {@link #finishTransaction(Object, Snapshot, boolean)}.
+	 * 
+	 * @param tid
+	 *            transaction identifier.
+	 */
+	void discard(Object tid) {
+		if (history != null)
+			history.finish(tid, false);
+	}
+
+	/**
+	 * Gives the latest committed version of this versioned remote object that
+	 * is visible at the given read stamp (see {@link CommitClock}).
+	 * 
+	 * @param stamp
+	 *            read stamp.
+	 * @return copy of the object or <code>null</code> if that version is no
+	 *         longer kept.
+	 * @throws TransactionException
+	 *             when the first version cannot be copied.
+	 */
+	Object getVersion(long stamp) throws TransactionException {
+		if (history.isEmpty())
+			history.seed(copyVersion());
+		return history.get(stamp);
+	}
+
+	/**
+	 * Gives the copy buffer of the current state of this remote object. The
+	 * object is copied only if no other transaction is reading a copy of the
+	 * same state, otherwise the copy is shared. It must be called by the
+	 * transaction holding this object and released by
+	 * {@link #releaseBuffer(CopyBuffer)} when the transaction is finished.
+	 * 
+	 * @return the copy buffer.
+	 * @throws CloneNotSupportedException
+	 *             when the object cannot be copied.
+	 */
+	CopyBuffer acquireBuffer() throws CloneNotSupportedException {
+		synchronized (buffers) {
+			CopyBuffer buffer = buffers.get(stamp);
+
+			if (buffer == null) {
+				buffer = new CopyBuffer(stamp, copy());
+				buffers.put(stamp, buffer);
+			}
+
+			buffer.readers++;
+			return buffer;
+		}
+	}
+
+	/**
+	 * Releases a copy buffer given by {@link #acquireBuffer()}. The copy is
+	 * dropped when its last reader releases it.
+	 * 
+	 * @param buffer
+	 *            the released copy buffer.
+	 */
+	void releaseBuffer(CopyBuffer buffer) {
+		synchronized (buffers) {
+			if (--buffer.readers == 0)
+				buffers.remove(buffer.getStamp());
+		}
 	}
 
 	/**
@@ -335,93 +605,37 @@ public class TransactionalUnicastRemoteObject extends UnicastRemoteObject implem
 	 *             when error occurs during snapshot restoration.
 	 */
 	void finishTransaction(Object tid, Snapshot snapshot, boolean restore) throws TransactionException {
-		
+
+		/** The released state becomes a version before the next commits. */
+		if (history != null)
+			history.finish(tid, !restore);
+
 		if (snapshot == null) {
 			lt.release(1);
 			return;
 		}
 
-		if (restore && snapshot.getReadVersion() < getCurrentVersion()) {
+		/** Objects that were not modified need not be restored. */
+		if (restore && snapshot.isCaptured() && snapshot.getReadVersion() < getCurrentVersion()) {
 
 			// Lock before restoring.
 			transactionLock(tid);
 
-			restoreThis(snapshot.getImage());
+			modify();
+			SnapshotStrategies.get(getClass()).restore(this, snapshot.getImage());
 			setCurrentVersion(snapshot.getReadVersion());
 
 			// Forced unlock is necessary because of possible failures.
 			transactionUnlockForce(tid);
 		}
-		
-		lt.release(1);
-	}
-
-	/**
-	 * Performs the serialization of this object to array of bytes.
-	 * 
-	 * @return binary representation of this object.
-	 * @throws TransactionException
-	 *             when error occurs during serialization.
-	 */
-	private byte[] serializeThis() throws TransactionException {
-		try {
-			ByteArrayOutputStream bos = new ByteArrayOutputStream();
-			ObjectOutputStream out = new ObjectOutputStream(bos);
-
-			try {
-				out.writeObject(this);
-				return bos.toByteArray();
-			} catch (IOException e) {
-				throw new TransactionException("Unable to make snapshot.", e);
-			} finally {
-				out.close();
-			}
-		} catch (IOException e) {
-			throw new TransactionException("Unable to make snapshot.", e);
-		}
-	}
 
-	/**
-	 * Restores the image of stored snapshot to this object.
-	 * 
-	 * @param image
-	 *            the stored image of this object.
-	 * @throws TransactionException
-	 *             when error occurs during object restoration.
-	 */
-	private void restoreThis(byte[] image) throws TransactionException {
-		try {
-			ByteArrayInputStream bis = new ByteArrayInputStream(image);
-			ObjectInputStream in = new ObjectInputStream(bis);
-
-			try {
-				Object obj = in.readObject();
-
-				Field[] fields = obj.getClass().getDeclaredFields();
-				Field.setAccessible(fields, true);
-
-				try {
-					for (Field f : fields) {
-						if (!Modifier.isStatic(f.getModifiers()) && !Modifier.isFinal(f.getModifiers())) {
-							Object val = f.get(obj);
-							f.set(this, val);
-						}
-					}
-				} catch (IllegalArgumentException e) {
-					throw new TransactionException("Unable to restore snapshot.", e);
-				} catch (IllegalAccessException e) {
-					throw new TransactionException("Unable to restore snapshot.", e);
-				}
-			} catch (IOException e) {
-				throw new TransactionException("Unable to restore snapshot.", e);
-			} catch (ClassNotFoundException e) {
-				throw new TransactionException("Unable to restore snapshot.", e);
-			} finally {
-				in.close();
-			}
-		} catch (IOException e) {
-			throw new TransactionException("Unable to restore snapshot.", e);
+		/** The image is not needed once the transaction is finished. */
+		if (snapshot.isCaptured()) {
+			SnapshotStrategies.get(getClass()).release(this, snapshot.getImage());
+			snapshot.clear();
 		}
+		
+		lt.release(1);
 	}
 
 	@Override
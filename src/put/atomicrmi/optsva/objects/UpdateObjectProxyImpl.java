@@ -22,7 +22,6 @@
 package put.atomicrmi.optsva.objects;
 
 import java.rmi.RemoteException;
-import java.util.LinkedList;
 import java.util.UUID;
 
 import put.atomicrmi.optsva.TransactionRef;
@@ -39,8 +38,6 @@ import put.atomicrmi.optsva.sync.TransactionFailureMonitorImpl;
 // TODO only implement IObjectProxy
 public class UpdateObjectProxyImpl extends ObjectProxyImpl {
 
-	private static final long serialVersionUID = 4042112660455555346L;
-
 	public UpdateObjectProxyImpl(TransactionRef transaction, UUID tid, TransactionalUnicastRemoteObject object, long writes)
 			throws RemoteException {
 		super(transaction, tid, object, writes, 0, writes, Mode.WRITE_ONLY);
@@ -60,7 +57,7 @@ public class UpdateObjectProxyImpl extends ObjectProxyImpl {
 	public BufferType preWrite() throws RemoteException {
 		object.transactionLock(uid);
 		if (mwv == 0 && mv == 0)
-			logBuffer = new LinkedList<Invocation>();
+			logBuffer = new WriteLog(methods);
 
 		mv++;
 		mwv++;
@@ -101,9 +98,9 @@ public class UpdateObjectProxyImpl extends ObjectProxyImpl {
 			 * We have to make a snapshot, else it thinks we didn't read the
 			 * object and in effect we don't get cv and rv.
 			 */
-			// TODO fakeSnapshot?
 			snapshot = object.snapshot();
-			
+			object.capture(snapshot);
+
 			applyWriteLog();
 
 			/** Prevent recorder from being used again */
@@ -113,7 +110,7 @@ public class UpdateObjectProxyImpl extends ObjectProxyImpl {
 			 * Create buffer for accessing objects after release or remove
 			 * buffer.
 			 */
-			copyBuffer = null;
+			releaseBuffer();
 
 			/** Release object. */
 			object.setCurrentVersion(px);
@@ -0,0 +1,154 @@
+package put.atomicrmi.optsva.objects;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import put.atomicrmi.optsva.Versioned;
+
+/**
+ * Last committed versions of a remote object annotated with {@link Versioned},
+ * stamped by {@link CommitClock}. The copy of the object released by a
+ * transaction is staged until the transaction finishes, and installed as a
+ * version if it commits. Versions are copies that are never modified, so they
+ * are read without synchronization.
+ */
+class VersionHistory {
+
+	/**
+	 * Committed copy of the object.
+	 */
+	private static class Version {
+		final long stamp;
+		final Object copy;
+
+		Version(long stamp, Object copy) {
+			this.stamp = stamp;
+			this.copy = copy;
+		}
+	}
+
+	/**
+	 * Number of versions kept.
+	 */
+	private final int depth;
+
+	/**
+	 * Kept versions, from the oldest.
+	 */
+	private final Deque<Version> versions = new ArrayDeque<Version>();
+
+	/**
+	 * Copies released by unfinished transactions by transaction identifiers.
+	 * A transaction can be expected to stage a copy before it does so, in
+	 * which case the copy is <code>null</code>.
+	 */
+	private final Map<Object, Object> staged = new HashMap<Object, Object>();
+
+	private VersionHistory(int depth) {
+		this.depth = depth;
+	}
+
+	/**
+	 * Creates the history of a remote object, if its class is annotated with
+	 * {@link Versioned}.
+	 * 
+	 * @param cls
+	 *            class of the remote object.
+	 * @return history or <code>null</code> if versions are not kept.
+	 */
+	static VersionHistory forClass(Class<?> cls) {
+		Versioned versioned = cls.getAnnotation(Versioned.class);
+		return versioned == null ? null : new VersionHistory(Math.max(1, versioned.value()));
+	}
+
+	/**
+	 * Tells whether there are no versions yet. The state of an object that was
+	 * never modified is its first version.
+	 * 
+	 * @return <code>true</code> if no version was kept.
+	 */
+	synchronized boolean isEmpty() {
+		return versions.isEmpty();
+	}
+
+	/**
+	 * Keeps the first version of the object, if there is none.
+	 * 
+	 * @param copy
+	 *            copy of the object that was never modified.
+	 */
+	synchronized void seed(Object copy) {
+		if (versions.isEmpty())
+			versions.add(new Version(0, copy));
+	}
+
+	/**
+	 * Notes that a transaction is going to stage a copy.
+	 * 
+	 * @param tid
+	 *            transaction identifier.
+	 */
+	synchronized void expect(Object tid) {
+		if (!staged.containsKey(tid)) {
+			CommitClock.expect(tid);
+			staged.put(tid, null);
+		}
+	}
+
+	/**
+	 * Stages a copy released by a transaction.
+	 * 
+	 * @param tid
+	 *            transaction identifier.
+	 * @param copy
+	 *            copy of the object.
+	 */
+	synchronized void stage(Object tid, Object copy) {
+		expect(tid);
+		staged.put(tid, copy);
+	}
+
+	/**
+	 * Installs the copy staged by a transaction as the latest version, or
+	 * discards it.
+	 * 
+	 * @param tid
+	 *            transaction identifier.
+	 * @param commit
+	 *            <code>true</code> if the transaction commits.
+	 */
+	synchronized void finish(Object tid, boolean commit) {
+		if (!staged.containsKey(tid))
+			return;
+
+		Object copy = staged.remove(tid);
+		if (commit && copy != null) {
+			versions.add(new Version(CommitClock.install(tid), copy));
+			if (versions.size() > depth)
+				versions.removeFirst();
+		}
+
+		CommitClock.finish(tid);
+	}
+
+	/**
+	 * Gives the latest version whose stamp does not exceed the given one.
+	 * 
+	 * @param stamp
+	 *            read stamp.
+	 * @return copy of the object or <code>null</code> if that version is no
+	 *         longer kept.
+	 */
+	synchronized Object get(long stamp) {
+		Iterator<Version> i = versions.descendingIterator();
+		while (i.hasNext()) {
+			Version version = i.next();
+			if (version.stamp <= stamp)
+				return version.copy;
+		}
+		return null;
+	}
+}
@@ -0,0 +1,147 @@
+package put.atomicrmi.optsva.objects;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+import put.atomicrmi.optsva.Escrow;
+import put.atomicrmi.optsva.Overwrites;
+import put.atomicrmi.optsva.snapshots.UndoLog;
+import put.atomicrmi.optsva.snapshots.Undoable;
+
+/**
+ * Writes performed on a remote object by a transaction before they can be
+ * applied to the object. Each write is recorded as the index of the method in
+ * the {@link MethodTable} of the object and the arguments of the call, so
+ * nothing needs to be looked up when the writes are applied.
+ * 
+ * <p>
+ * A call to a method annotated with {@link Overwrites} drops the earlier call
+ * to the same method from the log.
+ */
+class WriteLog {
+
+	/**
+	 * Value in {@link #indices} for a call that was dropped from the log.
+	 */
+	private static final int DROPPED = -1;
+
+	/**
+	 * Methods of the remote object.
+	 */
+	private final MethodTable methods;
+
+	/**
+	 * Method indices of the logged calls, in the order of the calls.
+	 */
+	private int[] indices = new int[8];
+
+	/**
+	 * Arguments of the logged calls.
+	 */
+	private Object[][] args = new Object[8][];
+
+	/**
+	 * Number of logged calls, including dropped ones.
+	 */
+	private int size = 0;
+
+	/**
+	 * Positions of the last calls to methods annotated with
+	 * {@link Overwrites} by method indices, created on first such call.
+	 */
+	private int[] last;
+
+	/**
+	 * Creates an empty log.
+	 * 
+	 * @param methods
+	 *            methods of the remote object.
+	 */
+	WriteLog(MethodTable methods) {
+		this.methods = methods;
+	}
+
+	/**
+	 * Records a call.
+	 * 
+	 * @param method
+	 *            valid index of the called method.
+	 * @param args
+	 *            arguments of the call.
+	 */
+	void add(int method, Object[] args) {
+		if (methods.overwrites(method)) {
+			if (last == null) {
+				last = new int[methods.size()];
+				Arrays.fill(last, DROPPED);
+			}
+
+			if (last[method] != DROPPED) {
+				indices[last[method]] = DROPPED;
+				this.args[last[method]] = null;
+			}
+			last[method] = size;
+		}
+
+		if (size == indices.length) {
+			indices = Arrays.copyOf(indices, size * 2);
+			this.args = Arrays.copyOf(this.args, size * 2);
+		}
+
+		indices[size] = method;
+		this.args[size] = args;
+		size++;
+	}
+
+	/**
+	 * Releases the reservations of the logged calls made by the given escrow.
+	 * 
+	 * @param escrow
+	 *            escrow that reserved the effects of the calls.
+	 */
+	void release(Escrow escrow) {
+		for (int i = 0; i < size; i++) {
+			if (indices[i] != DROPPED)
+				escrow.release(methods.get(indices[i]), args[i]);
+		}
+	}
+
+	/**
+	 * Applies the logged calls to the given object, in the order in which
+	 * they were made. A call that throws an exception does not prevent the
+	 * following calls from being applied.
+	 * 
+	 * @param object
+	 *            object to apply the calls to.
+	 */
+	void apply(Object object) {
+		apply(object, null);
+	}
+
+	/**
+	 * Applies the logged calls to the given object, in the order in which
+	 * they were made, recording their inverses first.
+	 * 
+	 * @param object
+	 *            object to apply the calls to.
+	 * @param undo
+	 *            log recording the inverses of the calls, or
+	 *            <code>null</code> if they are not recorded.
+	 */
+	void apply(Object object, UndoLog undo) {
+		for (int i = 0; i < size; i++) {
+			if (indices[i] == DROPPED)
+				continue;
+
+			Method method = methods.get(indices[i]);
+			if (undo != null)
+				undo.record((Undoable) object, method, args[i]);
+
+			try {
+				method.invoke(object, args[i]);
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
+	}
+}
@@ -0,0 +1,23 @@
+package put.atomicrmi.optsva.refcells;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+import put.atomicrmi.optsva.Access;
+import put.atomicrmi.optsva.Access.Mode;
+import put.atomicrmi.optsva.Overwrites;
+
+/**
+ * A transactional cell holding a single boolean value.
+ * 
+ * @see TxBooleanImpl
+ */
+public interface TxBoolean extends Remote {
+
+	@Access(Mode.READ_ONLY)
+	boolean get() throws RemoteException;
+
+	@Access(Mode.WRITE_ONLY)
+	@Overwrites
+	void set(boolean value) throws RemoteException;
+}
@@ -0,0 +1,38 @@
+package put.atomicrmi.optsva.refcells;
+
+import java.rmi.RemoteException;
+
+import put.atomicrmi.optsva.objects.TransactionalUnicastRemoteObject;
+import put.atomicrmi.optsva.snapshots.Snapshotable;
+
+/**
+ * A transactional cell holding a single boolean value. Its snapshots are copies
+ * of the value, taken without serialization.
+ */
+public class TxBooleanImpl extends TransactionalUnicastRemoteObject implements TxBoolean, Snapshotable, Cloneable {
+
+	private static final long serialVersionUID = 149880132854749822L;
+
+	private boolean value;
+
+	public TxBooleanImpl(boolean value) throws RemoteException {
+		super();
+		this.value = value;
+	}
+
+	public boolean get() {
+		return value;
+	}
+
+	public void set(boolean value) {
+		this.value = value;
+	}
+
+	public Object snapshot() {
+		return value;
+	}
+
+	public void restore(Object image) {
+		value = (Boolean) image;
+	}
+}
@@ -0,0 +1,36 @@
+package put.atomicrmi.optsva.refcells;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+import put.atomicrmi.optsva.Access;
+import put.atomicrmi.optsva.Access.Mode;
+import put.atomicrmi.optsva.Commutative;
+import put.atomicrmi.optsva.Overwrites;
+
+/**
+ * A transactional cell holding a single double value.
+ * 
+ * @see TxDoubleImpl
+ */
+public interface TxDouble extends Remote {
+
+	@Access(Mode.READ_ONLY)
+	double get() throws RemoteException;
+
+	@Access(Mode.WRITE_ONLY)
+	@Overwrites
+	void set(double value) throws RemoteException;
+
+	/**
+	 * Adds to the value. Transactions adding to the same cell in
+	 * {@link Mode#COMMUTATIVE} mode do not wait for one another.
+	 * 
+	 * @param delta
+	 *            added value.
+	 * @throws RemoteException
+	 *             when remote execution fails.
+	 */
+	@Commutative
+	void add(double delta) throws RemoteException;
+}
@@ -0,0 +1,92 @@
+package put.atomicrmi.optsva.refcells;
+
+import java.rmi.RemoteException;
+
+import put.atomicrmi.optsva.objects.TransactionalUnicastRemoteObject;
+import put.atomicrmi.optsva.snapshots.Snapshotable;
+
+/**
+ * A transactional cell holding a fixed number of double values. Its snapshots
+ * are copies of the array of values, taken without serialization.
+ */
+public class TxDoubleArrayImpl extends TransactionalUnicastRemoteObject implements TxDoubleArray, Snapshotable,
+		Cloneable {
+
+	private static final long serialVersionUID = 540625077623011308L;
+
+	private double[] values;
+
+	/**
+	 * Creates a cell holding the given number of zeros.
+	 * 
+	 * @param length
+	 *            number of values.
+	 * @throws RemoteException
+	 *             when the cell cannot be exported.
+	 */
+	public TxDoubleArrayImpl(int length) throws RemoteException {
+		super();
+		values = new double[length];
+	}
+
+	/**
+	 * Creates a cell holding copies of the given values.
+	 * 
+	 * @param values
+	 *            initial values.
+	 * @throws RemoteException
+	 *             when the cell cannot be exported.
+	 */
+	public TxDoubleArrayImpl(double[] values) throws RemoteException {
+		super();
+		this.values = values.clone();
+	}
+
+	public int length() {
+		return values.length;
+	}
+
+	public double get(int index) {
+		return values[index];
+	}
+
+	public double[] getAll() {
+		return values.clone();
+	}
+
+	public void set(int index, double value) {
+		values[index] = value;
+	}
+
+	public void setAll(double[] values) {
+		if (values.length != this.values.length)
+			throw new IllegalArgumentException("Expected " + this.values.length + " values, got " + values.length
+					+ ".");
+		System.arraycopy(values, 0, this.values, 0, values.length);
+	}
+
+	public void add(int index, double delta) {
+		values[index] += delta;
+	}
+
+	public Object snapshot() {
+		return values.clone();
+	}
+
+	/**
+	 * Copies the image, which must not be modified by later writes.
+	 */
+	public void restore(Object image) {
+		values = ((double[]) image).clone();
+	}
+
+	/**
+	 * Copies the values, so that buffers are not affected by later writes.
+	 */
+	@Override
+	public Object clone() throws CloneNotSupportedException {
+		TxDoubleArrayImpl copy = (TxDoubleArrayImpl) super.clone();
+		copy.values = values.clone();
+		return copy;
+	}
+}
@@ -0,0 +1,42 @@
+package put.atomicrmi.optsva.refcells;
+
+import java.rmi.RemoteException;
+
+import put.atomicrmi.optsva.objects.TransactionalUnicastRemoteObject;
+import put.atomicrmi.optsva.snapshots.Snapshotable;
+
+/**
+ * A transactional cell holding a single double value. Its snapshots are copies
+ * of the value, taken without serialization.
+ */
+public class TxDoubleImpl extends TransactionalUnicastRemoteObject implements TxDouble, Snapshotable, Cloneable {
+
+	private static final long serialVersionUID = 499046131664858743L;
+
+	private double value;
+
+	public TxDoubleImpl(double value) throws RemoteException {
+		super();
+		this.value = value;
+	}
+
+	public double get() {
+		return value;
+	}
+
+	public void set(double value) {
+		this.value = value;
+	}
+
+	public void add(double delta) {
+		value += delta;
+	}
+
+	public Object snapshot() {
+		return value;
+	}
+
+	public void restore(Object image) {
+		value = (Double) image;
+	}
+}
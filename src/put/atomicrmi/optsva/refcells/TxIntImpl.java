@@ -0,0 +1,42 @@
+package put.atomicrmi.optsva.refcells;
+
+import java.rmi.RemoteException;
+
+import put.atomicrmi.optsva.objects.TransactionalUnicastRemoteObject;
+import put.atomicrmi.optsva.snapshots.Snapshotable;
+
+/**
+ * A transactional cell holding a single int value. Its snapshots are copies
+ * of the value, taken without serialization.
+ */
+public class TxIntImpl extends TransactionalUnicastRemoteObject implements TxInt, Snapshotable, Cloneable {
+
+	private static final long serialVersionUID = 144673938986757476L;
+
+	private int value;
+
+	public TxIntImpl(int value) throws RemoteException {
+		super();
+		this.value = value;
+	}
+
+	public int get() {
+		return value;
+	}
+
+	public void set(int value) {
+		this.value = value;
+	}
+
+	public void add(int delta) {
+		value += delta;
+	}
+
+	public Object snapshot() {
+		return value;
+	}
+
+	public void restore(Object image) {
+		value = (Integer) image;
+	}
+}
@@ -0,0 +1,65 @@
+package put.atomicrmi.optsva.refcells;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+import put.atomicrmi.optsva.Access;
+import put.atomicrmi.optsva.Access.Mode;
+import put.atomicrmi.optsva.Commutative;
+import put.atomicrmi.optsva.Overwrites;
+
+/**
+ * A transactional cell holding a fixed number of long values, which can be
+ * read and written all at once, in a single invocation.
+ * 
+ * @see TxLongArrayImpl
+ */
+public interface TxLongArray extends Remote {
+
+	@Access(Mode.READ_ONLY)
+	int length() throws RemoteException;
+
+	@Access(Mode.READ_ONLY)
+	long get(int index) throws RemoteException;
+
+	/**
+	 * Gives all the values.
+	 * 
+	 * @return copy of the values.
+	 * @throws RemoteException
+	 *             when remote execution fails.
+	 */
+	@Access(Mode.READ_ONLY)
+	long[] getAll() throws RemoteException;
+
+	@Access(Mode.WRITE_ONLY)
+	void set(int index, long value) throws RemoteException;
+
+	/**
+	 * Sets all the values.
+	 * 
+	 * @param values
+	 *            new values, as many as {@link #length()}. The values may be
+	 *            copied only when the write is applied, so the array must not
+	 *            be modified afterwards.
+	 * @throws RemoteException
+	 *             when remote execution fails.
+	 */
+	@Access(Mode.WRITE_ONLY)
+	@Overwrites
+	void setAll(long[] values) throws RemoteException;
+
+	/**
+	 * Adds to one of the values. Transactions adding to the same cell in
+	 * {@link Mode#COMMUTATIVE} mode do not wait for one another.
+	 * 
+	 * @param index
+	 *            index of the value.
+	 * @param delta
+	 *            added value.
+	 * @throws RemoteException
+	 *             when remote execution fails.
+	 */
+	@Commutative
+	void add(int index, long delta) throws RemoteException;
+}
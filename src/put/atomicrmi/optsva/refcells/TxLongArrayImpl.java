@@ -0,0 +1,91 @@
+package put.atomicrmi.optsva.refcells;
+
+import java.rmi.RemoteException;
+
+import put.atomicrmi.optsva.objects.TransactionalUnicastRemoteObject;
+import put.atomicrmi.optsva.snapshots.Snapshotable;
+
+/**
+ * A transactional cell holding a fixed number of long values. Its snapshots
+ * are copies of the array of values, taken without serialization.
+ */
+public class TxLongArrayImpl extends TransactionalUnicastRemoteObject implements TxLongArray, Snapshotable, Cloneable {
+
+	private static final long serialVersionUID = 495584819885786268L;
+
+	private long[] values;
+
+	/**
+	 * Creates a cell holding the given number of zeros.
+	 * 
+	 * @param length
+	 *            number of values.
+	 * @throws RemoteException
+	 *             when the cell cannot be exported.
+	 */
+	public TxLongArrayImpl(int length) throws RemoteException {
+		super();
+		values = new long[length];
+	}
+
+	/**
+	 * Creates a cell holding copies of the given values.
+	 * 
+	 * @param values
+	 *            initial values.
+	 * @throws RemoteException
+	 *             when the cell cannot be exported.
+	 */
+	public TxLongArrayImpl(long[] values) throws RemoteException {
+		super();
+		this.values = values.clone();
+	}
+
+	public int length() {
+		return values.length;
+	}
+
+	public long get(int index) {
+		return values[index];
+	}
+
+	public long[] getAll() {
+		return values.clone();
+	}
+
+	public void set(int index, long value) {
+		values[index] = value;
+	}
+
+	public void setAll(long[] values) {
+		if (values.length != this.values.length)
+			throw new IllegalArgumentException("Expected " + this.values.length + " values, got " + values.length
+					+ ".");
+		System.arraycopy(values, 0, this.values, 0, values.length);
+	}
+
+	public void add(int index, long delta) {
+		values[index] += delta;
+	}
+
+	public Object snapshot() {
+		return values.clone();
+	}
+
+	/**
+	 * Copies the image, which must not be modified by later writes.
+	 */
+	public void restore(Object image) {
+		values = ((long[]) image).clone();
+	}
+
+	/**
+	 * Copies the values, so that buffers are not affected by later writes.
+	 */
+	@Override
+	public Object clone() throws CloneNotSupportedException {
+		TxLongArrayImpl copy = (TxLongArrayImpl) super.clone();
+		copy.values = values.clone();
+		return copy;
+	}
+}
@@ -0,0 +1,42 @@
+package put.atomicrmi.optsva.refcells;
+
+import java.rmi.RemoteException;
+
+import put.atomicrmi.optsva.objects.TransactionalUnicastRemoteObject;
+import put.atomicrmi.optsva.snapshots.Snapshotable;
+
+/**
+ * A transactional cell holding a single long value. Its snapshots are copies
+ * of the value, taken without serialization.
+ */
+public class TxLongImpl extends TransactionalUnicastRemoteObject implements TxLong, Snapshotable, Cloneable {
+
+	private static final long serialVersionUID = 936347249418685576L;
+
+	private long value;
+
+	public TxLongImpl(long value) throws RemoteException {
+		super();
+		this.value = value;
+	}
+
+	public long get() {
+		return value;
+	}
+
+	public void set(long value) {
+		this.value = value;
+	}
+
+	public void add(long delta) {
+		value += delta;
+	}
+
+	public Object snapshot() {
+		return value;
+	}
+
+	public void restore(Object image) {
+		value = (Long) image;
+	}
+}
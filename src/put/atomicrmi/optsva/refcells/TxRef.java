@@ -0,0 +1,26 @@
+package put.atomicrmi.optsva.refcells;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+import put.atomicrmi.optsva.Access;
+import put.atomicrmi.optsva.Access.Mode;
+import put.atomicrmi.optsva.Overwrites;
+
+/**
+ * A transactional cell holding a single reference. The referenced object
+ * should be immutable, since snapshots copy the reference, not the object.
+ * 
+ * @param <T>
+ *            type of the referenced object.
+ * @see TxRefImpl
+ */
+public interface TxRef<T> extends Remote {
+
+	@Access(Mode.READ_ONLY)
+	T get() throws RemoteException;
+
+	@Access(Mode.WRITE_ONLY)
+	@Overwrites
+	void set(T value) throws RemoteException;
+}
@@ -0,0 +1,42 @@
+package put.atomicrmi.optsva.refcells;
+
+import java.rmi.RemoteException;
+
+import put.atomicrmi.optsva.objects.TransactionalUnicastRemoteObject;
+import put.atomicrmi.optsva.snapshots.Snapshotable;
+
+/**
+ * A transactional cell holding a single reference. Its snapshots are copies
+ * of the reference, taken without serialization.
+ * 
+ * @param <T>
+ *            type of the referenced object.
+ */
+public class TxRefImpl<T> extends TransactionalUnicastRemoteObject implements TxRef<T>, Snapshotable, Cloneable {
+
+	private static final long serialVersionUID = 910064986265665783L;
+
+	private T value;
+
+	public TxRefImpl(T value) throws RemoteException {
+		super();
+		this.value = value;
+	}
+
+	public T get() {
+		return value;
+	}
+
+	public void set(T value) {
+		this.value = value;
+	}
+
+	public Object snapshot() {
+		return value;
+	}
+
+	@SuppressWarnings("unchecked")
+	public void restore(Object image) {
+		value = (T) image;
+	}
+}
@@ -0,0 +1,144 @@
+package put.atomicrmi.optsva.snapshots;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of direct byte buffers, whose contents are stored outside of the heap.
+ * Buffers are pooled in size classes of powers of two, from
+ * {@link #MIN_SIZE} to {@link #MAX_SIZE} bytes. Larger buffers are allocated
+ * on demand and left to the garbage collector when released.
+ * 
+ * Allocating direct buffers is expensive and the memory they hold is freed
+ * only when they are garbage collected, so released buffers are kept for
+ * reuse, as long as the total capacity of the kept buffers does not exceed the
+ * budget of the pool. Buffers released above the budget are dropped.
+ */
+public class DirectBufferPool {
+
+	/**
+	 * Size of the smallest pooled buffers.
+	 */
+	public static final int MIN_SIZE = 1 << 12;
+
+	/**
+	 * Size of the largest pooled buffers.
+	 */
+	public static final int MAX_SIZE = 1 << 24;
+
+	/**
+	 * Released buffers by size classes.
+	 */
+	private final Queue<ByteBuffer>[] free;
+
+	/**
+	 * Total capacity of the released buffers, in bytes.
+	 */
+	private final AtomicLong retained = new AtomicLong();
+
+	/**
+	 * Largest total capacity of the released buffers kept, in bytes.
+	 */
+	private volatile long budget;
+
+	/**
+	 * Creates an empty pool.
+	 * 
+	 * @param budget
+	 *            largest total capacity of the released buffers kept, in
+	 *            bytes.
+	 */
+	@SuppressWarnings("unchecked")
+	public DirectBufferPool(long budget) {
+		int classes = Integer.numberOfTrailingZeros(MAX_SIZE) - Integer.numberOfTrailingZeros(MIN_SIZE) + 1;
+
+		this.budget = budget;
+		free = (Queue<ByteBuffer>[]) new Queue<?>[classes];
+		for (int i = 0; i < classes; i++)
+			free[i] = new ConcurrentLinkedQueue<ByteBuffer>();
+	}
+
+	/**
+	 * Changes the largest total capacity of the released buffers kept. If the
+	 * buffers kept exceed the new budget, the largest ones are dropped.
+	 * 
+	 * @param budget
+	 *            largest total capacity of the released buffers kept, in
+	 *            bytes.
+	 */
+	public void setBudget(long budget) {
+		this.budget = budget;
+
+		for (int i = free.length - 1; i >= 0 && retained.get() > budget; i--) {
+			ByteBuffer buffer;
+			while (retained.get() > budget && (buffer = free[i].poll()) != null)
+				retained.addAndGet(-buffer.capacity());
+		}
+	}
+
+	/**
+	 * Gives the total capacity of the released buffers kept by this pool.
+	 * 
+	 * @return number of bytes.
+	 */
+	public long getRetained() {
+		return retained.get();
+	}
+
+	/**
+	 * Gives a buffer able to hold the given number of bytes. The limit of the
+	 * buffer is set to the number of bytes.
+	 * 
+	 * @param size
+	 *            number of bytes.
+	 * @return cleared direct buffer.
+	 */
+	public ByteBuffer acquire(int size) {
+		if (size > MAX_SIZE)
+			return ByteBuffer.allocateDirect(size);
+
+		int sizeClass = sizeClass(size);
+		ByteBuffer buffer = free[sizeClass].poll();
+		if (buffer == null)
+			buffer = ByteBuffer.allocateDirect(MIN_SIZE << sizeClass);
+		else
+			retained.addAndGet(-buffer.capacity());
+
+		buffer.clear();
+		buffer.limit(size);
+		return buffer;
+	}
+
+	/**
+	 * Returns a buffer to the pool. The buffer must not be used afterwards. It
+	 * is dropped if keeping it would exceed the budget of the pool.
+	 * 
+	 * @param buffer
+	 *            buffer given by {@link #acquire(int)}.
+	 */
+	public void release(ByteBuffer buffer) {
+		int capacity = buffer.capacity();
+		if (capacity > MAX_SIZE || Integer.bitCount(capacity) != 1)
+			return;
+
+		if (retained.addAndGet(capacity) <= budget)
+			free[sizeClass(capacity)].offer(buffer);
+		else
+			retained.addAndGet(-capacity);
+	}
+
+	/**
+	 * Gives the smallest size class holding the given number of bytes.
+	 * 
+	 * @param size
+	 *            number of bytes, at most {@link #MAX_SIZE}.
+	 * @return index of the size class.
+	 */
+	private static int sizeClass(int size) {
+		if (size <= MIN_SIZE)
+			return 0;
+		return 32 - Integer.numberOfLeadingZeros(size - 1) - Integer.numberOfTrailingZeros(MIN_SIZE);
+	}
+}
@@ -0,0 +1,202 @@
+package put.atomicrmi.optsva.snapshots;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import put.atomicrmi.optsva.objects.TransactionalUnicastRemoteObject;
+
+/**
+ * Snapshot strategy that serializes remote objects to direct byte buffers,
+ * outside of the heap. Images of large objects held by many concurrent
+ * transactions then do not fill the young generation or get promoted, so the
+ * heap usage does not grow with the size of the objects. Objects are
+ * serialized straight into the buffers, never through an array on the heap.
+ * The buffers are taken from a pool shared by all classes using this strategy
+ * and returned to it when transactions finish.
+ * 
+ * The strategy is chosen by annotating the class of remote objects with
+ * <code>@SnapshotWith(DirectSerializationStrategy.class)</code>.
+ */
+public class DirectSerializationStrategy extends SerializationStrategy {
+
+	/**
+	 * Default largest total capacity of the released buffers kept by the
+	 * pool, in bytes.
+	 */
+	public static final long RETAINED_BYTES = 1 << 26;
+
+	/**
+	 * Pool of the buffers holding the images.
+	 */
+	private static final DirectBufferPool pool = new DirectBufferPool(RETAINED_BYTES);
+
+	/**
+	 * Changes the largest total capacity of the released buffers kept by the
+	 * pool shared by all classes using this strategy (see
+	 * {@link DirectBufferPool#setBudget(long)}).
+	 * 
+	 * @param bytes
+	 *            largest total capacity, in bytes.
+	 */
+	public static void setRetainedBytes(long bytes) {
+		pool.setBudget(bytes);
+	}
+
+	@Override
+	protected OutputStream output(int size) {
+		return new BufferOutputStream(size);
+	}
+
+	@Override
+	protected Object store(OutputStream output) {
+		return ((BufferOutputStream) output).finish();
+	}
+
+	@Override
+	protected void discard(OutputStream output) {
+		release(((BufferOutputStream) output).finish());
+	}
+
+	@Override
+	protected InputStream open(Object image) {
+		return new BufferInputStream((ByteBuffer[]) image);
+	}
+
+	@Override
+	public void release(TransactionalUnicastRemoteObject object, Object image) {
+		release((ByteBuffer[]) image);
+	}
+
+	private static void release(ByteBuffer[] buffers) {
+		for (ByteBuffer buffer : buffers)
+			pool.release(buffer);
+	}
+
+	/**
+	 * Output stream writing to a chain of pooled buffers. The first buffer
+	 * holds the expected size of the image, and every next one is as large as
+	 * all the previous ones together, up to the largest pooled size.
+	 */
+	private static class BufferOutputStream extends OutputStream {
+
+		private final List<ByteBuffer> buffers = new ArrayList<ByteBuffer>(1);
+
+		/**
+		 * Buffer being written, or <code>null</code> before the first write.
+		 */
+		private ByteBuffer current;
+
+		/**
+		 * Size of the next buffer.
+		 */
+		private int next;
+
+		BufferOutputStream(int size) {
+			next = Math.min(size, DirectBufferPool.MAX_SIZE);
+		}
+
+		@Override
+		public void write(int b) {
+			if (current == null || !current.hasRemaining())
+				grow();
+			current.put((byte) b);
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int length) {
+			while (length > 0) {
+				if (current == null || !current.hasRemaining())
+					grow();
+
+				int written = Math.min(length, current.remaining());
+				current.put(bytes, offset, written);
+				offset += written;
+				length -= written;
+			}
+		}
+
+		/**
+		 * Appends the next buffer to the chain.
+		 */
+		private void grow() {
+			if (current != null)
+				current.flip();
+
+			current = pool.acquire(next);
+			current.limit(current.capacity());
+			buffers.add(current);
+
+			long total = 0;
+			for (ByteBuffer buffer : buffers)
+				total += buffer.capacity();
+			next = (int) Math.min(total, DirectBufferPool.MAX_SIZE);
+		}
+
+		/**
+		 * Gives the written buffers, ready to be read.
+		 */
+		ByteBuffer[] finish() {
+			if (current != null)
+				current.flip();
+			current = null;
+			return buffers.toArray(new ByteBuffer[buffers.size()]);
+		}
+	}
+
+	/**
+	 * Input stream reading the remaining bytes of a chain of byte buffers.
+	 */
+	private static class BufferInputStream extends InputStream {
+
+		private final ByteBuffer[] buffers;
+
+		/**
+		 * Index of the buffer being read.
+		 */
+		private int index;
+
+		BufferInputStream(ByteBuffer[] image) {
+			buffers = new ByteBuffer[image.length];
+			for (int i = 0; i < image.length; i++)
+				buffers[i] = image[i].duplicate();
+		}
+
+		/**
+		 * Gives the buffer being read, or <code>null</code> at the end.
+		 */
+		private ByteBuffer current() {
+			while (index < buffers.length && !buffers[index].hasRemaining())
+				index++;
+			return index < buffers.length ? buffers[index] : null;
+		}
+
+		@Override
+		public int read() {
+			ByteBuffer buffer = current();
+			return buffer == null ? -1 : buffer.get() & 0xff;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) {
+			if (length == 0)
+				return 0;
+
+			ByteBuffer buffer = current();
+			if (buffer == null)
+				return -1;
+
+			length = Math.min(length, buffer.remaining());
+			buffer.get(bytes, offset, length);
+			return length;
+		}
+
+		@Override
+		public int available() {
+			ByteBuffer buffer = current();
+			return buffer == null ? 0 : buffer.remaining();
+		}
+	}
+}
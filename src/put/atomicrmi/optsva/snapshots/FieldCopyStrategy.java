@@ -0,0 +1,84 @@
+package put.atomicrmi.optsva.snapshots;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import put.atomicrmi.optsva.TransactionException;
+import put.atomicrmi.optsva.objects.TransactionalUnicastRemoteObject;
+
+/**
+ * Snapshot strategy that copies the values of the fields of remote objects,
+ * without serialization. The image is a shallow copy: objects referred to by
+ * the fields are not copied, so they must not be modified in place, only
+ * replaced. Fields declared by {@link TransactionalUnicastRemoteObject} and
+ * its superclasses, as well as static and final fields, are not copied.
+ * 
+ * The fields of each class are looked up and made accessible once.
+ */
+public class FieldCopyStrategy implements SnapshotStrategy {
+
+	/**
+	 * Copied fields by classes of remote objects.
+	 */
+	private static final Map<Class<?>, Field[]> fields = new ConcurrentHashMap<Class<?>, Field[]>();
+
+	public Object capture(TransactionalUnicastRemoteObject object) throws TransactionException {
+		Field[] copied = getFields(object.getClass());
+		Object[] image = new Object[copied.length];
+
+		try {
+			for (int i = 0; i < copied.length; i++)
+				image[i] = copied[i].get(object);
+		} catch (IllegalAccessException e) {
+			throw new TransactionException("Unable to make snapshot.", e);
+		}
+
+		return image;
+	}
+
+	public void restore(TransactionalUnicastRemoteObject object, Object image) throws TransactionException {
+		Field[] copied = getFields(object.getClass());
+		Object[] values = (Object[]) image;
+
+		try {
+			for (int i = 0; i < copied.length; i++)
+				copied[i].set(object, values[i]);
+		} catch (IllegalAccessException e) {
+			throw new TransactionException("Unable to restore snapshot.", e);
+		}
+	}
+
+	public void release(TransactionalUnicastRemoteObject object, Object image) {
+		// Nothing to release.
+	}
+
+	/**
+	 * Gives the copied fields of a class of remote objects.
+	 * 
+	 * @param objClass
+	 *            class of remote objects.
+	 * @return accessible fields.
+	 */
+	static Field[] getFields(Class<?> objClass) {
+		Field[] copied = fields.get(objClass);
+		if (copied == null) {
+			List<Field> found = new ArrayList<Field>();
+			for (Class<?> c = objClass; c != TransactionalUnicastRemoteObject.class && c != null; c = c
+					.getSuperclass()) {
+				for (Field f : c.getDeclaredFields()) {
+					if (!Modifier.isStatic(f.getModifiers()) && !Modifier.isFinal(f.getModifiers()))
+						found.add(f);
+				}
+			}
+
+			copied = found.toArray(new Field[found.size()]);
+			Field.setAccessible(copied, true);
+			fields.put(objClass, copied);
+		}
+		return copied;
+	}
+}
@@ -0,0 +1,315 @@
+package put.atomicrmi.optsva.snapshots;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import put.atomicrmi.optsva.TransactionException;
+import put.atomicrmi.optsva.objects.TransactionalUnicastRemoteObject;
+
+/**
+ * Snapshot strategy that serializes remote objects to arrays of bytes. The
+ * image is a deep copy of the object, so it is the safest but also the
+ * slowest strategy. It is used for classes that do not choose any other.
+ * 
+ * Each thread serializes objects with a single stream writing to a single
+ * buffer, both reset between snapshots, so taking a snapshot allocates little
+ * more than the image itself. Subclasses may serialize images elsewhere by
+ * overriding {@link #output(int)} and {@link #store(OutputStream)}. Images
+ * carry no stream header, since they are only ever read by this strategy.
+ */
+public class SerializationStrategy implements SnapshotStrategy {
+
+	/**
+	 * Largest buffer kept by a thread between snapshots, so that a single
+	 * large object does not pin memory for the lifetime of the thread.
+	 */
+	public static final int MAX_RETAINED = 1 << 20;
+
+	/**
+	 * Serialization streams of the threads, created on first snapshot.
+	 */
+	private static final ThreadLocal<Encoder> encoders = new ThreadLocal<Encoder>();
+
+	/**
+	 * Buffers of the threads, to which images are serialized before they are
+	 * copied out, created on first snapshot.
+	 */
+	private static final ThreadLocal<Buffer> buffers = new ThreadLocal<Buffer>();
+
+	/**
+	 * Sizes of the last images by classes of remote objects, used to size the
+	 * buffers up front.
+	 */
+	private static final Map<Class<?>, Integer> sizes = new ConcurrentHashMap<Class<?>, Integer>();
+
+	/**
+	 * Performs the serialization of the object to array of bytes.
+	 * 
+	 * @return binary representation of the object.
+	 * @throws TransactionException
+	 *             when error occurs during serialization.
+	 */
+	public Object capture(TransactionalUnicastRemoteObject object) throws TransactionException {
+		Encoder encoder = encoders.get();
+		OutputStream output = null;
+
+		try {
+			if (encoder == null)
+				encoder = new Encoder();
+
+			Integer size = sizes.get(object.getClass());
+			output = output(size == null ? 0 : size);
+
+			int length = encoder.encode(object, output);
+			sizes.put(object.getClass(), length);
+
+			encoders.set(encoder);
+			return store(output);
+		} catch (IOException e) {
+			/** The stream may be left in any state, so it is not reused. */
+			encoders.set(null);
+			if (output != null)
+				discard(output);
+			throw new TransactionException("Unable to make snapshot.", e);
+		}
+	}
+
+	/**
+	 * Deserializes the image and copies the fields of the object from it, as
+	 * {@link FieldCopyStrategy} does.
+	 * 
+	 * @throws TransactionException
+	 *             when error occurs during object restoration.
+	 */
+	public void restore(TransactionalUnicastRemoteObject object, Object image) throws TransactionException {
+		try {
+			ObjectInputStream in = new Decoder(open(image));
+
+			try {
+				Object obj = in.readObject();
+
+				try {
+					for (Field f : FieldCopyStrategy.getFields(obj.getClass()))
+						f.set(object, f.get(obj));
+				} catch (IllegalArgumentException e) {
+					throw new TransactionException("Unable to restore snapshot.", e);
+				} catch (IllegalAccessException e) {
+					throw new TransactionException("Unable to restore snapshot.", e);
+				}
+			} catch (IOException e) {
+				throw new TransactionException("Unable to restore snapshot.", e);
+			} catch (ClassNotFoundException e) {
+				throw new TransactionException("Unable to restore snapshot.", e);
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			throw new TransactionException("Unable to restore snapshot.", e);
+		}
+	}
+
+	public void release(TransactionalUnicastRemoteObject object, Object image) {
+		// Arrays of bytes are left to the garbage collector.
+	}
+
+	/**
+	 * Gives the stream to which the next image is serialized. By default it
+	 * is the buffer of the current thread, emptied and grown to the expected
+	 * size of the image.
+	 * 
+	 * @param size
+	 *            expected size of the image, or 0 if it is not known.
+	 * @return stream for the image.
+	 */
+	protected OutputStream output(int size) {
+		Buffer buffer = buffers.get();
+		if (buffer == null) {
+			buffer = new Buffer();
+			buffers.set(buffer);
+		}
+
+		buffer.reset();
+		buffer.ensureCapacity(size);
+		return buffer;
+	}
+
+	/**
+	 * Makes an image of a serialized object.
+	 * 
+	 * @param output
+	 *            stream given by {@link #output(int)}, holding the whole
+	 *            serialized object.
+	 * @return image holding the serialized object.
+	 */
+	protected Object store(OutputStream output) {
+		Buffer buffer = (Buffer) output;
+		byte[] image = Arrays.copyOf(buffer.bytes(), buffer.size());
+
+		/** Drop the buffer if it grew too large to keep. */
+		if (buffer.capacity() > MAX_RETAINED)
+			buffers.remove();
+		return image;
+	}
+
+	/**
+	 * Discards a stream given by {@link #output(int)} to which an object
+	 * could not be serialized.
+	 * 
+	 * @param output
+	 *            stream for the image.
+	 */
+	protected void discard(OutputStream output) {
+		buffers.remove();
+	}
+
+	/**
+	 * Gives a stream reading a serialized object from an image created by
+	 * {@link #store(OutputStream)}.
+	 * 
+	 * @param image
+	 *            image of the object.
+	 * @return stream reading the image.
+	 */
+	protected InputStream open(Object image) {
+		return new ByteArrayInputStream((byte[]) image);
+	}
+
+	/**
+	 * Byte array output stream whose buffer can be grown up front.
+	 */
+	private static class Buffer extends ByteArrayOutputStream {
+
+		/**
+		 * Grows the buffer, if necessary, to hold the given number of bytes.
+		 * 
+		 * @param capacity
+		 *            required capacity.
+		 */
+		void ensureCapacity(int capacity) {
+			if (buf.length < capacity)
+				buf = Arrays.copyOf(buf, capacity);
+		}
+
+		int capacity() {
+			return buf.length;
+		}
+
+		byte[] bytes() {
+			return buf;
+		}
+	}
+
+	/**
+	 * Stream passing the written bytes on to the stream of the current image,
+	 * and counting them.
+	 */
+	private static class Redirect extends OutputStream {
+
+		/**
+		 * Stream of the current image, or <code>null</code> if the written
+		 * bytes are dropped.
+		 */
+		private OutputStream target;
+
+		private int count;
+
+		@Override
+		public void write(int b) throws IOException {
+			if (target != null)
+				target.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int length) throws IOException {
+			if (target != null)
+				target.write(bytes, offset, length);
+			count += length;
+		}
+
+		@Override
+		public void flush() throws IOException {
+			if (target != null)
+				target.flush();
+		}
+	}
+
+	/**
+	 * Serialization stream of a single thread, writing to the stream of the
+	 * current image.
+	 */
+	private static class Encoder extends ObjectOutputStream {
+
+		private final Redirect redirect;
+
+		Encoder() throws IOException {
+			this(new Redirect());
+		}
+
+		private Encoder(Redirect redirect) throws IOException {
+			super(redirect);
+			this.redirect = redirect;
+		}
+
+		@Override
+		protected void writeStreamHeader() throws IOException {
+			// Images are read by Decoder, which expects no header.
+		}
+
+		/**
+		 * Serializes an object to the given stream. The written objects and
+		 * class descriptors are forgotten afterwards, so that the next object
+		 * can be deserialized without the images written before it.
+		 * 
+		 * @param object
+		 *            serialized object.
+		 * @param output
+		 *            stream of the image.
+		 * @return number of bytes written.
+		 * @throws IOException
+		 *             when error occurs during serialization.
+		 */
+		int encode(Object object, OutputStream output) throws IOException {
+			int length;
+
+			redirect.target = output;
+			redirect.count = 0;
+			try {
+				writeObject(object);
+				flush();
+				length = redirect.count;
+			} finally {
+				redirect.target = null;
+			}
+
+			/** The reset marker is not part of the image. */
+			reset();
+			flush();
+			return length;
+		}
+	}
+
+	/**
+	 * Deserialization stream reading images written by {@link Encoder}.
+	 */
+	private static class Decoder extends ObjectInputStream {
+
+		Decoder(InputStream in) throws IOException {
+			super(in);
+		}
+
+		@Override
+		protected void readStreamHeader() throws IOException {
+			// Images are written without header.
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package put.atomicrmi.optsva.snapshots;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Chooses the snapshot strategies of classes of remote objects. The strategy
+ * given by the {@link SnapshotWith} annotation is used first. Otherwise, a
+ * class implementing {@link Snapshotable} takes its own snapshots, a class
+ * implementing {@link Undoable} is rolled back by {@link UndoLogStrategy}, and
+ * other remote objects are serialized by {@link SerializationStrategy}.
+ * 
+ * The strategy of a class is chosen when the class is used for the first time.
+ * If several threads do so at once, they all get the same strategy.
+ */
+public class SnapshotStrategies {
+
+	/**
+	 * Strategies shared by all classes that do not need their own instance.
+	 */
+	private static final SnapshotStrategy serialization = new SerializationStrategy();
+	private static final SnapshotStrategy snapshotable = new SnapshotableStrategy();
+	private static final SnapshotStrategy undoLog = new UndoLogStrategy();
+
+	/**
+	 * Snapshot strategies by the classes of remote objects.
+	 */
+	private static final ConcurrentMap<Class<?>, SnapshotStrategy> strategies = new ConcurrentHashMap<Class<?>, SnapshotStrategy>();
+
+	/**
+	 * Gives the snapshot strategy of a class of remote objects.
+	 * 
+	 * @param objClass
+	 *            class of remote objects.
+	 * @return snapshot strategy.
+	 * @throws IllegalArgumentException
+	 *             when the strategy given by {@link SnapshotWith} cannot be
+	 *             instantiated.
+	 */
+	public static SnapshotStrategy get(Class<?> objClass) {
+		SnapshotStrategy strategy = strategies.get(objClass);
+		if (strategy == null) {
+			strategy = choose(objClass);
+
+			/** A strategy chosen concurrently by another thread is kept. */
+			SnapshotStrategy chosen = strategies.putIfAbsent(objClass, strategy);
+			if (chosen != null)
+				strategy = chosen;
+		}
+		return strategy;
+	}
+
+	private static SnapshotStrategy choose(Class<?> objClass) {
+		SnapshotWith annotation = objClass.getAnnotation(SnapshotWith.class);
+		if (annotation != null)
+			return create(objClass, annotation.value());
+
+		if (Snapshotable.class.isAssignableFrom(objClass))
+			return snapshotable;
+
+		if (Undoable.class.isAssignableFrom(objClass))
+			return undoLog;
+
+		return serialization;
+	}
+
+	private static SnapshotStrategy create(Class<?> objClass, Class<? extends SnapshotStrategy> strategyClass) {
+		try {
+			return strategyClass.getDeclaredConstructor().newInstance();
+		} catch (NoSuchMethodException e) {
+			throw new IllegalArgumentException("Unable to create snapshot strategy of " + objClass.getName() + ".", e);
+		} catch (InstantiationException e) {
+			throw new IllegalArgumentException("Unable to create snapshot strategy of " + objClass.getName() + ".", e);
+		} catch (IllegalAccessException e) {
+			throw new IllegalArgumentException("Unable to create snapshot strategy of " + objClass.getName() + ".", e);
+		} catch (InvocationTargetException e) {
+			throw new IllegalArgumentException("Unable to create snapshot strategy of " + objClass.getName() + ".",
+					e.getCause());
+		}
+	}
+}
@@ -0,0 +1,52 @@
+package put.atomicrmi.optsva.snapshots;
+
+import put.atomicrmi.optsva.TransactionException;
+import put.atomicrmi.optsva.objects.TransactionalUnicastRemoteObject;
+
+/**
+ * Takes images of the state of remote objects and restores remote objects to
+ * them. Images are taken when a transaction first accesses an object, and
+ * restored when the transaction rolls back.
+ * 
+ * The strategy of a class of remote objects is chosen by
+ * {@link SnapshotStrategies#get(Class)}. A single strategy is used for all the
+ * objects of a class concurrently, so implementations must be thread safe.
+ */
+public interface SnapshotStrategy {
+
+	/**
+	 * Takes an image of the state of the given remote object.
+	 * 
+	 * @param object
+	 *            remote object.
+	 * @return image of the state of the object.
+	 * @throws TransactionException
+	 *             when the image cannot be taken.
+	 */
+	Object capture(TransactionalUnicastRemoteObject object) throws TransactionException;
+
+	/**
+	 * Restores the state of the given remote object from an image taken by
+	 * {@link #capture(TransactionalUnicastRemoteObject)}.
+	 * 
+	 * @param object
+	 *            remote object.
+	 * @param image
+	 *            image of the state of the object.
+	 * @throws TransactionException
+	 *             when the state cannot be restored.
+	 */
+	void restore(TransactionalUnicastRemoteObject object, Object image) throws TransactionException;
+
+	/**
+	 * Releases the resources held by an image that will not be used anymore.
+	 * Called when the transaction that took the image finishes, after the
+	 * object was restored if necessary.
+	 * 
+	 * @param object
+	 *            remote object.
+	 * @param image
+	 *            image of the state of the object.
+	 */
+	void release(TransactionalUnicastRemoteObject object, Object image);
+}
@@ -0,0 +1,25 @@
+package put.atomicrmi.optsva.snapshots;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Chooses the snapshot strategy of a class of remote objects, even if the
+ * class implements {@link Snapshotable} or {@link Undoable}. The strategy
+ * class must have a public constructor without parameters.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Inherited
+public @interface SnapshotWith {
+
+	/**
+	 * Snapshot strategy of the annotated class.
+	 * 
+	 * @return class of the strategy.
+	 */
+	Class<? extends SnapshotStrategy> value();
+}
@@ -0,0 +1,26 @@
+package put.atomicrmi.optsva.snapshots;
+
+/**
+ * Implemented by remote objects that take images of their state themselves.
+ * Such objects know which parts of their state can change, so they can copy
+ * only those, and copy them as deeply as needed.
+ */
+public interface Snapshotable {
+
+	/**
+	 * Takes an image of the state of this object. The image must not change
+	 * when the object changes later.
+	 * 
+	 * @return image of the state.
+	 */
+	Object snapshot();
+
+	/**
+	 * Restores the state of this object from an image taken by
+	 * {@link #snapshot()}.
+	 * 
+	 * @param image
+	 *            image of the state.
+	 */
+	void restore(Object image);
+}
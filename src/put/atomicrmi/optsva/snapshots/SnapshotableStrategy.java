@@ -0,0 +1,22 @@
+package put.atomicrmi.optsva.snapshots;
+
+import put.atomicrmi.optsva.TransactionException;
+import put.atomicrmi.optsva.objects.TransactionalUnicastRemoteObject;
+
+/**
+ * Snapshot strategy of remote objects implementing {@link Snapshotable}.
+ */
+public class SnapshotableStrategy implements SnapshotStrategy {
+
+	public Object capture(TransactionalUnicastRemoteObject object) throws TransactionException {
+		return ((Snapshotable) object).snapshot();
+	}
+
+	public void restore(TransactionalUnicastRemoteObject object, Object image) throws TransactionException {
+		((Snapshotable) object).restore(image);
+	}
+
+	public void release(TransactionalUnicastRemoteObject object, Object image) {
+		// Nothing to release.
+	}
+}
@@ -0,0 +1,47 @@
+package put.atomicrmi.optsva.snapshots;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Image of an {@link Undoable} remote object taken by
+ * {@link UndoLogStrategy}. Instead of the state of the object it holds the
+ * inverses of the write invocations applied to the object by a transaction,
+ * in the order of the invocations. The log may be undone by another
+ * transaction rolling back, so it is synchronized.
+ */
+public class UndoLog {
+
+	/**
+	 * Inverses of the applied invocations.
+	 */
+	private final List<Runnable> inverses = new ArrayList<Runnable>();
+
+	/**
+	 * Records the inverse of an invocation that is about to be applied to the
+	 * object.
+	 * 
+	 * @param object
+	 *            remote object.
+	 * @param method
+	 *            method of the remote interface.
+	 * @param args
+	 *            arguments of the invocation.
+	 */
+	public synchronized void record(Undoable object, Method method, Object[] args) {
+		Runnable inverse = object.inverse(method, args);
+		if (inverse != null)
+			inverses.add(inverse);
+	}
+
+	/**
+	 * Undoes the recorded invocations, from the last one to the first one.
+	 * The log is empty afterwards, so it is never undone twice.
+	 */
+	synchronized void undo() {
+		for (int i = inverses.size() - 1; i >= 0; i--)
+			inverses.get(i).run();
+		inverses.clear();
+	}
+}
@@ -0,0 +1,77 @@
+package put.atomicrmi.optsva.snapshots;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import put.atomicrmi.optsva.TransactionException;
+import put.atomicrmi.optsva.objects.TransactionalUnicastRemoteObject;
+
+/**
+ * Snapshot strategy of remote objects implementing {@link Undoable}. The
+ * image is an empty {@link UndoLog}, filled with the inverses of the writes
+ * of the transaction as they are applied to the object, and the object is
+ * restored by undoing them in reverse order.
+ * 
+ * <p>
+ * A transaction may modify an object released early by a transaction that
+ * then rolls back. The inverses of the first one only undo its own writes,
+ * so the logs of all the unfinished transactions that modified the object
+ * are kept in the order of their modifications, and a rollback undoes the
+ * logs that follow its own before its own. The transactions owning them are
+ * rolled back too, and find their logs empty.
+ */
+public class UndoLogStrategy implements SnapshotStrategy {
+
+	/**
+	 * Logs of unfinished transactions by the objects they modified, in the
+	 * order in which they were taken.
+	 */
+	private final Map<TransactionalUnicastRemoteObject, List<UndoLog>> pending = new IdentityHashMap<TransactionalUnicastRemoteObject, List<UndoLog>>();
+
+	public Object capture(TransactionalUnicastRemoteObject object) throws TransactionException {
+		UndoLog log = new UndoLog();
+
+		synchronized (pending) {
+			List<UndoLog> logs = pending.get(object);
+			if (logs == null) {
+				logs = new ArrayList<UndoLog>();
+				pending.put(object, logs);
+			}
+			logs.add(log);
+		}
+
+		return log;
+	}
+
+	public void restore(TransactionalUnicastRemoteObject object, Object image) throws TransactionException {
+		List<UndoLog> undone = new ArrayList<UndoLog>();
+
+		synchronized (pending) {
+			List<UndoLog> logs = pending.get(object);
+			int first = logs == null ? -1 : logs.indexOf(image);
+
+			if (first < 0)
+				undone.add((UndoLog) image);
+			else
+				for (int i = logs.size() - 1; i >= first; i--)
+					undone.add(logs.get(i));
+		}
+
+		try {
+			for (UndoLog log : undone)
+				log.undo();
+		} catch (RuntimeException e) {
+			throw new TransactionException("Unable to restore snapshot.", e);
+		}
+	}
+
+	public void release(TransactionalUnicastRemoteObject object, Object image) {
+		synchronized (pending) {
+			List<UndoLog> logs = pending.get(object);
+			if (logs != null && logs.remove(image) && logs.isEmpty())
+				pending.remove(object);
+		}
+	}
+}
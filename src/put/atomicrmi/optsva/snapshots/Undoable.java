@@ -0,0 +1,33 @@
+package put.atomicrmi.optsva.snapshots;
+
+import java.lang.reflect.Method;
+
+/**
+ * Implemented by remote objects that are rolled back by undoing the writes of
+ * the aborting transaction instead of restoring an image of their whole
+ * state. Rolling back then takes time proportional to the number of writes
+ * rather than to the size of the object, which pays off for large objects,
+ * such as collections, modified by few writes per transaction.
+ * 
+ * <p>
+ * Every invocation of a write method of the remote interfaces of the object
+ * must be undoable, because an invocation without an inverse is never undone.
+ * 
+ * @see UndoLogStrategy
+ */
+public interface Undoable {
+
+	/**
+	 * Gives an operation undoing a write invocation. Called just before the
+	 * invocation is applied to the object, so the operation can remember the
+	 * state the invocation is about to overwrite.
+	 * 
+	 * @param method
+	 *            method of the remote interface.
+	 * @param args
+	 *            arguments of the invocation.
+	 * @return operation undoing the invocation, or <code>null</code> if the
+	 *         invocation does not change the object.
+	 */
+	Runnable inverse(Method method, Object[] args);
+}
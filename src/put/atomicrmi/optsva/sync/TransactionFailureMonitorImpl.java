@@ -31,6 +31,7 @@ import java.util.UUID;
 
 import put.atomicrmi.optsva.objects.ObjectProxyImpl;
 import put.atomicrmi.optsva.refcells.BooleanHolder;
+import put.util.ids.IdGenerators;
 
 /**
  * Detects failure of transactions that locked some remote object on particular
@@ -75,7 +76,7 @@ public class TransactionFailureMonitorImpl extends UnicastRemoteObject implement
 	/**
 	 * Transactions failure monitor unique identifier.
 	 */
-	private UUID id = UUID.randomUUID();
+	private UUID id = IdGenerators.next();
 
 	private boolean shutdown;
 
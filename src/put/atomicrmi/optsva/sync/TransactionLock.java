@@ -0,0 +1,370 @@
+package put.atomicrmi.optsva.sync;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.AbstractQueuedLongSynchronizer;
+
+/**
+ * Reentrant lock held by transactions rather than by threads. A transaction
+ * is identified by any object compared with {@link Object#equals(Object)}
+ * (usually its UUID), and any of its threads can lock, unlock or force unlock
+ * the lock on its behalf. Threads of other transactions wait in a queue, and
+ * can give up waiting when interrupted or when a timeout expires.
+ * 
+ * <p>
+ * A fair lock is given to the longest waiting thread, unless it is locked
+ * again by the transaction holding it. A non-fair lock can be taken by any
+ * thread when it is free, which gives more throughput.
+ * 
+ * <p>
+ * The lock counts the number of times it was taken, how many of those had to
+ * wait and for how long it was held in total, as well as the longest queue of
+ * waiting threads.
+ */
+public class TransactionLock {
+
+	/**
+	 * Number of holds released by a forced unlock.
+	 */
+	private static final long ALL = -1;
+
+	/**
+	 * Transaction on whose behalf the current thread is locking or unlocking.
+	 * Synchronizer operations only take numbers of holds, so the transaction
+	 * is passed on this way.
+	 */
+	private static final ThreadLocal<Object> requester = new ThreadLocal<Object>();
+
+	/**
+	 * Transaction holding the lock together with the number of its holds.
+	 * Every change of the lock replaces the whole hold, so the owner and the
+	 * number of holds always change together.
+	 */
+	private static class Hold {
+		private final Object owner;
+		private final long holds;
+		private final long lockedAt;
+
+		private Hold(Object owner, long holds, long lockedAt) {
+			this.owner = owner;
+			this.holds = holds;
+			this.lockedAt = lockedAt;
+		}
+	}
+
+	/**
+	 * Synchronizer queueing the threads waiting for the lock. Its state is
+	 * not used; the lock is held when there is a current hold.
+	 */
+	private class Sync extends AbstractQueuedLongSynchronizer {
+
+		private static final long serialVersionUID = -8045153726914418452L;
+
+		/**
+		 * Current hold or <code>null</code> if the lock is free.
+		 */
+		private final AtomicReference<Hold> hold = new AtomicReference<Hold>();
+
+		@Override
+		protected boolean tryAcquire(long holds) {
+			Object tid = requester.get();
+
+			while (true) {
+				Hold current = hold.get();
+
+				if (current == null) {
+					if (fair) {
+						Thread first = getFirstQueuedThread();
+						if (first != null && first != Thread.currentThread())
+							return false;
+					}
+
+					if (hold.compareAndSet(null, new Hold(tid, holds, System.nanoTime()))) {
+						acquisitions.incrementAndGet();
+						return true;
+					}
+					continue;
+				}
+
+				if (!current.owner.equals(tid))
+					return false;
+
+				if (hold.compareAndSet(current, new Hold(tid, current.holds + holds, current.lockedAt)))
+					return true;
+			}
+		}
+
+		@Override
+		protected boolean tryRelease(long holds) {
+			Object tid = requester.get();
+
+			while (true) {
+				Hold current = hold.get();
+				if (current == null || !current.owner.equals(tid))
+					throw new IllegalMonitorStateException();
+
+				long released = holds == ALL ? current.holds : holds;
+				if (current.holds > released) {
+					if (hold.compareAndSet(current, new Hold(tid, current.holds - released, current.lockedAt)))
+						return false;
+					continue;
+				}
+
+				if (hold.compareAndSet(current, null)) {
+					holdTime.addAndGet(System.nanoTime() - current.lockedAt);
+					return true;
+				}
+			}
+		}
+
+		@Override
+		protected boolean isHeldExclusively() {
+			return hold.get() != null;
+		}
+
+		final long getHolds() {
+			Hold current = hold.get();
+			return current == null ? 0 : current.holds;
+		}
+
+		/**
+		 * Tells whether the lock is held by the given transaction.
+		 */
+		final boolean isHeldBy(Object tid) {
+			Hold current = hold.get();
+			return current != null && current.owner.equals(tid);
+		}
+	}
+
+	private final Sync sync = new Sync();
+
+	private final boolean fair;
+
+	private final AtomicLong acquisitions = new AtomicLong();
+	private final AtomicLong contentions = new AtomicLong();
+	private final AtomicLong holdTime = new AtomicLong();
+	private final AtomicLong maxQueueLength = new AtomicLong();
+
+	/**
+	 * Creates a non-fair lock.
+	 */
+	public TransactionLock() {
+		this(false);
+	}
+
+	/**
+	 * Creates a lock.
+	 * 
+	 * @param fair
+	 *            <code>true</code> if the lock is given to waiting threads in
+	 *            the order in which they came.
+	 */
+	public TransactionLock(boolean fair) {
+		this.fair = fair;
+	}
+
+	/**
+	 * Locks the lock for the given transaction, waiting until it is free if
+	 * another transaction holds it.
+	 * 
+	 * @param tid
+	 *            transaction identifier.
+	 * @throws InterruptedException
+	 *             when the thread is interrupted while waiting.
+	 */
+	public void lock(Object tid) throws InterruptedException {
+		requester.set(tid);
+		try {
+			if (!sync.tryAcquire(1)) {
+				contended();
+				sync.acquireInterruptibly(1);
+			}
+		} finally {
+			requester.remove();
+		}
+	}
+
+	/**
+	 * Locks the lock for the given transaction, unless another transaction
+	 * holds it.
+	 * 
+	 * @param tid
+	 *            transaction identifier.
+	 * @return <code>true</code> if the lock was locked.
+	 */
+	public boolean tryLock(Object tid) {
+		requester.set(tid);
+		try {
+			return sync.tryAcquire(1);
+		} finally {
+			requester.remove();
+		}
+	}
+
+	/**
+	 * Locks the lock for the given transaction, waiting at most the given
+	 * time if another transaction holds it.
+	 * 
+	 * @param tid
+	 *            transaction identifier.
+	 * @param timeout
+	 *            maximum time to wait.
+	 * @param unit
+	 *            unit of the timeout.
+	 * @return <code>true</code> if the lock was locked, or <code>false</code>
+	 *         if the time expired.
+	 * @throws InterruptedException
+	 *             when the thread is interrupted while waiting.
+	 */
+	public boolean tryLock(Object tid, long timeout, TimeUnit unit) throws InterruptedException {
+		requester.set(tid);
+		try {
+			if (sync.tryAcquire(1))
+				return true;
+
+			contended();
+			return sync.tryAcquireNanos(1, unit.toNanos(timeout));
+		} finally {
+			requester.remove();
+		}
+	}
+
+	/**
+	 * Releases a single hold of the given transaction. The lock is freed when
+	 * every hold is released.
+	 * 
+	 * @param tid
+	 *            transaction identifier.
+	 * @return <code>false</code> if the transaction did not hold the lock.
+	 */
+	public boolean unlock(Object tid) {
+		return release(tid, 1);
+	}
+
+	/**
+	 * Releases every hold of the given transaction, freeing the lock. Used
+	 * when a transaction fails and the number of its holds is unknown.
+	 * 
+	 * @param tid
+	 *            transaction identifier.
+	 * @return <code>false</code> if the transaction did not hold the lock.
+	 */
+	public boolean unlockForce(Object tid) {
+		return release(tid, ALL);
+	}
+
+	private boolean release(Object tid, long holds) {
+		requester.set(tid);
+		try {
+			if (!sync.isHeldBy(tid))
+				return false;
+
+			sync.release(holds);
+			return true;
+		} catch (IllegalMonitorStateException e) {
+			/** Released concurrently by another thread of the transaction. */
+			return false;
+		} finally {
+			requester.remove();
+		}
+	}
+
+	/**
+	 * Counts a thread that has to wait for the lock.
+	 */
+	private void contended() {
+		contentions.incrementAndGet();
+
+		long length = sync.getQueueLength() + 1;
+		long max = maxQueueLength.get();
+		while (length > max && !maxQueueLength.compareAndSet(max, length))
+			max = maxQueueLength.get();
+	}
+
+	/**
+	 * Tells whether the lock is given to waiting threads in the order in
+	 * which they came.
+	 * 
+	 * @return <code>true</code> if the lock is fair.
+	 */
+	public boolean isFair() {
+		return fair;
+	}
+
+	/**
+	 * Tells whether any transaction holds the lock.
+	 * 
+	 * @return <code>true</code> if the lock is held.
+	 */
+	public boolean isLocked() {
+		return sync.isHeldExclusively();
+	}
+
+	/**
+	 * Tells whether the lock is held by the given transaction.
+	 * 
+	 * @param tid
+	 *            transaction identifier.
+	 * @return <code>true</code> if the transaction holds the lock.
+	 */
+	public boolean isHeldBy(Object tid) {
+		return sync.isHeldBy(tid);
+	}
+
+	/**
+	 * Gives the number of holds of the transaction holding the lock.
+	 * 
+	 * @return number of holds or 0 if the lock is free.
+	 */
+	public long getHoldCount() {
+		return sync.getHolds();
+	}
+
+	/**
+	 * Gives the estimated number of threads waiting for the lock.
+	 * 
+	 * @return number of waiting threads.
+	 */
+	public int getQueueLength() {
+		return sync.getQueueLength();
+	}
+
+	/**
+	 * Gives the number of times the lock was taken while free.
+	 * 
+	 * @return number of acquisitions.
+	 */
+	public long getAcquisitions() {
+		return acquisitions.get();
+	}
+
+	/**
+	 * Gives the number of times a thread had to wait for the lock.
+	 * 
+	 * @return number of contended acquisitions.
+	 */
+	public long getContentions() {
+		return contentions.get();
+	}
+
+	/**
+	 * Gives the total time for which the lock was held, not counting the
+	 * current hold.
+	 * 
+	 * @return hold time in nanoseconds.
+	 */
+	public long getHoldTime() {
+		return holdTime.get();
+	}
+
+	/**
+	 * Gives the largest number of threads that were waiting for the lock at
+	 * once.
+	 * 
+	 * @return longest queue length.
+	 */
+	public long getMaxQueueLength() {
+		return maxQueueLength.get();
+	}
+}
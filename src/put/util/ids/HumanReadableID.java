@@ -16,7 +16,7 @@ public class HumanReadableID implements UniversalID {
 
 	public HumanReadableID(String label) {
 		this.id = label;
-		this.uuid = UUID.randomUUID();
+		this.uuid = IdGenerators.next();
 	}
 
 	@Override
@@ -0,0 +1,19 @@
+package put.util.ids;
+
+import java.util.UUID;
+
+/**
+ * Source of unique identifiers for transactions, remote objects and other
+ * entities that need to be distinguished across the distributed system.
+ * 
+ * @see IdGenerators
+ */
+public interface IdGenerator {
+	/**
+	 * Generates a new identifier. Identifiers generated by all the nodes of
+	 * the system must be unique.
+	 * 
+	 * @return unique identifier
+	 */
+	UUID generate();
+}
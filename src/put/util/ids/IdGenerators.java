@@ -0,0 +1,41 @@
+package put.util.ids;
+
+import java.util.UUID;
+
+/**
+ * Holds the {@link IdGenerator} used by the current node. By default it is a
+ * {@link SequentialIdGenerator}. A different generator can be set before any
+ * transactions or remote objects are created.
+ */
+public class IdGenerators {
+
+	private static volatile IdGenerator generator = new SequentialIdGenerator();
+
+	/**
+	 * Gives the generator used by the current node.
+	 * 
+	 * @return identifier generator
+	 */
+	public static IdGenerator get() {
+		return generator;
+	}
+
+	/**
+	 * Sets the generator used by the current node.
+	 * 
+	 * @param generator
+	 *            identifier generator
+	 */
+	public static void set(IdGenerator generator) {
+		IdGenerators.generator = generator;
+	}
+
+	/**
+	 * Generates a new identifier using the generator of the current node.
+	 * 
+	 * @return unique identifier
+	 */
+	public static UUID next() {
+		return generator.generate();
+	}
+}
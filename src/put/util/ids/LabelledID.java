@@ -16,7 +16,7 @@ public class LabelledID implements UniversalID {
 
 	public LabelledID(String label) {
 		this.label = label;
-		this.uuid = UUID.randomUUID();
+		this.uuid = IdGenerators.next();
 	}
 	
 	@Override
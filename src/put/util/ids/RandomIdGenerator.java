@@ -0,0 +1,16 @@
+package put.util.ids;
+
+import java.util.UUID;
+
+/**
+ * Generates random (version 4) UUIDs. Every identifier is drawn from a shared
+ * secure random number generator, which makes generation comparatively
+ * expensive and contended when many identifiers are generated concurrently.
+ */
+public class RandomIdGenerator implements IdGenerator {
+
+	@Override
+	public UUID generate() {
+		return UUID.randomUUID();
+	}
+}
@@ -0,0 +1,45 @@
+package put.util.ids;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates identifiers consisting of a random 64-bit node prefix, drawn once
+ * per generator, and a 64-bit sequence number. Generating an identifier takes
+ * a single atomic increment, and identifiers generated by the same node differ
+ * only in the sequence number, which keeps comparing and hashing them cheap.
+ */
+public class SequentialIdGenerator implements IdGenerator {
+
+	/**
+	 * Random prefix shared by the identifiers of this generator.
+	 */
+	private final long node;
+
+	/**
+	 * Last used sequence number.
+	 */
+	private final AtomicLong sequence = new AtomicLong(0);
+
+	public SequentialIdGenerator() {
+		this(UUID.randomUUID().getMostSignificantBits());
+	}
+
+	public SequentialIdGenerator(long node) {
+		this.node = node;
+	}
+
+	/**
+	 * Gives the prefix shared by the identifiers of this generator.
+	 * 
+	 * @return node prefix
+	 */
+	public long getNode() {
+		return node;
+	}
+
+	@Override
+	public UUID generate() {
+		return new UUID(node, sequence.incrementAndGet());
+	}
+}
@@ -10,7 +10,7 @@ public class SimpleID implements UniversalID {
 	private final String label; // TODO transient
 
 	public SimpleID() {
-		this(UUID.randomUUID());
+		this(IdGenerators.next());
 	}
 	
 	public SimpleID(UUID uuid) {
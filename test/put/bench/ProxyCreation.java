@@ -0,0 +1,90 @@
+package put.bench;
+
+import java.rmi.RemoteException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import put.atomicrmi.optsva.Transaction;
+import put.unit.vars.Variable;
+import put.unit.vars.VariableImpl;
+
+/**
+ * Measures how long it takes to create object proxies in
+ * {@link Transaction#reads(Object, int)} as the number of transactions per
+ * second grows. Each thread repeatedly executes a transaction reading its own
+ * variable, so transactions do not wait for one another and the throughput is
+ * bounded by the cost of the transactions themselves.
+ *
+ * Usage: <code>ProxyCreation [seconds per round] [max threads]</code>
+ */
+public class ProxyCreation {
+
+	public static void main(String[] args) throws Exception {
+		long seconds = args.length > 0 ? Long.parseLong(args[0]) : 5;
+		int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+
+		/** Warm up, so that the first round does not pay for class loading. */
+		round(1, 1000);
+
+		System.out.println("threads\ttx/s\tproxy creation (us)");
+		for (int threads = 1; threads <= maxThreads; threads *= 2) {
+			long[] result = round(threads, seconds * 1000);
+			long transactions = result[0];
+			long creation = result[1];
+
+			System.out.println(threads + "\t" + transactions / seconds + "\t"
+					+ (transactions == 0 ? 0 : creation / transactions / 1000));
+		}
+
+		System.exit(0);
+	}
+
+	/**
+	 * Executes transactions in the given number of threads for the given
+	 * time.
+	 *
+	 * @param threads
+	 *            number of threads.
+	 * @param millis
+	 *            duration of the round.
+	 * @return number of executed transactions and the total time spent
+	 *         creating object proxies (ns).
+	 */
+	private static long[] round(int threads, final long millis) throws Exception {
+		final AtomicLong transactions = new AtomicLong();
+		final AtomicLong creation = new AtomicLong();
+		final CountDownLatch finished = new CountDownLatch(threads);
+
+		for (int i = 0; i < threads; i++) {
+			final Variable variable = new VariableImpl("v" + i, i);
+
+			new Thread() {
+				public void run() {
+					try {
+						long end = System.currentTimeMillis() + millis;
+						while (System.currentTimeMillis() < end) {
+							Transaction t = new Transaction();
+
+							long before = System.nanoTime();
+							Variable v = t.reads(variable, 1);
+							creation.addAndGet(System.nanoTime() - before);
+
+							t.start();
+							v.read();
+							t.commit();
+
+							transactions.incrementAndGet();
+						}
+					} catch (RemoteException e) {
+						e.printStackTrace();
+					} finally {
+						finished.countDown();
+					}
+				}
+			}.start();
+		}
+
+		finished.await();
+		return new long[] { transactions.get(), creation.get() };
+	}
+}
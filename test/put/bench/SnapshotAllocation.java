@@ -0,0 +1,123 @@
+package put.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.lang.management.ManagementFactory;
+import java.rmi.RemoteException;
+import java.util.HashMap;
+import java.util.Map;
+
+import put.atomicrmi.optsva.TransactionException;
+import put.atomicrmi.optsva.objects.TransactionalUnicastRemoteObject;
+import put.atomicrmi.optsva.refcells.TxLongImpl;
+import put.atomicrmi.optsva.snapshots.DirectSerializationStrategy;
+import put.atomicrmi.optsva.snapshots.FieldCopyStrategy;
+import put.atomicrmi.optsva.snapshots.SerializationStrategy;
+import put.atomicrmi.optsva.snapshots.SnapshotStrategies;
+import put.atomicrmi.optsva.snapshots.SnapshotStrategy;
+
+/**
+ * Measures the time and the memory allocated by taking a snapshot of a remote
+ * object, with each snapshot strategy and with a fresh serialization stream
+ * per snapshot, as serialization snapshots were taken before the streams were
+ * reused. Also measures the snapshots of a primitive cell. Each image is
+ * released right after it is taken. Allocation is measured per thread on the
+ * heap, which requires a HotSpot JVM.
+ * 
+ * Usage: <code>SnapshotAllocation [snapshots] [entries]</code>
+ */
+public class SnapshotAllocation {
+
+	/**
+	 * Remote object with a state of configurable size.
+	 */
+	static class State extends TransactionalUnicastRemoteObject {
+
+		private static final long serialVersionUID = -1470596307751062574L;
+		private Map<Integer, String> entries = new HashMap<Integer, String>();
+
+		State(int size) throws RemoteException {
+			for (int i = 0; i < size; i++)
+				entries.put(i, "entry" + i);
+		}
+	}
+
+	/**
+	 * Serializes the object with a fresh stream each time.
+	 */
+	static class FreshStreams implements SnapshotStrategy {
+
+		public Object capture(TransactionalUnicastRemoteObject object) throws TransactionException {
+			try {
+				ByteArrayOutputStream bos = new ByteArrayOutputStream();
+				ObjectOutputStream out = new ObjectOutputStream(bos);
+				out.writeObject(object);
+				out.close();
+				return bos.toByteArray();
+			} catch (Exception e) {
+				throw new TransactionException("Unable to make snapshot.", e);
+			}
+		}
+
+		public void restore(TransactionalUnicastRemoteObject object, Object image) {
+			throw new UnsupportedOperationException();
+		}
+
+		public void release(TransactionalUnicastRemoteObject object, Object image) {
+			// Nothing to release.
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		int snapshots = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int entries = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+
+		State state = new State(entries);
+		SnapshotStrategy[] strategies = { new FreshStreams(), new SerializationStrategy(),
+				new DirectSerializationStrategy(), new FieldCopyStrategy() };
+
+		System.out.println("strategy\tns/snapshot\tbytes/snapshot");
+		for (SnapshotStrategy strategy : strategies)
+			report(strategy.getClass().getSimpleName(), strategy, state, snapshots);
+
+		/** Primitive cells take their own snapshots. */
+		TxLongImpl cell = new TxLongImpl(0);
+		report("TxLong", SnapshotStrategies.get(TxLongImpl.class), cell, snapshots);
+
+		System.exit(0);
+	}
+
+	/**
+	 * Measures and prints the cost of a snapshot of the object.
+	 */
+	private static void report(String name, SnapshotStrategy strategy, TransactionalUnicastRemoteObject object,
+			int snapshots) throws TransactionException {
+		/** Warm up, so that the measurement does not include compilation. */
+		measure(strategy, object, snapshots / 10);
+
+		long[] result = measure(strategy, object, snapshots);
+		System.out.println(name + "\t" + result[0] / snapshots + "\t" + result[1] / snapshots);
+	}
+
+	/**
+	 * Takes the given number of snapshots of the object.
+	 * 
+	 * @return time taken (ns) and memory allocated (bytes) by the current
+	 *         thread.
+	 */
+	private static long[] measure(SnapshotStrategy strategy, TransactionalUnicastRemoteObject object, int snapshots)
+			throws TransactionException {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+
+		long allocated = threads.getThreadAllocatedBytes(thread);
+		long start = System.nanoTime();
+
+		for (int i = 0; i < snapshots; i++)
+			strategy.release(object, strategy.capture(object));
+
+		long time = System.nanoTime() - start;
+		return new long[] { time, threads.getThreadAllocatedBytes(thread) - allocated };
+	}
+}
@@ -0,0 +1,94 @@
+package put.unit.api;
+
+import java.rmi.RemoteException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import put.atomicrmi.optsva.Transaction;
+import put.atomicrmi.optsva.sync.Heartbeat;
+import put.atomicrmi.optsva.sync.TaskController;
+import put.atomicrmi.optsva.sync.TransactionFailureMonitorImpl;
+import put.unit.RMITest;
+import put.unit.vars.Variable;
+import edu.umd.cs.mtc.MultithreadedTest;
+import edu.umd.cs.mtc.TestFramework;
+
+/**
+ * Many transactions incrementing the same variable asynchronously, with the
+ * operations of the later transactions submitted first.
+ *
+ * <pre>
+ * T1  [ r(x)0  w(x)1  ]
+ * T2     [ r(x)1  w(x)2  ]
+ * ...
+ * T24       [ r(x)23 w(x)24 ]
+ * </pre>
+ *
+ * The transactions are started in order, and then the increments and commits
+ * are submitted from T24 back to T1. Every operation of Tk waits for Tk-1.
+ * Checks whether the waiting operations do not keep the operations they wait
+ * for from running, so that all transactions complete.
+ */
+public class AsyncChain extends RMITest {
+
+	static final int TRANSACTIONS = 24;
+
+	class Threads extends MultithreadedTest {
+
+		public void thread1() {
+			try {
+				Transaction[] ts = new Transaction[TRANSACTIONS];
+				final Variable[] xs = new Variable[TRANSACTIONS];
+				final CountDownLatch committed = new CountDownLatch(TRANSACTIONS);
+
+				for (int i = 0; i < TRANSACTIONS; i++) {
+					ts[i] = new Transaction();
+					xs[i] = ts[i].accesses((Variable) registry.lookup("x"), 2);
+					ts[i].start();
+				}
+
+				for (int i = TRANSACTIONS - 1; i >= 0; i--) {
+					final Variable x = xs[i];
+					ts[i].submit(new Callable<Void>() {
+						public Void call() throws Exception {
+							x.write(x.read() + 1);
+							return null;
+						}
+					});
+					ts[i].commitAsync().whenDone(new Runnable() {
+						public void run() {
+							committed.countDown();
+						}
+					});
+				}
+
+				Assert.assertTrue("Transactions did not complete.", committed.await(60, TimeUnit.SECONDS));
+			} catch (Exception e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+
+			waitForTick(99);
+			try {
+				TransactionFailureMonitorImpl.getInstance().emergencyStop();
+				TaskController.emergencyStop();
+				Heartbeat.emergencyStop();
+			} catch (RemoteException e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+		}
+	}
+
+	@Test
+	public void asyncChain() throws Throwable {
+		TaskController.emergencyStart();
+		Heartbeat.emergencyStart();
+		TestFramework.runOnce(new Threads());
+		Assert.assertEquals(TRANSACTIONS, state("x"));
+	}
+}
@@ -0,0 +1,71 @@
+package put.unit.api;
+
+import java.rmi.RemoteException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import put.atomicrmi.optsva.Transaction;
+import put.atomicrmi.optsva.TransactionFuture;
+import put.atomicrmi.optsva.sync.Heartbeat;
+import put.atomicrmi.optsva.sync.TaskController;
+import put.atomicrmi.optsva.sync.TransactionFailureMonitorImpl;
+import put.unit.RMITest;
+import put.unit.vars.Variable;
+import edu.umd.cs.mtc.MultithreadedTest;
+import edu.umd.cs.mtc.TestFramework;
+
+/**
+ * Starting, writing and committing asynchronously.
+ */
+public class AsyncCommit extends RMITest {
+	class Threads extends MultithreadedTest {
+
+		public void thread1() {
+			try {
+				final Transaction t = new Transaction();
+				final Variable x = t.accesses((Variable) registry.lookup("x"), 3);
+				final CountDownLatch committed = new CountDownLatch(1);
+
+				t.startAsync();
+				TransactionFuture<Integer> read = t.submit(new Callable<Integer>() {
+					public Integer call() throws Exception {
+						x.write(x.read() + 1);
+						return x.read();
+					}
+				});
+				t.commitAsync().whenDone(new Runnable() {
+					public void run() {
+						committed.countDown();
+					}
+				});
+
+				committed.await();
+				Assert.assertEquals(1, (int) read.get());
+			} catch (Exception e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+
+			waitForTick(99);
+			try {
+				TransactionFailureMonitorImpl.getInstance().emergencyStop();
+				TaskController.emergencyStop();
+				Heartbeat.emergencyStop();
+			} catch (RemoteException e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+		}
+	}
+
+	@Test
+	public void asyncCommit() throws Throwable {
+		TaskController.emergencyStart();
+		Heartbeat.emergencyStart();
+		TestFramework.runOnce(new Threads());
+		Assert.assertEquals(1, state("x"));
+	}
+}
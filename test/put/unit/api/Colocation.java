@@ -0,0 +1,134 @@
+package put.unit.api;
+
+import java.rmi.RemoteException;
+import java.rmi.server.RemoteServer;
+import java.rmi.server.ServerNotActiveException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import put.atomicrmi.optsva.Transaction;
+import put.atomicrmi.optsva.TransactionalRemoteObject;
+import put.atomicrmi.optsva.objects.TransactionalUnicastRemoteObject;
+import put.atomicrmi.optsva.sync.Heartbeat;
+import put.atomicrmi.optsva.sync.TaskController;
+import put.atomicrmi.optsva.sync.TransactionFailureMonitorImpl;
+import put.unit.RMITest;
+import put.unit.vars.RemoteVariable;
+import put.unit.vars.Variable;
+import put.unit.vars.VariableImpl;
+import edu.umd.cs.mtc.MultithreadedTest;
+import edu.umd.cs.mtc.TestFramework;
+
+/**
+ * Transaction accessing a variable placed in the same JVM through its remote
+ * reference.
+ *
+ * <pre>
+ * T1 [ w(l)1 r(l)1 ]
+ * </pre>
+ *
+ * Checks whether the remote reference is recognized as colocated, so that
+ * the variable is invoked without RMI, and whether references to variables
+ * that are not recognized are left as they are.
+ */
+public class Colocation extends RMITest {
+
+	/**
+	 * Number of invocations executed within remote invocations.
+	 */
+	static final AtomicInteger remoteCalls = new AtomicInteger();
+
+	public static class Probe extends VariableImpl {
+
+		private static final long serialVersionUID = -3340954672480157702L;
+
+		public Probe(String name, int value) throws RemoteException {
+			super(name, value);
+		}
+
+		private void probe() {
+			try {
+				RemoteServer.getClientHost();
+				remoteCalls.incrementAndGet();
+			} catch (ServerNotActiveException e) {
+				// Invoked directly.
+			}
+		}
+
+		@Override
+		public int read() {
+			probe();
+			return super.read();
+		}
+
+		@Override
+		public void write(int value) {
+			probe();
+			super.write(value);
+		}
+	}
+
+	class Threads extends MultithreadedTest {
+
+		public void thread1() {
+			Transaction t = null;
+			try {
+				t = new Transaction();
+				Variable l = t.accesses((Variable) registry.lookup("l"));
+
+				t.start();
+				l.write(1);
+				Assert.assertEquals(1, l.read());
+				t.commit();
+
+				Assert.assertEquals("Colocated variable invoked through RMI.", 0, remoteCalls.get());
+			} catch (Exception e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+
+			waitForTick(99);
+			try {
+				TransactionFailureMonitorImpl.getInstance().emergencyStop();
+				TaskController.emergencyStop();
+				Heartbeat.emergencyStop();
+			} catch (RemoteException e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+		}
+	}
+
+	@Test
+	public void getLocal() throws Throwable {
+		VariableImpl variable = new VariableImpl("v", 0);
+		TransactionalRemoteObject stub = (TransactionalRemoteObject) UnicastRemoteObject.toStub(variable);
+		Assert.assertSame(variable, TransactionalUnicastRemoteObject.getLocal(stub));
+		Assert.assertSame(variable, TransactionalUnicastRemoteObject.getLocal(variable));
+
+		TransactionalRemoteObject remote = (TransactionalRemoteObject) UnicastRemoteObject.toStub(new RemoteVariable(
+				variable));
+		Assert.assertSame(remote, TransactionalUnicastRemoteObject.getLocal(remote));
+
+		UnicastRemoteObject.unexportObject(variable, true);
+	}
+
+	@Test
+	public void colocation() throws Throwable {
+		remoteCalls.set(0);
+		Probe l = new Probe("l", 0);
+		registry.bind("l", UnicastRemoteObject.toStub(l));
+		try {
+			TaskController.emergencyStart();
+			Heartbeat.emergencyStart();
+			TestFramework.runOnce(new Threads());
+
+			Assert.assertEquals(1, l.read());
+		} finally {
+			registry.unbind("l");
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package put.unit.api;
+
+import java.rmi.RemoteException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import put.atomicrmi.optsva.Transaction;
+import put.atomicrmi.optsva.sync.Heartbeat;
+import put.atomicrmi.optsva.sync.TaskController;
+import put.atomicrmi.optsva.sync.TransactionFailureMonitorImpl;
+import put.unit.RMITest;
+import put.unit.vars.Variable;
+import edu.umd.cs.mtc.MultithreadedTest;
+import edu.umd.cs.mtc.TestFramework;
+
+/**
+ * A transaction writing a variable and adding to another one in commutative
+ * mode, and a transaction reading both variables that starts while the first
+ * one is running.
+ * 
+ * <pre>
+ * T1 [ w(y)1 +1(x)         c ]
+ * T2        [ r(x)........1 r(y)1 ]
+ * </pre>
+ * 
+ * Checks whether the reading transaction sees either both or none of the
+ * effects of the first one.
+ */
+public class CommutativeAtomicity extends RMITest {
+	class Threads extends MultithreadedTest {
+
+		public void thread1() {
+			try {
+				Transaction t = new Transaction();
+				Variable x = t.commutes((Variable) registry.lookup("x"));
+				Variable y = t.accesses((Variable) registry.lookup("y"));
+
+				t.start();
+				y.write(1);
+				x.add(1);
+
+				waitForTick(1);
+				waitForTick(2);
+
+				t.commit();
+			} catch (Exception e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+
+			waitForTick(99);
+			try {
+				TransactionFailureMonitorImpl.getInstance().emergencyStop();
+				TaskController.emergencyStop();
+				Heartbeat.emergencyStop();
+			} catch (RemoteException e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+		}
+
+		public void thread2() {
+			try {
+				waitForTick(1);
+
+				Transaction t = new Transaction();
+				Variable x = t.reads((Variable) registry.lookup("x"));
+				Variable y = t.reads((Variable) registry.lookup("y"));
+
+				t.start();
+				int added = x.read();
+				int written = y.read();
+				t.commit();
+
+				Assert.assertEquals("Partial commit observed.", added, written);
+			} catch (Exception e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+
+			waitForTick(99);
+			try {
+				TransactionFailureMonitorImpl.getInstance().emergencyStop();
+				TaskController.emergencyStop();
+				Heartbeat.emergencyStop();
+			} catch (RemoteException e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+		}
+	}
+
+	@Test
+	public void commutativeAtomicity() throws Throwable {
+		TaskController.emergencyStart();
+		Heartbeat.emergencyStart();
+		TestFramework.runOnce(new Threads());
+
+		Assert.assertEquals(1, state("x"));
+		Assert.assertEquals(1, state("y"));
+	}
+}
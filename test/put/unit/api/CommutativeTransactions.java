@@ -0,0 +1,98 @@
+package put.unit.api;
+
+import java.rmi.RemoteException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import put.atomicrmi.optsva.Transaction;
+import put.atomicrmi.optsva.sync.Heartbeat;
+import put.atomicrmi.optsva.sync.TaskController;
+import put.atomicrmi.optsva.sync.TransactionFailureMonitorImpl;
+import put.unit.RMITest;
+import put.unit.vars.Variable;
+import edu.umd.cs.mtc.MultithreadedTest;
+import edu.umd.cs.mtc.TestFramework;
+
+/**
+ * Two transactions adding to the same variable in commutative mode. The later
+ * transaction commits while the earlier one is still running, which would
+ * block if the transactions were ordered.
+ * 
+ * <pre>
+ * T1 [ +1               ]
+ * T2      [ +2 +3 ]
+ * </pre>
+ */
+public class CommutativeTransactions extends RMITest {
+	class Threads extends MultithreadedTest {
+
+		public void thread1() {
+			try {
+				Transaction t = new Transaction();
+				Variable x = t.commutes((Variable) registry.lookup("x"));
+
+				t.start();
+				x.add(1);
+
+				waitForTick(1);
+				waitForTick(2);
+
+				t.commit();
+			} catch (Exception e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+
+			waitForTick(99);
+			try {
+				TransactionFailureMonitorImpl.getInstance().emergencyStop();
+				TaskController.emergencyStop();
+				Heartbeat.emergencyStop();
+			} catch (RemoteException e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+		}
+
+		public void thread2() {
+			try {
+				waitForTick(1);
+
+				Transaction t = new Transaction();
+				Variable x = t.commutes((Variable) registry.lookup("x"), 2);
+
+				t.start();
+				x.add(2);
+				x.add(3);
+				t.commit();
+
+				Assert.assertEquals(5, state("x"));
+
+				waitForTick(2);
+			} catch (Exception e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+
+			waitForTick(99);
+			try {
+				TransactionFailureMonitorImpl.getInstance().emergencyStop();
+				TaskController.emergencyStop();
+				Heartbeat.emergencyStop();
+			} catch (RemoteException e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+		}
+	}
+
+	@Test
+	public void commutativeTransactions() throws Throwable {
+		TaskController.emergencyStart();
+		Heartbeat.emergencyStart();
+		TestFramework.runOnce(new Threads());
+
+		Assert.assertEquals(6, state("x"));
+	}
+}
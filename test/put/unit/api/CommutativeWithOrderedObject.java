@@ -0,0 +1,107 @@
+package put.unit.api;
+
+import java.rmi.RemoteException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import put.atomicrmi.optsva.Transaction;
+import put.atomicrmi.optsva.sync.Heartbeat;
+import put.atomicrmi.optsva.sync.TaskController;
+import put.atomicrmi.optsva.sync.TransactionFailureMonitorImpl;
+import put.unit.RMITest;
+import put.unit.vars.Variable;
+import edu.umd.cs.mtc.MultithreadedTest;
+import edu.umd.cs.mtc.TestFramework;
+
+/**
+ * A transaction adding to a variable in commutative mode and writing another
+ * one, committing concurrently with a transaction that started later and
+ * writes both variables. Since the earlier transaction also accesses a
+ * variable in another mode, it takes the version of the first variable when
+ * it starts, so the later transaction waits for the invocation to be applied
+ * before reading it.
+ * 
+ * <pre>
+ * T1 [ w(y)1 +1(x)          c ]
+ * T2        [ r(x)..........1 w(x)11 r(y)1 w(y)2 c ]
+ * </pre>
+ */
+public class CommutativeWithOrderedObject extends RMITest {
+	class Threads extends MultithreadedTest {
+
+		public void thread1() {
+			try {
+				Transaction t = new Transaction();
+				Variable x = t.commutes((Variable) registry.lookup("x"));
+				Variable y = t.accesses((Variable) registry.lookup("y"));
+
+				t.start();
+				y.write(1);
+				x.add(1);
+
+				waitForTick(1);
+				waitForTick(2);
+
+				t.commit();
+			} catch (Exception e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+
+			waitForTick(99);
+			try {
+				TransactionFailureMonitorImpl.getInstance().emergencyStop();
+				TaskController.emergencyStop();
+				Heartbeat.emergencyStop();
+			} catch (RemoteException e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+		}
+
+		public void thread2() {
+			try {
+				waitForTick(1);
+
+				Transaction t = new Transaction();
+				Variable x = t.accesses((Variable) registry.lookup("x"));
+				Variable y = t.accesses((Variable) registry.lookup("y"));
+
+				t.start();
+				/** Waits until the first transaction applies +1 at commit. */
+				Assert.assertEquals(1, x.read());
+				assertTick(2);
+				x.write(11);
+
+				Assert.assertEquals(1, y.read());
+				y.write(2);
+
+				t.commit();
+			} catch (Exception e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+
+			waitForTick(99);
+			try {
+				TransactionFailureMonitorImpl.getInstance().emergencyStop();
+				TaskController.emergencyStop();
+				Heartbeat.emergencyStop();
+			} catch (RemoteException e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+		}
+	}
+
+	@Test
+	public void commutativeWithOrderedObject() throws Throwable {
+		TaskController.emergencyStart();
+		Heartbeat.emergencyStart();
+		TestFramework.runOnce(new Threads());
+
+		Assert.assertEquals(11, state("x"));
+		Assert.assertEquals(2, state("y"));
+	}
+}
@@ -0,0 +1,158 @@
+package put.unit.api;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.rmi.RemoteException;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import put.atomicrmi.optsva.Transaction;
+import put.atomicrmi.optsva.objects.TransactionalUnicastRemoteObject;
+import put.atomicrmi.optsva.snapshots.DirectBufferPool;
+import put.atomicrmi.optsva.snapshots.DirectSerializationStrategy;
+import put.atomicrmi.optsva.snapshots.SerializationStrategy;
+import put.atomicrmi.optsva.snapshots.SnapshotStrategies;
+import put.atomicrmi.optsva.snapshots.SnapshotStrategy;
+import put.atomicrmi.optsva.snapshots.SnapshotWith;
+import put.atomicrmi.optsva.sync.Heartbeat;
+import put.atomicrmi.optsva.sync.TaskController;
+import put.atomicrmi.optsva.sync.TransactionFailureMonitorImpl;
+import put.unit.RMITest;
+import put.unit.vars.DirectVariableImpl;
+import put.unit.vars.Variable;
+import edu.umd.cs.mtc.MultithreadedTest;
+import edu.umd.cs.mtc.TestFramework;
+
+/**
+ * A transaction rolling back changes to a variable whose snapshots are
+ * serialized to direct buffers, after another transaction committed its
+ * changes to the variable.
+ * 
+ * <pre>
+ * T1 [ r(c)0 w(c)1 ]
+ * T2                 [ r(c)1 w(c)2 !
+ * </pre>
+ * 
+ * Also checks that an image larger than the buffers kept by a thread is
+ * serialized and restored without allocating its size on the heap, and that
+ * the pool of direct buffers keeps no more bytes than its budget.
+ */
+public class DirectSnapshotRollback extends RMITest {
+
+	/**
+	 * Remote object whose state is larger than the buffers kept by a thread.
+	 */
+	@SnapshotWith(DirectSerializationStrategy.class)
+	static class Large extends TransactionalUnicastRemoteObject {
+
+		private static final long serialVersionUID = 5164311380939813421L;
+		private byte[] bytes;
+
+		Large(int size) throws RemoteException {
+			bytes = new byte[size];
+			for (int i = 0; i < size; i++)
+				bytes[i] = (byte) i;
+		}
+	}
+
+	class Threads extends MultithreadedTest {
+
+		public void thread1() {
+			try {
+				Transaction t = new Transaction();
+				Variable c = t.accesses((Variable) registry.lookup("c"));
+
+				t.start();
+				c.write(c.read() + 1);
+				t.commit();
+
+				t = new Transaction();
+				c = t.accesses((Variable) registry.lookup("c"));
+
+				t.start();
+				c.write(c.read() + 1);
+				t.rollback();
+			} catch (Exception e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+
+			waitForTick(99);
+			try {
+				TransactionFailureMonitorImpl.getInstance().emergencyStop();
+				TaskController.emergencyStop();
+				Heartbeat.emergencyStop();
+			} catch (RemoteException e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+		}
+	}
+
+	@Test
+	public void directSnapshotRollback() throws Throwable {
+		registry.bind("c", new DirectVariableImpl("c", 0));
+		try {
+			TaskController.emergencyStart();
+			Heartbeat.emergencyStart();
+			TestFramework.runOnce(new Threads());
+
+			Assert.assertEquals(1, state("c"));
+		} finally {
+			registry.unbind("c");
+		}
+	}
+
+	@Test
+	public void largeImage() throws Throwable {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+		long thread = Thread.currentThread().getId();
+
+		int size = 4 * SerializationStrategy.MAX_RETAINED;
+		Large large = new Large(size);
+		byte[] state = large.bytes.clone();
+		SnapshotStrategy strategy = SnapshotStrategies.get(Large.class);
+
+		/** The first image is taken without knowing its size. */
+		strategy.release(large, strategy.capture(large));
+
+		long allocated = threads.getThreadAllocatedBytes(thread);
+		Object image = strategy.capture(large);
+		allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+
+		large.bytes = new byte[0];
+		strategy.restore(large, image);
+		strategy.release(large, image);
+
+		Assert.assertArrayEquals(state, large.bytes);
+		Assert.assertTrue("Allocated " + allocated + " bytes on heap.", allocated < size / 16);
+	}
+
+	@Test
+	public void poolBudget() {
+		int size = DirectBufferPool.MIN_SIZE;
+		DirectBufferPool pool = new DirectBufferPool(2 * size);
+
+		ByteBuffer[] buffers = new ByteBuffer[3];
+		for (int i = 0; i < buffers.length; i++)
+			buffers[i] = pool.acquire(size);
+		for (ByteBuffer buffer : buffers)
+			pool.release(buffer);
+		Assert.assertEquals(2 * size, pool.getRetained());
+
+		/** Buffers that do not fit are dropped, whatever their size class. */
+		pool.release(ByteBuffer.allocateDirect(4 * size));
+		Assert.assertEquals(2 * size, pool.getRetained());
+
+		Assert.assertSame(buffers[0], pool.acquire(size));
+		Assert.assertEquals(size, pool.getRetained());
+
+		pool.setBudget(0);
+		Assert.assertEquals(0, pool.getRetained());
+		Assert.assertNotSame(buffers[1], pool.acquire(size));
+	}
+}
@@ -0,0 +1,76 @@
+package put.unit.api;
+
+import java.rmi.RemoteException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import put.atomicrmi.optsva.Transaction;
+import put.atomicrmi.optsva.sync.Heartbeat;
+import put.atomicrmi.optsva.sync.TaskController;
+import put.atomicrmi.optsva.sync.TransactionFailureMonitorImpl;
+import put.unit.RMITest;
+import put.unit.vars.CopiedVariableImpl;
+import put.unit.vars.Variable;
+import edu.umd.cs.mtc.MultithreadedTest;
+import edu.umd.cs.mtc.TestFramework;
+
+/**
+ * A transaction rolling back changes to a variable whose snapshots are taken
+ * by copying fields instead of serialization, after another transaction
+ * committed its changes to the variable.
+ * 
+ * <pre>
+ * T1 [ r(c)0 w(c)1 ]
+ * T2                 [ r(c)1 w(c)2 !
+ * </pre>
+ */
+public class FieldCopySnapshotRollback extends RMITest {
+	class Threads extends MultithreadedTest {
+
+		public void thread1() {
+			try {
+				Transaction t = new Transaction();
+				Variable c = t.accesses((Variable) registry.lookup("c"));
+
+				t.start();
+				c.write(c.read() + 1);
+				t.commit();
+
+				t = new Transaction();
+				c = t.accesses((Variable) registry.lookup("c"));
+
+				t.start();
+				c.write(c.read() + 1);
+				t.rollback();
+			} catch (Exception e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+
+			waitForTick(99);
+			try {
+				TransactionFailureMonitorImpl.getInstance().emergencyStop();
+				TaskController.emergencyStop();
+				Heartbeat.emergencyStop();
+			} catch (RemoteException e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+		}
+	}
+
+	@Test
+	public void fieldCopySnapshotRollback() throws Throwable {
+		registry.bind("c", new CopiedVariableImpl("c", 0));
+		try {
+			TaskController.emergencyStart();
+			Heartbeat.emergencyStart();
+			TestFramework.runOnce(new Threads());
+
+			Assert.assertEquals(1, state("c"));
+		} finally {
+			registry.unbind("c");
+		}
+	}
+}
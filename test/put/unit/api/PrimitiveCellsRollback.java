@@ -0,0 +1,127 @@
+package put.unit.api;
+
+import java.rmi.RemoteException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import put.atomicrmi.optsva.Transaction;
+import put.atomicrmi.optsva.refcells.TxBoolean;
+import put.atomicrmi.optsva.refcells.TxBooleanImpl;
+import put.atomicrmi.optsva.refcells.TxDouble;
+import put.atomicrmi.optsva.refcells.TxDoubleImpl;
+import put.atomicrmi.optsva.refcells.TxLong;
+import put.atomicrmi.optsva.refcells.TxLongArray;
+import put.atomicrmi.optsva.refcells.TxLongArrayImpl;
+import put.atomicrmi.optsva.refcells.TxLongImpl;
+import put.atomicrmi.optsva.refcells.TxRef;
+import put.atomicrmi.optsva.refcells.TxRefImpl;
+import put.atomicrmi.optsva.sync.Heartbeat;
+import put.atomicrmi.optsva.sync.TaskController;
+import put.atomicrmi.optsva.sync.TransactionFailureMonitorImpl;
+import put.unit.RMITest;
+import edu.umd.cs.mtc.MultithreadedTest;
+import edu.umd.cs.mtc.TestFramework;
+
+/**
+ * A transaction rolling back writes to primitive cells after another
+ * transaction committed its writes to them.
+ * 
+ * <pre>
+ * T1 [ w(a)1 w(b)1.5 w(c)true w(d)x w(e)[1,2] +(a)1 ]
+ * T2                                                   [ w(a)9 w(b)9 w(c)false w(d)y w(e)[9,9] !
+ * T3                                                                                          [ w(e)[7,9] !
+ * </pre>
+ */
+public class PrimitiveCellsRollback extends RMITest {
+	class Threads extends MultithreadedTest {
+
+		public void thread1() {
+			try {
+				TxLong a = new TxLongImpl(0);
+				TxDouble b = new TxDoubleImpl(0);
+				TxBoolean c = new TxBooleanImpl(false);
+				TxRef<String> d = new TxRefImpl<String>(null);
+				TxLongArray e = new TxLongArrayImpl(2);
+
+				Transaction t = new Transaction();
+				TxLong ta = t.accesses(a);
+				TxDouble tb = t.accesses(b);
+				TxBoolean tc = t.accesses(c);
+				TxRef<String> td = t.accesses(d);
+				TxLongArray te = t.accesses(e);
+
+				t.start();
+				ta.set(1);
+				tb.set(1.5);
+				tc.set(true);
+				td.set("x");
+				te.setAll(new long[] { 1, 2 });
+				t.commit();
+
+				t = new Transaction();
+				ta = t.commutes(a);
+
+				t.start();
+				ta.add(1);
+				t.commit();
+
+				t = new Transaction();
+				ta = t.accesses(a);
+				tb = t.accesses(b);
+				tc = t.accesses(c);
+				td = t.accesses(d);
+				te = t.accesses(e);
+
+				t.start();
+				Assert.assertEquals(2, ta.get());
+				ta.set(9);
+				Assert.assertEquals(1.5, tb.get(), 0);
+				tb.set(9);
+				Assert.assertTrue(tc.get());
+				tc.set(false);
+				Assert.assertEquals("x", td.get());
+				td.set("y");
+				Assert.assertArrayEquals(new long[] { 1, 2 }, te.getAll());
+				te.setAll(new long[] { 9, 9 });
+				t.rollback();
+
+				Assert.assertEquals(2, a.get());
+				Assert.assertEquals(1.5, b.get(), 0);
+				Assert.assertTrue(c.get());
+				Assert.assertEquals("x", d.get());
+				Assert.assertArrayEquals(new long[] { 1, 2 }, e.getAll());
+
+				t = new Transaction();
+				te = t.accesses(e);
+
+				t.start();
+				te.set(0, 7);
+				te.add(1, 7);
+				t.rollback();
+
+				Assert.assertArrayEquals(new long[] { 1, 2 }, e.getAll());
+			} catch (Exception e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+
+			waitForTick(99);
+			try {
+				TransactionFailureMonitorImpl.getInstance().emergencyStop();
+				TaskController.emergencyStop();
+				Heartbeat.emergencyStop();
+			} catch (RemoteException e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+		}
+	}
+
+	@Test
+	public void primitiveCellsRollback() throws Throwable {
+		TaskController.emergencyStart();
+		Heartbeat.emergencyStart();
+		TestFramework.runOnce(new Threads());
+	}
+}
@@ -0,0 +1,105 @@
+package put.unit.api;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import put.atomicrmi.optsva.Access;
+import put.atomicrmi.optsva.Access.Mode;
+import put.atomicrmi.optsva.Transaction;
+import put.atomicrmi.optsva.sync.Heartbeat;
+import put.atomicrmi.optsva.sync.TaskController;
+import put.atomicrmi.optsva.sync.TransactionFailureMonitorImpl;
+import put.unit.RMITest;
+import put.unit.vars.Variable;
+import put.unit.vars.VariableImpl;
+import put.util.ids.IdentifiableRemote;
+import edu.umd.cs.mtc.MultithreadedTest;
+import edu.umd.cs.mtc.TestFramework;
+
+/**
+ * Transaction invoking a variable through both remote interfaces that declare
+ * its read method, and invoking the methods of the object proxy itself.
+ *
+ * <pre>
+ * T1 [ r(d)0 w(d)4 r(d)4 r(d)4 ]
+ * </pre>
+ *
+ * Checks whether a method declared by two interfaces is dispatched to the
+ * same method of the variable with the declared access mode, and whether
+ * <code>getUID</code>, <code>hashCode</code> and <code>toString</code> are
+ * answered without being treated as invocations of the variable.
+ */
+public class ProxyDispatch extends RMITest {
+
+	public interface Readable extends Remote {
+
+		@Access(Mode.READ_ONLY)
+		int read() throws RemoteException;
+	}
+
+	public static class ReadableVariableImpl extends VariableImpl implements Readable {
+
+		private static final long serialVersionUID = -6281907315525741236L;
+
+		public ReadableVariableImpl(String name, int value) throws RemoteException {
+			super(name, value);
+		}
+	}
+
+	private ReadableVariableImpl variable;
+
+	class Threads extends MultithreadedTest {
+
+		public void thread1() {
+			Transaction t = null;
+			try {
+				t = new Transaction();
+				Variable d = t.accesses((Variable) registry.lookup("d"), 4);
+
+				t.start();
+
+				Assert.assertEquals(variable.getUID(), ((IdentifiableRemote) d).getUID());
+				Assert.assertEquals(d.hashCode(), d.hashCode());
+				Assert.assertNotNull(d.toString());
+
+				Assert.assertEquals(0, ((Readable) d).read());
+				d.write(4);
+				Assert.assertEquals(4, ((Readable) d).read());
+				Assert.assertEquals(4, d.read());
+
+				t.commit();
+			} catch (Exception e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+
+			waitForTick(99);
+			try {
+				TransactionFailureMonitorImpl.getInstance().emergencyStop();
+				TaskController.emergencyStop();
+				Heartbeat.emergencyStop();
+			} catch (RemoteException e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+		}
+	}
+
+	@Test
+	public void proxyDispatch() throws Throwable {
+		variable = new ReadableVariableImpl("d", 0);
+		registry.bind("d", variable);
+		try {
+			TaskController.emergencyStart();
+			Heartbeat.emergencyStart();
+			TestFramework.runOnce(new Threads());
+
+			Assert.assertEquals(4, state("d"));
+		} finally {
+			registry.unbind("d");
+		}
+	}
+}
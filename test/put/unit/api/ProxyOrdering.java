@@ -0,0 +1,137 @@
+package put.unit.api;
+
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import put.atomicrmi.optsva.Transaction;
+import put.atomicrmi.optsva.objects.ObjectProxy;
+import put.atomicrmi.optsva.objects.ObjectProxyHandler;
+import put.atomicrmi.optsva.sync.Heartbeat;
+import put.atomicrmi.optsva.sync.TaskController;
+import put.atomicrmi.optsva.sync.TransactionFailureMonitorImpl;
+import put.unit.RMITest;
+import put.unit.vars.RemoteVariable;
+import put.unit.vars.Variable;
+import put.unit.vars.VariableImpl;
+import put.util.ids.IdentifiableRemote;
+import edu.umd.cs.mtc.MultithreadedTest;
+import edu.umd.cs.mtc.TestFramework;
+
+/**
+ * Transaction sorting the object proxies of variables that are not colocated
+ * with it.
+ *
+ * <pre>
+ * T1 [ r(c)0 r(a)0 r(b)0 ]
+ * </pre>
+ *
+ * Checks whether the proxies are sorted by the IDs of their objects, and
+ * whether neither sorting them nor asking a proxy for its ID reaches the
+ * objects.
+ */
+public class ProxyOrdering extends RMITest {
+
+	/**
+	 * Number of times the IDs of the variables were asked for.
+	 */
+	static final AtomicInteger queries = new AtomicInteger();
+
+	public static class QueriedVariableImpl extends VariableImpl {
+
+		private static final long serialVersionUID = 4106735629584215290L;
+
+		public QueriedVariableImpl(String name, int value) throws RemoteException {
+			super(name, value);
+		}
+
+		@Override
+		public UUID getUID() throws RemoteException {
+			queries.incrementAndGet();
+			return super.getUID();
+		}
+	}
+
+	class OrderedTransaction extends Transaction {
+
+		private static final long serialVersionUID = 3902758193361075432L;
+
+		OrderedTransaction() throws RemoteException {
+			super();
+		}
+
+		List<UUID> getOrder() {
+			List<UUID> order = new ArrayList<UUID>();
+			for (ObjectProxy proxy : proxies)
+				order.add(ObjectProxyHandler.getHandler(proxy).getObjectId());
+			return order;
+		}
+	}
+
+	private final List<UUID> ids = new ArrayList<UUID>();
+
+	class Threads extends MultithreadedTest {
+
+		public void thread1() {
+			OrderedTransaction t = null;
+			try {
+				t = new OrderedTransaction();
+				Variable c = t.reads((Variable) registry.lookup("c"));
+				Variable a = t.reads((Variable) registry.lookup("a"));
+				Variable b = t.reads((Variable) registry.lookup("b"));
+
+				int created = queries.get();
+				t.start();
+				Assert.assertEquals(ids.get(2), ((IdentifiableRemote) c).getUID());
+				Assert.assertEquals("Object IDs asked for.", created, queries.get());
+
+				List<UUID> sorted = new ArrayList<UUID>(ids);
+				Collections.sort(sorted);
+				Assert.assertEquals(sorted, t.getOrder());
+
+				Assert.assertEquals(0, a.read());
+				Assert.assertEquals(0, b.read());
+				Assert.assertEquals(0, c.read());
+				t.commit();
+			} catch (Exception e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+
+			waitForTick(99);
+			try {
+				TransactionFailureMonitorImpl.getInstance().emergencyStop();
+				TaskController.emergencyStop();
+				Heartbeat.emergencyStop();
+			} catch (RemoteException e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+		}
+	}
+
+	@Test
+	public void proxyOrdering() throws Throwable {
+		for (String name : new String[] { "a", "b", "c" }) {
+			VariableImpl variable = new QueriedVariableImpl(name, 0);
+			ids.add(variable.getUID());
+			registry.bind(name, UnicastRemoteObject.toStub(new RemoteVariable(variable)));
+		}
+		try {
+			TaskController.emergencyStart();
+			Heartbeat.emergencyStart();
+			TestFramework.runOnce(new Threads());
+		} finally {
+			registry.unbind("a");
+			registry.unbind("b");
+			registry.unbind("c");
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package put.unit.api;
+
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import put.atomicrmi.optsva.Transaction;
+import put.atomicrmi.optsva.sync.Heartbeat;
+import put.atomicrmi.optsva.sync.TaskController;
+import put.atomicrmi.optsva.sync.TransactionFailureMonitorImpl;
+import put.unit.RMITest;
+import put.unit.vars.RemoteVariable;
+import put.unit.vars.Variable;
+import put.unit.vars.VariableImpl;
+import edu.umd.cs.mtc.MultithreadedTest;
+import edu.umd.cs.mtc.TestFramework;
+
+/**
+ * Transactions writing, reading and adding to a variable that is not colocated
+ * with them.
+ *
+ * <pre>
+ * T1 [ w(r)5 r(r)5 add(r,3) ]
+ * T2                         [ r(r)8 ]
+ * </pre>
+ *
+ * Checks whether methods invoked through an object proxy received by RMI are
+ * numbered the same way by the client and by the object proxy, so that the
+ * intended methods are executed.
+ */
+public class RemoteInvocation extends RMITest {
+	class Threads extends MultithreadedTest {
+
+		public void thread1() {
+			Transaction t = null;
+			try {
+				t = new Transaction();
+				Variable r = t.accesses((Variable) registry.lookup("r"));
+
+				t.start();
+
+				r.write(5);
+				Assert.assertEquals(5, r.read());
+				r.add(3);
+
+				t.commit();
+
+				t = new Transaction();
+				r = t.reads((Variable) registry.lookup("r"));
+
+				t.start();
+				Assert.assertEquals(8, r.read());
+				t.commit();
+			} catch (Exception e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+
+			waitForTick(99);
+			try {
+				TransactionFailureMonitorImpl.getInstance().emergencyStop();
+				TaskController.emergencyStop();
+				Heartbeat.emergencyStop();
+			} catch (RemoteException e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+		}
+	}
+
+	@Test
+	public void remoteInvocation() throws Throwable {
+		VariableImpl r = new VariableImpl("r", 0);
+		registry.bind("r", UnicastRemoteObject.toStub(new RemoteVariable(r)));
+		try {
+			TaskController.emergencyStart();
+			Heartbeat.emergencyStart();
+			TestFramework.runOnce(new Threads());
+
+			Assert.assertEquals(8, r.read());
+		} finally {
+			registry.unbind("r");
+		}
+	}
+}
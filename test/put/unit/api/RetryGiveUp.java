@@ -0,0 +1,114 @@
+package put.unit.api;
+
+import java.rmi.RemoteException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import put.atomicrmi.optsva.BackoffRetryPolicy;
+import put.atomicrmi.optsva.Transaction;
+import put.atomicrmi.optsva.TransactionException;
+import put.atomicrmi.optsva.Transactional;
+import put.atomicrmi.optsva.sync.Heartbeat;
+import put.atomicrmi.optsva.sync.TaskController;
+import put.atomicrmi.optsva.sync.TransactionFailureMonitorImpl;
+import put.unit.RMITest;
+import put.unit.vars.Variable;
+import edu.umd.cs.mtc.MultithreadedTest;
+import edu.umd.cs.mtc.TestFramework;
+
+/**
+ * Retrying until the retry policy gives up, either after a number of aborts
+ * or once its deadline passes.
+ */
+public class RetryGiveUp extends RMITest {
+	class Threads extends MultithreadedTest {
+
+		public void thread1() {
+			Transaction t = null;
+			try {
+				t = new Transaction();
+				t.setRetryPolicy(new BackoffRetryPolicy(1, 4, 3, 5, BackoffRetryPolicy.UNLIMITED));
+				final Variable x = t.writes((Variable) registry.lookup("x"));
+				t.start(new Transactional() {
+					public void atomic(Transaction transaction) throws RemoteException {
+						x.write(transaction.getAttempts());
+						transaction.retry();
+					}
+				});
+				Assert.fail("Retry policy did not give up.");
+			} catch (TransactionException e) {
+				Assert.assertEquals(3, t.getAttempts());
+				Assert.assertEquals(3, t.getAborts());
+			} catch (Exception e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+
+			waitForTick(99);
+			try {
+				TransactionFailureMonitorImpl.getInstance().emergencyStop();
+				TaskController.emergencyStop();
+				Heartbeat.emergencyStop();
+			} catch (RemoteException e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+		}
+	}
+
+	class Deadline extends MultithreadedTest {
+
+		public void thread1() {
+			Transaction t = null;
+			long began = System.currentTimeMillis();
+			try {
+				t = new Transaction();
+				t.setRetryPolicy(new BackoffRetryPolicy(10, 20, BackoffRetryPolicy.UNLIMITED,
+						BackoffRetryPolicy.UNLIMITED, 60));
+				final Variable x = t.writes((Variable) registry.lookup("x"));
+				t.start(new Transactional() {
+					public void atomic(Transaction transaction) throws RemoteException {
+						x.write(transaction.getAttempts());
+						transaction.retry();
+					}
+				});
+				Assert.fail("Retry policy did not give up.");
+			} catch (TransactionException e) {
+				long elapsed = System.currentTimeMillis() - began;
+				Assert.assertTrue("Gave up after " + elapsed + "ms.", elapsed >= 60);
+				Assert.assertTrue(t.getAttempts() > 1);
+				Assert.assertEquals(t.getAttempts(), t.getAborts());
+			} catch (Exception e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+
+			waitForTick(99);
+			try {
+				TransactionFailureMonitorImpl.getInstance().emergencyStop();
+				TaskController.emergencyStop();
+				Heartbeat.emergencyStop();
+			} catch (RemoteException e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+		}
+	}
+
+	@Test
+	public void retryGiveUp() throws Throwable {
+		TaskController.emergencyStart();
+		Heartbeat.emergencyStart();
+		TestFramework.runOnce(new Threads());
+		Assert.assertEquals(0, state("x"));
+	}
+
+	@Test
+	public void retryDeadline() throws Throwable {
+		TaskController.emergencyStart();
+		Heartbeat.emergencyStart();
+		TestFramework.runOnce(new Deadline());
+		Assert.assertEquals(0, state("x"));
+	}
+}
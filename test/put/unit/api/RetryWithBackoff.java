@@ -0,0 +1,125 @@
+package put.unit.api;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import put.atomicrmi.optsva.BackoffRetryPolicy;
+import put.atomicrmi.optsva.RetryPolicy;
+import put.atomicrmi.optsva.Transaction;
+import put.atomicrmi.optsva.Transactional;
+import put.atomicrmi.optsva.sync.Heartbeat;
+import put.atomicrmi.optsva.sync.TaskController;
+import put.atomicrmi.optsva.sync.TransactionFailureMonitorImpl;
+import put.unit.RMITest;
+import put.unit.vars.Variable;
+import edu.umd.cs.mtc.MultithreadedTest;
+import edu.umd.cs.mtc.TestFramework;
+
+/**
+ * Retrying twice and committing the third attempt, waiting for the delays
+ * given by the retry policy in between.
+ * 
+ * Also checks that the delays of the policy double up to the maximum, and
+ * that the jitter keeps each delay between its half and its full length.
+ */
+public class RetryWithBackoff extends RMITest {
+
+	/**
+	 * Gives a source of jitter always drawing the same value.
+	 */
+	@SuppressWarnings("serial")
+	static Random fixed(final double value) {
+		return new Random() {
+			@Override
+			public double nextDouble() {
+				return value;
+			}
+		};
+	}
+
+	class Threads extends MultithreadedTest {
+
+		public void thread1() {
+			try {
+				final BackoffRetryPolicy backoff = new BackoffRetryPolicy(4, 64, BackoffRetryPolicy.UNLIMITED, 5,
+						BackoffRetryPolicy.UNLIMITED, fixed(0));
+				final List<Long> delays = new ArrayList<Long>();
+
+				Transaction t = new Transaction();
+				t.setRetryPolicy(new RetryPolicy() {
+					public long backoff(RemoteException cause, int aborts, int failures, long elapsed) {
+						long delay = backoff.backoff(cause, aborts, failures, elapsed);
+						delays.add(delay);
+						return delay;
+					}
+				});
+				final Variable x = t.writes((Variable) registry.lookup("x"));
+
+				long began = System.currentTimeMillis();
+				t.start(new Transactional() {
+					public void atomic(Transaction transaction) throws RemoteException {
+						x.write(transaction.getAttempts());
+						if (transaction.getAttempts() < 3)
+							transaction.retry();
+					}
+				});
+				long elapsed = System.currentTimeMillis() - began;
+
+				Assert.assertEquals(3, t.getAttempts());
+				Assert.assertEquals(2, t.getAborts());
+				Assert.assertEquals(0, t.getFailures());
+
+				Assert.assertEquals(Arrays.asList(2L, 4L), delays);
+				Assert.assertTrue("Retried after " + elapsed + "ms.", elapsed >= 6);
+			} catch (Exception e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+
+			waitForTick(99);
+			try {
+				TransactionFailureMonitorImpl.getInstance().emergencyStop();
+				TaskController.emergencyStop();
+				Heartbeat.emergencyStop();
+			} catch (RemoteException e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+		}
+	}
+
+	@Test
+	public void retryWithBackoff() throws Throwable {
+		TaskController.emergencyStart();
+		Heartbeat.emergencyStart();
+		TestFramework.runOnce(new Threads());
+		Assert.assertEquals(3, state("x"));
+	}
+
+	@Test
+	public void backoffDelays() {
+		long[] full = { 4, 8, 16, 32, 64, 64 };
+		int unlimited = BackoffRetryPolicy.UNLIMITED;
+
+		BackoffRetryPolicy lowest = new BackoffRetryPolicy(4, 64, unlimited, unlimited, unlimited, fixed(0));
+		BackoffRetryPolicy highest = new BackoffRetryPolicy(4, 64, unlimited, unlimited, unlimited, fixed(Math
+				.nextAfter(1.0, 0)));
+		BackoffRetryPolicy random = new BackoffRetryPolicy(4, 64, unlimited, unlimited, unlimited, new Random(42));
+
+		for (int i = 0; i < full.length; i++) {
+			Assert.assertEquals(full[i] / 2, lowest.backoff(null, i + 1, 0, 0));
+			Assert.assertEquals(full[i], highest.backoff(null, i, 1, 0));
+
+			for (int j = 0; j < 100; j++) {
+				long delay = random.backoff(null, i + 1, 0, 0);
+				Assert.assertTrue("Delay " + delay + " out of bounds.", delay >= full[i] / 2 && delay <= full[i]);
+			}
+		}
+	}
+}
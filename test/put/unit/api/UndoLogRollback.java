@@ -0,0 +1,205 @@
+package put.unit.api;
+
+import java.rmi.RemoteException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import put.atomicrmi.optsva.RollbackForcedException;
+import put.atomicrmi.optsva.Transaction;
+import put.atomicrmi.optsva.snapshots.SerializationStrategy;
+import put.atomicrmi.optsva.snapshots.SnapshotStrategies;
+import put.atomicrmi.optsva.snapshots.SnapshotWith;
+import put.atomicrmi.optsva.sync.Heartbeat;
+import put.atomicrmi.optsva.sync.TaskController;
+import put.atomicrmi.optsva.sync.TransactionFailureMonitorImpl;
+import put.unit.RMITest;
+import put.unit.vars.UndoableVariableImpl;
+import put.unit.vars.Variable;
+import edu.umd.cs.mtc.MultithreadedTest;
+import edu.umd.cs.mtc.TestFramework;
+
+/**
+ * Transactions rolling back changes to a variable by undoing their writes,
+ * both the ones invoked on the variable directly and the ones applied from
+ * the log buffer.
+ * 
+ * <pre>
+ * T1 [ r(c)0 w(c)1 ]
+ * T2                 [ r(c)1 w(c)2 w(c)3 !
+ * T3                                       [ w(c)4 r(c)4 !
+ * </pre>
+ * 
+ * Transactions that read a value released early by a transaction which then
+ * rolls back are rolled back too, and their writes are undone before the
+ * writes of the first one.
+ * 
+ * <pre>
+ * T1 [ r(d)0 a(d)5       !
+ * T2  [            r(d)5 a(d)3 w(d)7 !
+ * </pre>
+ * 
+ * Also checks that a strategy chosen by {@link SnapshotWith} is used instead
+ * of undoing writes.
+ */
+public class UndoLogRollback extends RMITest {
+
+	@SnapshotWith(SerializationStrategy.class)
+	public static class SerializedVariableImpl extends UndoableVariableImpl {
+
+		private static final long serialVersionUID = 4790623167264158012L;
+
+		public SerializedVariableImpl(String name, int value) throws RemoteException {
+			super(name, value);
+		}
+	}
+
+	class Threads extends MultithreadedTest {
+
+		public void thread1() {
+			try {
+				Transaction t = new Transaction();
+				Variable c = t.accesses((Variable) registry.lookup("c"));
+
+				t.start();
+				c.write(c.read() + 1);
+				t.commit();
+
+				t = new Transaction();
+				c = t.accesses((Variable) registry.lookup("c"));
+
+				t.start();
+				c.write(c.read() + 1);
+				c.write(3);
+				t.rollback();
+
+				t = new Transaction();
+				c = t.accesses((Variable) registry.lookup("c"));
+
+				t.start();
+				c.write(4);
+				Assert.assertEquals(4, c.read());
+				t.rollback();
+			} catch (Exception e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+
+			waitForTick(99);
+			try {
+				TransactionFailureMonitorImpl.getInstance().emergencyStop();
+				TaskController.emergencyStop();
+				Heartbeat.emergencyStop();
+			} catch (RemoteException e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+		}
+	}
+
+	class Cascade extends MultithreadedTest {
+
+		public void thread1() {
+			try {
+				Transaction t = new Transaction();
+				Variable d = t.accesses((Variable) registry.lookup("d"), 2, 1, 1);
+
+				t.start();
+				waitForTick(1);
+
+				Assert.assertEquals(0, d.read());
+				d.add(5);
+
+				waitForTick(2);
+				waitForTick(3);
+				t.rollback();
+			} catch (Exception e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+
+			waitForTick(99);
+			try {
+				TransactionFailureMonitorImpl.getInstance().emergencyStop();
+				TaskController.emergencyStop();
+				Heartbeat.emergencyStop();
+			} catch (RemoteException e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+		}
+
+		public void thread2() {
+			try {
+				Transaction t = new Transaction();
+				Variable d = t.accesses((Variable) registry.lookup("d"));
+
+				waitForTick(1);
+				t.start();
+				waitForTick(2);
+
+				Assert.assertEquals(5, d.read());
+				d.add(3);
+				d.write(7);
+
+				waitForTick(3);
+				t.commit();
+				Assert.fail("Transaction comitted when it should have aborted");
+			} catch (RollbackForcedException e) {
+				// everything is fine
+			} catch (Exception e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+
+			waitForTick(99);
+			try {
+				TransactionFailureMonitorImpl.getInstance().emergencyStop();
+				TaskController.emergencyStop();
+				Heartbeat.emergencyStop();
+			} catch (RemoteException e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+		}
+	}
+
+	@Test
+	public void undoLogRollback() throws Throwable {
+		UndoableVariableImpl c = new UndoableVariableImpl("c", 0);
+		registry.bind("c", c);
+		try {
+			TaskController.emergencyStart();
+			Heartbeat.emergencyStart();
+			TestFramework.runOnce(new Threads());
+
+			Assert.assertEquals(1, state("c"));
+			Assert.assertEquals(3, c.getUndone());
+		} finally {
+			registry.unbind("c");
+		}
+	}
+
+	@Test
+	public void undoLogCascadingRollback() throws Throwable {
+		UndoableVariableImpl d = new UndoableVariableImpl("d", 0);
+		registry.bind("d", d);
+		try {
+			TaskController.emergencyStart();
+			Heartbeat.emergencyStart();
+			TestFramework.runOnce(new Cascade());
+
+			Assert.assertEquals(0, state("d"));
+			Assert.assertEquals(3, d.getUndone());
+		} finally {
+			registry.unbind("d");
+		}
+	}
+
+	@Test
+	public void snapshotWithPrecedence() {
+		Assert.assertEquals(SerializationStrategy.class, SnapshotStrategies.get(SerializedVariableImpl.class).getClass());
+		Assert.assertNotEquals(SerializationStrategy.class, SnapshotStrategies.get(UndoableVariableImpl.class)
+				.getClass());
+	}
+}
@@ -0,0 +1,117 @@
+package put.unit.collections;
+
+import java.rmi.RemoteException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import put.atomicrmi.optsva.Transaction;
+import put.atomicrmi.optsva.collections.MapAccess;
+import put.atomicrmi.optsva.collections.TransactionalMap;
+import put.atomicrmi.optsva.sync.Heartbeat;
+import put.atomicrmi.optsva.sync.TaskController;
+import put.atomicrmi.optsva.sync.TransactionFailureMonitorImpl;
+import put.unit.RMITest;
+import edu.umd.cs.mtc.MultithreadedTest;
+import edu.umd.cs.mtc.TestFramework;
+
+/**
+ * Two transactions writing keys in different buckets of the same map. The
+ * later transaction commits while the earlier one is still running, and the
+ * earlier one rolls back only its own key. The earlier one reads its key
+ * after writing it, so the write is applied to the bucket and has to be
+ * undone.
+ * 
+ * <pre>
+ * T1 [ r(m[0])null w(m[0])a r(m[0])a                  !
+ * T2                                 [ w(m[1])b ]
+ * </pre>
+ */
+public class MapDisjointKeys extends RMITest {
+	class Threads extends MultithreadedTest {
+
+		TransactionalMap<Integer, String> map;
+
+		@Override
+		public void initialize() {
+			try {
+				map = new TransactionalMap<Integer, String>(2);
+			} catch (RemoteException e) {
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+		}
+
+		public void thread1() {
+			try {
+				Transaction t = new Transaction();
+				MapAccess<Integer, String> m = map.accesses(t, 0);
+
+				t.start();
+				Assert.assertNull(m.get(0));
+				m.put(0, "a");
+				Assert.assertEquals("a", m.get(0));
+
+				waitForTick(1);
+				waitForTick(2);
+
+				t.rollback();
+
+				t = new Transaction();
+				m = map.accesses(t, 0, 1);
+
+				t.start();
+				Assert.assertNull(m.get(0));
+				Assert.assertEquals("b", m.get(1));
+				t.commit();
+			} catch (Exception e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+
+			waitForTick(99);
+			try {
+				TransactionFailureMonitorImpl.getInstance().emergencyStop();
+				TaskController.emergencyStop();
+				Heartbeat.emergencyStop();
+			} catch (RemoteException e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+		}
+
+		public void thread2() {
+			try {
+				waitForTick(1);
+
+				Transaction t = new Transaction();
+				MapAccess<Integer, String> m = map.accesses(t, 1);
+
+				t.start();
+				m.put(1, "b");
+				t.commit();
+
+				assertTick(1);
+			} catch (Exception e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+
+			waitForTick(99);
+			try {
+				TransactionFailureMonitorImpl.getInstance().emergencyStop();
+				TaskController.emergencyStop();
+				Heartbeat.emergencyStop();
+			} catch (RemoteException e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+		}
+	}
+
+	@Test
+	public void mapDisjointKeys() throws Throwable {
+		TaskController.emergencyStart();
+		Heartbeat.emergencyStart();
+		TestFramework.runOnce(new Threads());
+	}
+}
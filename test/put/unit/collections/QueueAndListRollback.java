@@ -0,0 +1,210 @@
+package put.unit.collections;
+
+import java.rmi.RemoteException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import put.atomicrmi.optsva.RollbackForcedException;
+import put.atomicrmi.optsva.Transaction;
+import put.atomicrmi.optsva.collections.TransactionalList;
+import put.atomicrmi.optsva.collections.TransactionalListImpl;
+import put.atomicrmi.optsva.collections.TransactionalQueue;
+import put.atomicrmi.optsva.collections.TransactionalQueueImpl;
+import put.atomicrmi.optsva.sync.Heartbeat;
+import put.atomicrmi.optsva.sync.TaskController;
+import put.atomicrmi.optsva.sync.TransactionFailureMonitorImpl;
+import put.unit.RMITest;
+import edu.umd.cs.mtc.MultithreadedTest;
+import edu.umd.cs.mtc.TestFramework;
+
+/**
+ * A transaction taking an element from a queue and moving it around a list,
+ * rolled back after another transaction filled both.
+ * 
+ * <pre>
+ * T1 [ q.offer(a,b) l.add(x,y)           ]
+ * T2                              [ q.peek()a q.removeHead() l.set(0,a) l.remove(1) l.add(0,b) !
+ * </pre>
+ * 
+ * Transactions appending to a queue and a list released early by a
+ * transaction that then rolls back, rolled back together with it.
+ * 
+ * <pre>
+ * T1 [ q.isEmpty() q.offer(a) l.size() l.add(x)                                   !
+ * T2  [                                          q.peek()a q.offer(b) l.add(y) l.add(0,z) !
+ * </pre>
+ */
+public class QueueAndListRollback extends RMITest {
+	class Threads extends MultithreadedTest {
+
+		public void thread1() {
+			try {
+				TransactionalQueue<String> queue = new TransactionalQueueImpl<String>();
+				TransactionalList<String> list = new TransactionalListImpl<String>();
+
+				Transaction t = new Transaction();
+				TransactionalQueue<String> q = t.accesses(queue);
+				TransactionalList<String> l = t.accesses(list);
+
+				t.start();
+				q.offer("a");
+				q.offer("b");
+				l.add("x");
+				l.add("y");
+				t.commit();
+
+				t = new Transaction();
+				q = t.accesses(queue);
+				l = t.accesses(list);
+
+				t.start();
+				String head = q.peek();
+				Assert.assertEquals("a", head);
+				q.removeHead();
+				Assert.assertEquals(2, l.size());
+				l.set(0, head);
+				l.remove(1);
+				l.add(0, q.peek());
+				Assert.assertEquals("b", l.get(0));
+				Assert.assertEquals("a", l.get(1));
+				t.rollback();
+
+				t = new Transaction();
+				q = t.accesses(queue);
+				l = t.accesses(list);
+
+				t.start();
+				Assert.assertEquals(2, q.size());
+				Assert.assertEquals("a", q.peek());
+				Assert.assertEquals(2, l.size());
+				Assert.assertEquals("x", l.get(0));
+				Assert.assertEquals("y", l.get(1));
+				t.commit();
+			} catch (Exception e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+
+			waitForTick(99);
+			try {
+				TransactionFailureMonitorImpl.getInstance().emergencyStop();
+				TaskController.emergencyStop();
+				Heartbeat.emergencyStop();
+			} catch (RemoteException e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+		}
+	}
+
+	class Cascade extends MultithreadedTest {
+
+		private TransactionalQueue<String> queue;
+		private TransactionalList<String> list;
+
+		@Override
+		public void initialize() {
+			try {
+				queue = new TransactionalQueueImpl<String>();
+				list = new TransactionalListImpl<String>();
+			} catch (RemoteException e) {
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+		}
+
+		public void thread1() {
+			try {
+				Transaction t = new Transaction();
+				TransactionalQueue<String> q = t.accesses(queue, 2, 1, 1);
+				TransactionalList<String> l = t.accesses(list, 2, 1, 1);
+
+				t.start();
+				waitForTick(1);
+
+				Assert.assertTrue(q.isEmpty());
+				q.offer("a");
+				Assert.assertEquals(0, l.size());
+				l.add("x");
+
+				waitForTick(2);
+				waitForTick(3);
+				t.rollback();
+			} catch (Exception e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+
+			waitForTick(99);
+			try {
+				TransactionFailureMonitorImpl.getInstance().emergencyStop();
+				TaskController.emergencyStop();
+				Heartbeat.emergencyStop();
+			} catch (RemoteException e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+		}
+
+		public void thread2() {
+			try {
+				Transaction t = new Transaction();
+				TransactionalQueue<String> q = t.accesses(queue);
+				TransactionalList<String> l = t.accesses(list);
+
+				waitForTick(1);
+				t.start();
+				waitForTick(2);
+
+				Assert.assertEquals("a", q.peek());
+				q.offer("b");
+				Assert.assertEquals("x", l.get(0));
+				l.add("y");
+				l.add(0, "z");
+
+				waitForTick(3);
+				t.commit();
+				Assert.fail("Transaction comitted when it should have aborted");
+			} catch (RollbackForcedException e) {
+				// everything is fine
+			} catch (Exception e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+
+			waitForTick(99);
+			try {
+				TransactionFailureMonitorImpl.getInstance().emergencyStop();
+				TaskController.emergencyStop();
+				Heartbeat.emergencyStop();
+			} catch (RemoteException e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+		}
+
+		@Override
+		public void finish() {
+			try {
+				Assert.assertEquals(0, queue.size());
+				Assert.assertEquals(0, list.size());
+			} catch (RemoteException e) {
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+		}
+	}
+
+	@Test
+	public void queueAndListRollback() throws Throwable {
+		TaskController.emergencyStart();
+		Heartbeat.emergencyStart();
+		TestFramework.runOnce(new Threads());
+	}
+
+	@Test
+	public void queueAndListCascadingRollback() throws Throwable {
+		TaskController.emergencyStart();
+		Heartbeat.emergencyStart();
+		TestFramework.runOnce(new Cascade());
+	}
+}
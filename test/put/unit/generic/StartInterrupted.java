@@ -0,0 +1,144 @@
+package put.unit.generic;
+
+import java.rmi.RemoteException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import put.atomicrmi.optsva.Transaction;
+import put.atomicrmi.optsva.TransactionException;
+import put.atomicrmi.optsva.sync.Heartbeat;
+import put.atomicrmi.optsva.sync.TaskController;
+import put.atomicrmi.optsva.sync.TransactionFailureMonitorImpl;
+import put.atomicrmi.optsva.sync.TransactionLock;
+import put.unit.RMITest;
+import put.unit.vars.Variable;
+import put.unit.vars.VariableImpl;
+import edu.umd.cs.mtc.MultithreadedTest;
+import edu.umd.cs.mtc.TestFramework;
+
+/**
+ * Transaction failing to start because it is interrupted while waiting for
+ * the lock of its second object.
+ *
+ * <pre>
+ * T1 [ !
+ * T2      [ r(a)0 r(b)0 ]
+ * </pre>
+ *
+ * The lock of b is held elsewhere when T1 starts, and T1 is interrupted while
+ * waiting for it. Checks whether T1 does not keep the lock of a, which it
+ * locked first, so that T2 can start.
+ */
+public class StartInterrupted extends RMITest {
+
+	public static class LockableVariableImpl extends VariableImpl {
+
+		private static final long serialVersionUID = -5719372841025367045L;
+
+		public LockableVariableImpl(String name, int value) throws RemoteException {
+			super(name, value);
+		}
+
+		public TransactionLock lock() {
+			return getTransactionLock();
+		}
+	}
+
+	private LockableVariableImpl first;
+	private LockableVariableImpl second;
+
+	class Threads extends MultithreadedTest {
+
+		Object holder = new Object();
+
+		public void thread1() {
+			Transaction t = null;
+			try {
+				t = new Transaction();
+				t.accesses((Variable) registry.lookup("a"));
+				t.accesses((Variable) registry.lookup("b"));
+
+				waitForTick(1);
+				try {
+					t.start();
+					Assert.fail("Transaction started without the lock of " + second + ".");
+				} catch (TransactionException e) {
+					// Interrupted.
+				}
+
+				Assert.assertFalse("Lock kept after failed start.", first.lock().isHeldBy(t.getId()));
+				Assert.assertFalse("Lock kept after failed start.", first.lock().isLocked());
+			} catch (Exception e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+
+			waitForTick(99);
+			try {
+				TransactionFailureMonitorImpl.getInstance().emergencyStop();
+				TaskController.emergencyStop();
+				Heartbeat.emergencyStop();
+			} catch (RemoteException e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+		}
+
+		public void thread2() {
+			Transaction t = null;
+			try {
+				second.lock().lock(holder);
+
+				waitForTick(2);
+				getThread(1).interrupt();
+
+				waitForTick(3);
+				second.lock().unlock(holder);
+
+				t = new Transaction();
+				Variable a = t.reads((Variable) registry.lookup("a"));
+				Variable b = t.reads((Variable) registry.lookup("b"));
+
+				t.start();
+				Assert.assertEquals(0, a.read());
+				Assert.assertEquals(0, b.read());
+				t.commit();
+			} catch (Exception e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+
+			waitForTick(99);
+			try {
+				TransactionFailureMonitorImpl.getInstance().emergencyStop();
+				TaskController.emergencyStop();
+				Heartbeat.emergencyStop();
+			} catch (RemoteException e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+		}
+	}
+
+	@Test
+	public void startInterrupted() throws Throwable {
+		LockableVariableImpl a = new LockableVariableImpl("a", 0);
+		LockableVariableImpl b = new LockableVariableImpl("b", 0);
+
+		/** Objects on the same node are locked in the order of their IDs. */
+		first = a.getUID().compareTo(b.getUID()) < 0 ? a : b;
+		second = first == a ? b : a;
+
+		registry.bind("a", a);
+		registry.bind("b", b);
+		try {
+			TaskController.emergencyStart();
+			Heartbeat.emergencyStart();
+			TestFramework.runOnce(new Threads());
+		} finally {
+			registry.unbind("a");
+			registry.unbind("b");
+		}
+	}
+}
@@ -0,0 +1,120 @@
+package put.unit.generic;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import put.atomicrmi.optsva.Transaction;
+import put.atomicrmi.optsva.TransactionException;
+import put.atomicrmi.optsva.sync.Heartbeat;
+import put.atomicrmi.optsva.sync.TaskController;
+import put.atomicrmi.optsva.sync.TransactionFailureMonitorImpl;
+import put.unit.RMITest;
+import put.unit.vars.Variable;
+import put.unit.vars.VariableImpl;
+import put.util.ids.IdGenerators;
+import put.util.ids.SequentialIdGenerator;
+import edu.umd.cs.mtc.MultithreadedTest;
+import edu.umd.cs.mtc.TestFramework;
+
+/**
+ * Transaction failing to start because the second of its nodes fails after
+ * the transaction is started on the first one.
+ *
+ * <pre>
+ * T1 [ !
+ * T2    [ r(x)0 w(x)1 ]
+ * </pre>
+ *
+ * Variable w is placed on a node in another JVM, which is started last and
+ * is killed before T1 starts. Checks whether T1 releases the version of x it
+ * took on the first node, so that T2 can use x.
+ */
+public class StartNodeFailure extends RMITest {
+
+	/**
+	 * Second node, hosting variable w.
+	 */
+	public static class Node {
+
+		public static void main(String[] args) throws Exception {
+			/** Sorts after the first node, so it is started last. */
+			IdGenerators.set(new SequentialIdGenerator(Long.MAX_VALUE));
+
+			LocateRegistry.getRegistry(1115).rebind("w", new VariableImpl("w", 0));
+			System.out.println("ready");
+
+			/** Runs until killed. */
+			Thread.sleep(Long.MAX_VALUE);
+		}
+	}
+
+	private Process node;
+
+	class Threads extends MultithreadedTest {
+
+		public void thread1() {
+			Transaction t = null;
+			try {
+				t = new Transaction();
+				t.accesses((Variable) registry.lookup("x"));
+				t.accesses((Variable) registry.lookup("w"));
+
+				node.destroy();
+				node.waitFor();
+
+				try {
+					t.start();
+					Assert.fail("Transaction started without its second node.");
+				} catch (TransactionException e) {
+					// Expected.
+				}
+
+				t = new Transaction();
+				Variable x = t.accesses((Variable) registry.lookup("x"));
+
+				t.start();
+				x.write(x.read() + 1);
+				t.commit();
+			} catch (Exception e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+
+			waitForTick(99);
+			try {
+				TransactionFailureMonitorImpl.getInstance().emergencyStop();
+				TaskController.emergencyStop();
+				Heartbeat.emergencyStop();
+			} catch (RemoteException e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+		}
+	}
+
+	@Test
+	public void startNodeFailure() throws Throwable {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		node = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), Node.class.getName())
+				.redirectErrorStream(true).start();
+		try {
+			BufferedReader out = new BufferedReader(new InputStreamReader(node.getInputStream()));
+			Assert.assertEquals("ready", out.readLine());
+
+			TaskController.emergencyStart();
+			Heartbeat.emergencyStart();
+			TestFramework.runOnce(new Threads());
+
+			Assert.assertEquals(1, state("x"));
+		} finally {
+			node.destroy();
+			registry.unbind("w");
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package put.unit.ids;
+
+import java.rmi.server.UnicastRemoteObject;
+import java.util.Collections;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import put.atomicrmi.optsva.Transaction;
+import put.util.ids.IdGenerator;
+import put.util.ids.IdGenerators;
+import put.util.ids.SequentialIdGenerator;
+import edu.umd.cs.mtc.MultithreadedTest;
+import edu.umd.cs.mtc.TestFramework;
+
+/**
+ * Identifiers are generated by the generator of the node.
+ *
+ * <pre>
+ * T1 next next ... next
+ * T2 next next ... next
+ * T3 next next ... next
+ * T4 next next ... next
+ * </pre>
+ *
+ * Checks whether a sequential generator gives distinct identifiers with the
+ * prefix of its node to concurrent threads, and whether transactions take
+ * their identifiers from the generator set for the node.
+ */
+public class IdGeneration {
+	class Threads extends MultithreadedTest {
+
+		static final int IDS = 10000;
+
+		final SequentialIdGenerator generator = new SequentialIdGenerator(42);
+		final Set<UUID> ids = Collections.newSetFromMap(new ConcurrentHashMap<UUID, Boolean>());
+
+		private void generate() {
+			for (int i = 0; i < IDS; i++) {
+				UUID id = generator.generate();
+				Assert.assertEquals(42, id.getMostSignificantBits());
+				Assert.assertTrue("Duplicate identifier: " + id + ".", ids.add(id));
+			}
+		}
+
+		public void thread1() {
+			generate();
+		}
+
+		public void thread2() {
+			generate();
+		}
+
+		public void thread3() {
+			generate();
+		}
+
+		public void thread4() {
+			generate();
+		}
+
+		@Override
+		public void finish() {
+			Assert.assertEquals(4 * IDS, ids.size());
+		}
+	}
+
+	@Test
+	public void concurrentIds() throws Throwable {
+		TestFramework.runOnce(new Threads());
+	}
+
+	@Test
+	public void pluggableGenerator() throws Exception {
+		final UUID fixed = new UUID(7, 7);
+		IdGenerator previous = IdGenerators.get();
+		IdGenerators.set(new IdGenerator() {
+			public UUID generate() {
+				return fixed;
+			}
+		});
+
+		Transaction t;
+		try {
+			t = new Transaction();
+		} finally {
+			IdGenerators.set(previous);
+		}
+
+		Assert.assertEquals(fixed, t.getId());
+		Assert.assertNotEquals(fixed, IdGenerators.next());
+		UnicastRemoteObject.unexportObject(t, true);
+	}
+}
@@ -0,0 +1,98 @@
+package put.unit.reads;
+
+import java.rmi.RemoteException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import put.atomicrmi.optsva.Transaction;
+import put.atomicrmi.optsva.sync.Heartbeat;
+import put.atomicrmi.optsva.sync.TaskController;
+import put.atomicrmi.optsva.sync.TransactionFailureMonitorImpl;
+import put.unit.RMITest;
+import put.unit.vars.Variable;
+import edu.umd.cs.mtc.MultithreadedTest;
+import edu.umd.cs.mtc.TestFramework;
+
+/**
+ * Abort after early release of a read object that does not cascade.
+ * 
+ * <pre>
+ * T1 [ r(x)0           !
+ * T2  [      w(x)1       ]
+ * </pre>
+ * 
+ * Checks whether a transaction that aborts after only reading an object does
+ * not restore it, so that a following transaction writing to it can commit.
+ */
+public class ReadAbortWithoutCascade extends RMITest {
+	class Threads extends MultithreadedTest {
+
+		public void thread1() {
+			Transaction t = null;
+			try {
+				t = new Transaction();
+				Variable x = t.accesses((Variable) registry.lookup("x"), 1);
+
+				t.start();
+
+				int v = x.read();
+				Assert.assertEquals(0, v);
+
+				waitForTick(1);
+				waitForTick(2);
+
+				t.rollback();
+			} catch (Exception e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+
+			waitForTick(99);
+			try {
+				TransactionFailureMonitorImpl.getInstance().emergencyStop();
+				TaskController.emergencyStop();
+				Heartbeat.emergencyStop();
+			} catch (RemoteException e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+		}
+
+		public void thread2() {
+			Transaction t = null;
+			try {
+				waitForTick(1);
+
+				t = new Transaction();
+				Variable x = t.accesses((Variable) registry.lookup("x"));
+
+				t.start();
+				x.write(1);
+				t.commit();
+			} catch (Exception e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+
+			waitForTick(99);
+			try {
+				TransactionFailureMonitorImpl.getInstance().emergencyStop();
+				TaskController.emergencyStop();
+				Heartbeat.emergencyStop();
+			} catch (RemoteException e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+		}
+	}
+
+	@Test
+	public void readAbortWithoutCascade() throws Throwable {
+		TaskController.emergencyStart();
+		Heartbeat.emergencyStart();
+		TestFramework.runOnce(new Threads());
+
+		Assert.assertEquals(1, state("x"));
+	}
+}
@@ -0,0 +1,123 @@
+package put.unit.reads;
+
+import java.rmi.RemoteException;
+import java.rmi.server.RemoteServer;
+import java.rmi.server.ServerNotActiveException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import put.atomicrmi.optsva.RemoteBuffer;
+import put.atomicrmi.optsva.Transaction;
+import put.atomicrmi.optsva.sync.Heartbeat;
+import put.atomicrmi.optsva.sync.TaskController;
+import put.atomicrmi.optsva.sync.TransactionFailureMonitorImpl;
+import put.unit.RMITest;
+import put.unit.vars.RemoteVariable;
+import put.unit.vars.Variable;
+import put.unit.vars.VariableImpl;
+import edu.umd.cs.mtc.MultithreadedTest;
+import edu.umd.cs.mtc.TestFramework;
+
+/**
+ * Read-only transaction reading variables that are not colocated with it.
+ *
+ * <pre>
+ * T1 [ r(p)3 r(p)3 r(p)3 r(q)5 r(q)5 r(q)5 ]
+ * </pre>
+ *
+ * Checks whether T1 reads p from a copy sent to it, without remote
+ * invocations, and whether it reads q, which is annotated with
+ * {@link RemoteBuffer}, remotely.
+ */
+public class ReadOnlyRemoteBuffer extends RMITest {
+
+	/**
+	 * Number of reads executed within remote invocations.
+	 */
+	static final AtomicInteger remoteReads = new AtomicInteger();
+
+	public static class Probe extends VariableImpl {
+
+		private static final long serialVersionUID = 2618529064771389716L;
+
+		public Probe(String name, int value) throws RemoteException {
+			super(name, value);
+		}
+
+		@Override
+		public int read() {
+			try {
+				RemoteServer.getClientHost();
+				remoteReads.incrementAndGet();
+			} catch (ServerNotActiveException e) {
+				// Read locally.
+			}
+			return super.read();
+		}
+	}
+
+	@RemoteBuffer
+	public static class RemoteProbe extends Probe {
+
+		private static final long serialVersionUID = -4398916734128057519L;
+
+		public RemoteProbe(String name, int value) throws RemoteException {
+			super(name, value);
+		}
+	}
+
+	class Threads extends MultithreadedTest {
+
+		public void thread1() {
+			Transaction t = null;
+			try {
+				t = new Transaction();
+				Variable p = t.reads((Variable) registry.lookup("p"));
+				Variable q = t.reads((Variable) registry.lookup("q"));
+
+				t.start();
+
+				for (int i = 0; i < 3; i++)
+					Assert.assertEquals(3, p.read());
+				Assert.assertEquals("Copy of p read remotely.", 0, remoteReads.get());
+
+				for (int i = 0; i < 3; i++)
+					Assert.assertEquals(5, q.read());
+				Assert.assertEquals("Buffer of q read locally.", 3, remoteReads.get());
+
+				t.commit();
+			} catch (Exception e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+
+			waitForTick(99);
+			try {
+				TransactionFailureMonitorImpl.getInstance().emergencyStop();
+				TaskController.emergencyStop();
+				Heartbeat.emergencyStop();
+			} catch (RemoteException e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+		}
+	}
+
+	@Test
+	public void readOnlyRemoteBuffer() throws Throwable {
+		remoteReads.set(0);
+		registry.bind("p", UnicastRemoteObject.toStub(new RemoteVariable(new Probe("p", 3))));
+		registry.bind("q", UnicastRemoteObject.toStub(new RemoteVariable(new RemoteProbe("q", 5))));
+		try {
+			TaskController.emergencyStart();
+			Heartbeat.emergencyStart();
+			TestFramework.runOnce(new Threads());
+		} finally {
+			registry.unbind("p");
+			registry.unbind("q");
+		}
+	}
+}
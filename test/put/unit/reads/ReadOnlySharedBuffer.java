@@ -0,0 +1,131 @@
+package put.unit.reads;
+
+import java.rmi.RemoteException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import put.atomicrmi.optsva.Transaction;
+import put.atomicrmi.optsva.sync.Heartbeat;
+import put.atomicrmi.optsva.sync.TaskController;
+import put.atomicrmi.optsva.sync.TransactionFailureMonitorImpl;
+import put.unit.RMITest;
+import put.unit.vars.CountedVariableImpl;
+import put.unit.vars.Variable;
+import edu.umd.cs.mtc.MultithreadedTest;
+import edu.umd.cs.mtc.TestFramework;
+
+/**
+ * Read-only transactions reading the same state share a copy buffer.
+ * 
+ * <pre>
+ * T1 [ r(c)0          ]
+ * T2      [ r(c)0 ]
+ * T3                     [ r(c)0 ]
+ * </pre>
+ * 
+ * Checks whether T1 and T2 read from a single copy of the object, and whether
+ * the copy is dropped when both are finished, so that T3 makes another one.
+ */
+public class ReadOnlySharedBuffer extends RMITest {
+	class Threads extends MultithreadedTest {
+
+		public void thread1() {
+			Transaction t = null;
+			try {
+				t = new Transaction();
+				Variable c = t.reads((Variable) registry.lookup("c"));
+
+				t.start();
+				Assert.assertEquals(0, c.read());
+
+				waitForTick(1);
+				waitForTick(2);
+
+				t.commit();
+			} catch (Exception e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+
+			waitForTick(99);
+			try {
+				TransactionFailureMonitorImpl.getInstance().emergencyStop();
+				TaskController.emergencyStop();
+				Heartbeat.emergencyStop();
+			} catch (RemoteException e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+		}
+
+		public void thread2() {
+			Transaction t = null;
+			try {
+				waitForTick(1);
+
+				t = new Transaction();
+				Variable c = t.reads((Variable) registry.lookup("c"));
+
+				t.start();
+				Assert.assertEquals(0, c.read());
+				t.commit();
+			} catch (Exception e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+
+			waitForTick(99);
+			try {
+				TransactionFailureMonitorImpl.getInstance().emergencyStop();
+				TaskController.emergencyStop();
+				Heartbeat.emergencyStop();
+			} catch (RemoteException e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+		}
+
+		public void thread3() {
+			Transaction t = null;
+			try {
+				waitForTick(3);
+
+				t = new Transaction();
+				Variable c = t.reads((Variable) registry.lookup("c"));
+
+				t.start();
+				Assert.assertEquals(0, c.read());
+				t.commit();
+			} catch (Exception e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+
+			waitForTick(99);
+			try {
+				TransactionFailureMonitorImpl.getInstance().emergencyStop();
+				TaskController.emergencyStop();
+				Heartbeat.emergencyStop();
+			} catch (RemoteException e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+		}
+	}
+
+	@Test
+	public void readOnlySharedBuffer() throws Throwable {
+		CountedVariableImpl c = new CountedVariableImpl("c", 0);
+		registry.bind("c", c);
+		try {
+			TaskController.emergencyStart();
+			Heartbeat.emergencyStart();
+			TestFramework.runOnce(new Threads());
+
+			Assert.assertEquals(2, c.getCopies());
+		} finally {
+			registry.unbind("c");
+		}
+	}
+}
@@ -0,0 +1,140 @@
+package put.unit.reads;
+
+import java.rmi.RemoteException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import put.atomicrmi.optsva.Transaction;
+import put.atomicrmi.optsva.sync.Heartbeat;
+import put.atomicrmi.optsva.sync.TaskController;
+import put.atomicrmi.optsva.sync.TransactionFailureMonitorImpl;
+import put.unit.RMITest;
+import put.unit.vars.Variable;
+import put.unit.vars.VersionedVariableImpl;
+import edu.umd.cs.mtc.MultithreadedTest;
+import edu.umd.cs.mtc.TestFramework;
+
+/**
+ * Snapshot reads do not wait for writers.
+ * 
+ * <pre>
+ * T1 [ r(a)0 w(a)1 r(b)0 w(b)1         ]
+ * T2                          [ r(a)0 r(b)0 ]
+ * T3                                            [ r(a)1 r(b)1 ]
+ * </pre>
+ * 
+ * Checks whether T2 reads the committed versions of the objects held by T1
+ * without waiting for T1, and whether T3 reads the versions committed by T1.
+ */
+public class SnapshotRead extends RMITest {
+	class Threads extends MultithreadedTest {
+
+		public void thread1() {
+			Transaction t = null;
+			try {
+				t = new Transaction();
+				Variable a = t.accesses((Variable) registry.lookup("a"));
+				Variable b = t.accesses((Variable) registry.lookup("b"));
+
+				t.start();
+
+				a.write(a.read() + 1);
+				b.write(b.read() + 1);
+
+				waitForTick(1);
+				waitForTick(2);
+
+				t.commit();
+			} catch (Exception e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+
+			waitForTick(99);
+			try {
+				TransactionFailureMonitorImpl.getInstance().emergencyStop();
+				TaskController.emergencyStop();
+				Heartbeat.emergencyStop();
+			} catch (RemoteException e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+		}
+
+		public void thread2() {
+			Transaction t = null;
+			try {
+				waitForTick(1);
+
+				t = new Transaction();
+				Variable a = t.snapshots((Variable) registry.lookup("a"));
+				Variable b = t.snapshots((Variable) registry.lookup("b"));
+
+				t.start();
+				Assert.assertEquals(0, a.read());
+				Assert.assertEquals(0, b.read());
+				t.commit();
+			} catch (Exception e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+
+			waitForTick(99);
+			try {
+				TransactionFailureMonitorImpl.getInstance().emergencyStop();
+				TaskController.emergencyStop();
+				Heartbeat.emergencyStop();
+			} catch (RemoteException e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+		}
+
+		public void thread3() {
+			Transaction t = null;
+			try {
+				waitForTick(3);
+
+				t = new Transaction();
+				Variable a = t.snapshots((Variable) registry.lookup("a"));
+				Variable b = t.snapshots((Variable) registry.lookup("b"));
+
+				t.start();
+				Assert.assertEquals(1, a.read());
+				Assert.assertEquals(1, b.read());
+				t.commit();
+			} catch (Exception e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+
+			waitForTick(99);
+			try {
+				TransactionFailureMonitorImpl.getInstance().emergencyStop();
+				TaskController.emergencyStop();
+				Heartbeat.emergencyStop();
+			} catch (RemoteException e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+		}
+	}
+
+	@Test
+	public void snapshotRead() throws Throwable {
+		registry.bind("a", new VersionedVariableImpl("a", 0));
+		registry.bind("b", new VersionedVariableImpl("b", 0));
+		try {
+			TaskController.emergencyStart();
+			Heartbeat.emergencyStart();
+			TestFramework.runOnce(new Threads());
+
+			Assert.assertEquals(1, state("a"));
+			Assert.assertEquals(1, state("b"));
+		} finally {
+			registry.unbind("a");
+			registry.unbind("b");
+		}
+	}
+}
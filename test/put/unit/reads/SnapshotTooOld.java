@@ -0,0 +1,83 @@
+package put.unit.reads;
+
+import java.rmi.RemoteException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import put.atomicrmi.optsva.RollbackForcedException;
+import put.atomicrmi.optsva.Transaction;
+import put.atomicrmi.optsva.sync.Heartbeat;
+import put.atomicrmi.optsva.sync.TaskController;
+import put.atomicrmi.optsva.sync.TransactionFailureMonitorImpl;
+import put.unit.RMITest;
+import put.unit.vars.Variable;
+import put.unit.vars.VersionedVariableImpl;
+import edu.umd.cs.mtc.MultithreadedTest;
+import edu.umd.cs.mtc.TestFramework;
+
+/**
+ * Snapshot read of a version that is no longer kept.
+ * 
+ * <pre>
+ * T1 [                            r(a)! ]
+ * T2    [ w(a)1 ] [ w(a)2 ] [ w(a)3 ]
+ * </pre>
+ * 
+ * Checks whether T1 is rolled back when the version it should read was
+ * dropped from the history of the object, which keeps two versions.
+ */
+public class SnapshotTooOld extends RMITest {
+	class Threads extends MultithreadedTest {
+
+		public void thread1() {
+			try {
+				Transaction t = new Transaction();
+				Variable a = t.snapshots((Variable) registry.lookup("a"));
+				t.start();
+
+				for (int i = 1; i <= 3; i++) {
+					Transaction w = new Transaction();
+					Variable v = w.writes((Variable) registry.lookup("a"));
+					w.start();
+					v.write(i);
+					w.commit();
+				}
+
+				try {
+					a.read();
+					Assert.fail("Read a version that is no longer kept.");
+				} catch (RollbackForcedException e) {
+					// Expected.
+				}
+			} catch (Exception e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+
+			waitForTick(99);
+			try {
+				TransactionFailureMonitorImpl.getInstance().emergencyStop();
+				TaskController.emergencyStop();
+				Heartbeat.emergencyStop();
+			} catch (RemoteException e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+		}
+	}
+
+	@Test
+	public void snapshotTooOld() throws Throwable {
+		registry.bind("a", new VersionedVariableImpl("a", 0));
+		try {
+			TaskController.emergencyStart();
+			Heartbeat.emergencyStart();
+			TestFramework.runOnce(new Threads());
+
+			Assert.assertEquals(3, state("a"));
+		} finally {
+			registry.unbind("a");
+		}
+	}
+}
@@ -0,0 +1,61 @@
+package put.unit.sync;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import put.atomicrmi.optsva.sync.ProxyExecutor;
+
+/**
+ * Tasks executed by the proxy executor all run at once, however many there
+ * are, so a task may wait for any other task of the same or another
+ * transaction.
+ * 
+ * Runs two fan-outs of tasks that can only finish when every task of both
+ * is running, which is more than a bounded pool would run at once.
+ */
+public class ProxyExecutorFanOut {
+
+	private static final int TASKS = 100;
+
+	@Test
+	public void proxyExecutorFanOut() throws Throwable {
+		final CyclicBarrier barrier = new CyclicBarrier(2 * TASKS);
+		final List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+
+		for (int i = 0; i < TASKS; i++) {
+			tasks.add(new Callable<Boolean>() {
+				public Boolean call() throws Exception {
+					barrier.await(10, TimeUnit.SECONDS);
+					return true;
+				}
+			});
+		}
+
+		final List<Future<Boolean>> other = new ArrayList<Future<Boolean>>();
+		Thread thread = new Thread() {
+			public void run() {
+				try {
+					other.addAll(ProxyExecutor.invokeAll(tasks));
+				} catch (InterruptedException e) {
+					// Checked below.
+				}
+			}
+		};
+		thread.start();
+
+		for (Future<Boolean> result : ProxyExecutor.invokeAll(tasks))
+			Assert.assertTrue(result.get());
+
+		thread.join();
+		Assert.assertEquals(TASKS, other.size());
+		for (Future<Boolean> result : other)
+			Assert.assertTrue(result.get());
+	}
+}
@@ -0,0 +1,70 @@
+package put.unit.sync;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import put.atomicrmi.optsva.sync.Semaphore;
+import edu.umd.cs.mtc.MultithreadedTest;
+import edu.umd.cs.mtc.TestFramework;
+
+/**
+ * Threads waiting on a semaphore proceed as soon as there are enough permits
+ * for them, regardless of the threads waiting for more.
+ * 
+ * <pre>
+ * T1 acq(2)           ok
+ * T2 acq(1)   ok
+ * T3 acq(10)                  !
+ * T4        rel(1) rel(1) int(T3)
+ * </pre>
+ * 
+ * Checks whether T2 proceeds while T1 still waits, and whether an interrupted
+ * waiting thread gives up without taking permits.
+ */
+public class SemaphoreWakeups {
+	class Threads extends MultithreadedTest {
+
+		private final Semaphore semaphore = new Semaphore(0);
+
+		public void thread1() throws InterruptedException {
+			semaphore.acquire(2);
+			assertTick(2);
+		}
+
+		public void thread2() throws InterruptedException {
+			semaphore.acquire(1);
+			assertTick(1);
+		}
+
+		public void thread3() {
+			try {
+				semaphore.acquire(10);
+				fail("Acquired permits that were never released.");
+			} catch (InterruptedException e) {
+				assertTick(3);
+			}
+		}
+
+		public void thread4() {
+			waitForTick(1);
+			semaphore.release(1);
+
+			waitForTick(2);
+			semaphore.release(2);
+
+			waitForTick(3);
+			getThread(3).interrupt();
+		}
+
+		@Override
+		public void finish() {
+			Assert.assertEquals(0, semaphore.getAvailable());
+			Assert.assertFalse(semaphore.tryAcquire(1));
+		}
+	}
+
+	@Test
+	public void semaphoreWakeups() throws Throwable {
+		TestFramework.runOnce(new Threads());
+	}
+}
@@ -0,0 +1,155 @@
+package put.unit.sync;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import put.atomicrmi.optsva.sync.TransactionLock;
+import edu.umd.cs.mtc.MultithreadedTest;
+import edu.umd.cs.mtc.TestFramework;
+
+/**
+ * Transaction lock is held by transactions rather than threads.
+ * 
+ * <pre>
+ * T1 A lock         unlock
+ * T2 A      lock unlock
+ * T3 B      lock............ lock              force
+ * T4 C                           lock.................. ok
+ * T5 D                           lock........ !
+ * </pre>
+ * 
+ * Checks whether two threads of transaction A hold the lock together, whether
+ * B waits for A, whether an interrupted waiting thread gives up, and whether
+ * a forced unlock releases all the holds of B.
+ */
+public class TransactionLockOwnership {
+	class Threads extends MultithreadedTest {
+
+		private final TransactionLock lock = new TransactionLock(true);
+
+		public void thread1() throws InterruptedException {
+			lock.lock("A");
+			waitForTick(2);
+			Assert.assertEquals(1, lock.getHoldCount());
+			Assert.assertTrue(lock.unlock("A"));
+		}
+
+		public void thread2() throws InterruptedException {
+			waitForTick(1);
+			lock.lock("A");
+			Assert.assertEquals(2, lock.getHoldCount());
+			Assert.assertTrue(lock.unlock("A"));
+		}
+
+		public void thread3() throws InterruptedException {
+			waitForTick(1);
+			Assert.assertFalse(lock.tryLock("B"));
+			lock.lock("B");
+			assertTick(2);
+
+			lock.lock("B");
+			Assert.assertFalse(lock.unlock("A"));
+
+			waitForTick(4);
+			getThread(5).interrupt();
+
+			waitForTick(5);
+			Assert.assertTrue(lock.unlockForce("B"));
+		}
+
+		public void thread4() throws InterruptedException {
+			waitForTick(3);
+			lock.lock("C");
+			assertTick(5);
+			Assert.assertTrue(lock.isHeldBy("C"));
+			Assert.assertTrue(lock.unlock("C"));
+		}
+
+		public void thread5() {
+			waitForTick(3);
+			try {
+				lock.lock("D");
+				Assert.fail("Locked while another transaction held the lock.");
+			} catch (InterruptedException e) {
+				assertTick(4);
+			}
+		}
+
+		@Override
+		public void finish() {
+			Assert.assertFalse(lock.isLocked());
+			Assert.assertEquals(3, lock.getAcquisitions());
+			Assert.assertEquals(3, lock.getContentions());
+			Assert.assertTrue(lock.getMaxQueueLength() >= 1);
+			Assert.assertTrue(lock.getHoldTime() > 0);
+		}
+	}
+
+	@Test
+	public void transactionLockOwnership() throws Throwable {
+		TestFramework.runOnce(new Threads());
+	}
+
+	@Test
+	public void timedLock() throws Throwable {
+		final TransactionLock lock = new TransactionLock();
+		final boolean[] locked = new boolean[1];
+
+		lock.lock("A");
+		Thread thread = new Thread() {
+			public void run() {
+				try {
+					locked[0] = lock.tryLock("B", 20, TimeUnit.MILLISECONDS);
+				} catch (InterruptedException e) {
+					// Not locked.
+				}
+			}
+		};
+		thread.start();
+		thread.join();
+
+		Assert.assertFalse(locked[0]);
+		Assert.assertTrue(lock.unlockForce("A"));
+		Assert.assertTrue(lock.tryLock("B", 20, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void concurrentReentry() throws Throwable {
+		final TransactionLock lock = new TransactionLock();
+		final Throwable[] failure = new Throwable[1];
+
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+				public void run() {
+					try {
+						for (int j = 0; j < 100000; j++) {
+							lock.lock("T");
+							if (!lock.isHeldBy("T"))
+								throw new AssertionError("Locked without holding the lock.");
+							if (!lock.unlock("T"))
+								throw new AssertionError("Not unlocked by its transaction.");
+						}
+					} catch (Throwable e) {
+						failure[0] = e;
+					}
+				}
+			};
+			threads[i].start();
+		}
+
+		for (Thread thread : threads) {
+			thread.join(30000);
+			Assert.assertFalse("Transaction threads did not finish.", thread.isAlive());
+		}
+
+		if (failure[0] != null)
+			throw failure[0];
+
+		Assert.assertFalse(lock.isLocked());
+		Assert.assertEquals(0, lock.getHoldCount());
+		Assert.assertTrue(lock.tryLock("U"));
+	}
+}
@@ -0,0 +1,19 @@
+package put.unit.vars;
+
+import java.rmi.RemoteException;
+
+import put.atomicrmi.optsva.snapshots.FieldCopyStrategy;
+import put.atomicrmi.optsva.snapshots.SnapshotWith;
+
+/**
+ * Variable whose snapshots are taken by copying its fields.
+ */
+@SnapshotWith(FieldCopyStrategy.class)
+public class CopiedVariableImpl extends VariableImpl {
+
+	private static final long serialVersionUID = -1580573384541632129L;
+
+	public CopiedVariableImpl(String name, int value) throws RemoteException {
+		super(name, value);
+	}
+}
@@ -0,0 +1,27 @@
+package put.unit.vars;
+
+import java.rmi.RemoteException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Variable that counts the copies made of it.
+ */
+public class CountedVariableImpl extends VariableImpl {
+
+	private static final long serialVersionUID = -3075188514127394917L;
+	private final AtomicInteger copies = new AtomicInteger();
+
+	public CountedVariableImpl(String name, int value) throws RemoteException {
+		super(name, value);
+	}
+
+	@Override
+	public Object clone() throws CloneNotSupportedException {
+		copies.incrementAndGet();
+		return super.clone();
+	}
+
+	public int getCopies() {
+		return copies.get();
+	}
+}
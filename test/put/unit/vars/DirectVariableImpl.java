@@ -0,0 +1,19 @@
+package put.unit.vars;
+
+import java.rmi.RemoteException;
+
+import put.atomicrmi.optsva.snapshots.DirectSerializationStrategy;
+import put.atomicrmi.optsva.snapshots.SnapshotWith;
+
+/**
+ * Variable whose snapshots are serialized outside of the heap.
+ */
+@SnapshotWith(DirectSerializationStrategy.class)
+public class DirectVariableImpl extends VariableImpl {
+
+	private static final long serialVersionUID = 6118034551376402719L;
+
+	public DirectVariableImpl(String name, int value) throws RemoteException {
+		super(name, value);
+	}
+}
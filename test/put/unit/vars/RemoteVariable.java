@@ -0,0 +1,59 @@
+package put.unit.vars;
+
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.UUID;
+
+import put.atomicrmi.optsva.TransactionRef;
+import put.atomicrmi.optsva.TransactionalRemoteObject;
+import put.atomicrmi.optsva.Access.Mode;
+import put.atomicrmi.optsva.objects.ObjectProxy;
+import put.atomicrmi.optsva.sync.TransactionFailureMonitor;
+
+/**
+ * Variable that is not recognized as colocated by transactions. Every call is
+ * forwarded to the wrapped variable, so transactions get object proxies
+ * through RMI, just like for a variable placed on another node.
+ */
+public class RemoteVariable extends UnicastRemoteObject implements Variable, TransactionalRemoteObject {
+
+	private static final long serialVersionUID = -1808343593361519306L;
+	private final VariableImpl variable;
+
+	public RemoteVariable(VariableImpl variable) throws RemoteException {
+		this.variable = variable;
+	}
+
+	public UUID getUID() throws RemoteException {
+		return variable.getUID();
+	}
+
+	public ObjectProxy createProxy(TransactionRef transaction, UUID tid, long calls, long reads, long writes,
+			Mode mode) throws RemoteException {
+		return variable.createProxy(transaction, tid, calls, reads, writes, mode);
+	}
+
+	public ObjectProxy createUpdateProxy(TransactionRef transaction, UUID tid, long writes) throws RemoteException {
+		return variable.createUpdateProxy(transaction, tid, writes);
+	}
+
+	public TransactionFailureMonitor getFailureMonitor() throws RemoteException {
+		return variable.getFailureMonitor();
+	}
+
+	public int read() throws RemoteException {
+		return variable.read();
+	}
+
+	public void write(int v) throws RemoteException {
+		variable.write(v);
+	}
+
+	public void increment() throws RemoteException {
+		variable.increment();
+	}
+
+	public void add(int delta) throws RemoteException {
+		variable.add(delta);
+	}
+}
@@ -0,0 +1,44 @@
+package put.unit.vars;
+
+import java.lang.reflect.Method;
+import java.rmi.RemoteException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import put.atomicrmi.optsva.snapshots.Undoable;
+
+/**
+ * Variable rolled back by undoing writes. Counts the undone writes.
+ */
+public class UndoableVariableImpl extends VariableImpl implements Undoable {
+
+	private static final long serialVersionUID = 4436452716224810436L;
+	private final AtomicInteger undone = new AtomicInteger();
+
+	public UndoableVariableImpl(String name, int value) throws RemoteException {
+		super(name, value);
+	}
+
+	public Runnable inverse(Method method, Object[] args) {
+		if (method.getName().equals("add")) {
+			final int delta = (Integer) args[0];
+			return new Runnable() {
+				public void run() {
+					add(-delta);
+					undone.incrementAndGet();
+				}
+			};
+		}
+
+		final int old = read(null);
+		return new Runnable() {
+			public void run() {
+				write(null, old);
+				undone.incrementAndGet();
+			}
+		};
+	}
+
+	public int getUndone() {
+		return undone.get();
+	}
+}
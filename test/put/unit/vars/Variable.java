@@ -5,6 +5,8 @@ import java.rmi.RemoteException;
 
 import put.atomicrmi.optsva.Access;
 import put.atomicrmi.optsva.Access.Mode;
+import put.atomicrmi.optsva.Commutative;
+import put.atomicrmi.optsva.Overwrites;
 
 public interface Variable extends Remote {
 
@@ -12,9 +14,13 @@ public interface Variable extends Remote {
 	int read() throws RemoteException;
 
 	@Access(Mode.WRITE_ONLY)
+	@Overwrites
 	void write(int v) throws RemoteException;
 
 	@Access(Mode.ANY)
 	void increment() throws RemoteException;
 
+	@Commutative
+	void add(int delta) throws RemoteException;
+
 }
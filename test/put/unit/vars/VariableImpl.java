@@ -7,6 +7,7 @@ import static put.atomicrmi.optsva.Access.Mode.WRITE_ONLY;
 import java.rmi.RemoteException;
 
 import put.atomicrmi.optsva.Access;
+import put.atomicrmi.optsva.Commutative;
 import put.atomicrmi.optsva.objects.TransactionalUnicastRemoteObject;
 
 public class VariableImpl extends TransactionalUnicastRemoteObject implements Variable, Cloneable {
@@ -74,4 +75,9 @@ public class VariableImpl extends TransactionalUnicastRemoteObject implements Va
 	public void increment() throws RemoteException {
 		write(read() + 1);
 	}
+
+	@Commutative
+	public void add(int delta) {
+		this.value += delta;
+	}
 }
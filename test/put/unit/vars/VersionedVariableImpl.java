@@ -0,0 +1,18 @@
+package put.unit.vars;
+
+import java.rmi.RemoteException;
+
+import put.atomicrmi.optsva.Versioned;
+
+/**
+ * Variable keeping its last two committed versions.
+ */
+@Versioned(2)
+public class VersionedVariableImpl extends VariableImpl {
+
+	private static final long serialVersionUID = 2804387716150452349L;
+
+	public VersionedVariableImpl(String name, int value) throws RemoteException {
+		super(name, value);
+	}
+}
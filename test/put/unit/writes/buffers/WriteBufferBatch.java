@@ -0,0 +1,159 @@
+package put.unit.writes.buffers;
+
+import java.io.ByteArrayOutputStream;
+import java.rmi.RemoteException;
+import java.rmi.server.RemoteServer;
+import java.rmi.server.UnicastRemoteObject;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import put.atomicrmi.optsva.Transaction;
+import put.atomicrmi.optsva.sync.Heartbeat;
+import put.atomicrmi.optsva.sync.TaskController;
+import put.atomicrmi.optsva.sync.TransactionFailureMonitorImpl;
+import put.unit.RMITest;
+import put.unit.vars.RemoteVariable;
+import put.unit.vars.Variable;
+import put.unit.vars.VariableImpl;
+import edu.umd.cs.mtc.MultithreadedTest;
+import edu.umd.cs.mtc.TestFramework;
+
+/**
+ * Buffered writes of a transaction to a variable that is not colocated with
+ * it.
+ *
+ * <pre>
+ * T1 [ w(r)1 w(r)2 w(r)3 r(r)3 ]
+ * </pre>
+ *
+ * Checks whether the writes preceding the first read are sent to the object
+ * proxy in a single remote call, and whether the read sees the last of them.
+ * 
+ * <pre>
+ * T2 [ w(r)4 w(r)5 !
+ * </pre>
+ * 
+ * Checks whether the writes of a transaction that rolls back before reading
+ * are never sent to the object proxy.
+ */
+public class WriteBufferBatch extends RMITest {
+
+	/**
+	 * Remote calls received by this JVM.
+	 */
+	private final ByteArrayOutputStream calls = new ByteArrayOutputStream();
+
+	private int count(String method) {
+		String log = calls.toString();
+		int count = 0;
+		for (int i = log.indexOf(method); i >= 0; i = log.indexOf(method, i + 1))
+			count++;
+		return count;
+	}
+
+	class Threads extends MultithreadedTest {
+
+		public void thread1() {
+			Transaction t = null;
+			try {
+				t = new Transaction();
+				Variable r = t.accesses((Variable) registry.lookup("r"));
+
+				t.start();
+
+				RemoteServer.setLog(calls);
+				r.write(1);
+				r.write(2);
+				r.write(3);
+				Assert.assertEquals(3, r.read());
+				RemoteServer.setLog(null);
+
+				Assert.assertEquals(1, count("ObjectProxy.invokeAll("));
+				Assert.assertEquals(1, count("ObjectProxy.invoke("));
+
+				t.commit();
+			} catch (Exception e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+
+			waitForTick(99);
+			try {
+				TransactionFailureMonitorImpl.getInstance().emergencyStop();
+				TaskController.emergencyStop();
+				Heartbeat.emergencyStop();
+			} catch (RemoteException e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+		}
+	}
+
+	class Rollback extends MultithreadedTest {
+
+		public void thread1() {
+			Transaction t = null;
+			try {
+				t = new Transaction();
+				Variable r = t.accesses((Variable) registry.lookup("r"));
+
+				t.start();
+
+				RemoteServer.setLog(calls);
+				r.write(4);
+				r.write(5);
+				t.rollback();
+				RemoteServer.setLog(null);
+
+				Assert.assertEquals(0, count("ObjectProxy.invokeAll("));
+				Assert.assertEquals(0, count("ObjectProxy.invoke("));
+			} catch (Exception e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+
+			waitForTick(99);
+			try {
+				TransactionFailureMonitorImpl.getInstance().emergencyStop();
+				TaskController.emergencyStop();
+				Heartbeat.emergencyStop();
+			} catch (RemoteException e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+		}
+	}
+
+	@Test
+	public void writeBufferBatch() throws Throwable {
+		VariableImpl r = new VariableImpl("r", 0);
+		registry.bind("r", UnicastRemoteObject.toStub(new RemoteVariable(r)));
+		try {
+			TaskController.emergencyStart();
+			Heartbeat.emergencyStart();
+			TestFramework.runOnce(new Threads());
+
+			Assert.assertEquals(3, r.read());
+		} finally {
+			RemoteServer.setLog(null);
+			registry.unbind("r");
+		}
+	}
+
+	@Test
+	public void writeBufferRollback() throws Throwable {
+		VariableImpl r = new VariableImpl("r", 0);
+		registry.bind("r", UnicastRemoteObject.toStub(new RemoteVariable(r)));
+		try {
+			TaskController.emergencyStart();
+			Heartbeat.emergencyStart();
+			TestFramework.runOnce(new Rollback());
+
+			Assert.assertEquals(0, r.read());
+		} finally {
+			RemoteServer.setLog(null);
+			registry.unbind("r");
+		}
+	}
+}
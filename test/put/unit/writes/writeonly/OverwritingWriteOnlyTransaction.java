@@ -0,0 +1,72 @@
+package put.unit.writes.writeonly;
+
+import java.rmi.RemoteException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import put.atomicrmi.optsva.Transaction;
+import put.atomicrmi.optsva.Update;
+import put.atomicrmi.optsva.sync.Heartbeat;
+import put.atomicrmi.optsva.sync.TaskController;
+import put.atomicrmi.optsva.sync.TransactionFailureMonitorImpl;
+import put.unit.RMITest;
+import put.unit.vars.Variable;
+import edu.umd.cs.mtc.MultithreadedTest;
+import edu.umd.cs.mtc.TestFramework;
+
+/**
+ * Single write-only transaction overwriting a variable several times. Only the
+ * last write to x is applied, since the write method is annotated with
+ * {@link put.atomicrmi.optsva.Overwrites}.
+ * 
+ * <pre>
+ * T1 [  w(x)1 w(y)1 w(x)2 w(x)3  ]
+ * </pre>
+ */
+public class OverwritingWriteOnlyTransaction extends RMITest {
+	class Threads extends MultithreadedTest {
+
+		public void thread1() {
+			Transaction t = null;
+			try {
+				t = new Update();
+				Variable x = t.accesses((Variable) registry.lookup("x"));
+				Variable y = t.accesses((Variable) registry.lookup("y"));
+
+				t.start();
+
+				x.write(1);
+				y.write(1);
+				x.write(2);
+				x.write(3);
+
+				t.commit();
+
+			} catch (Exception e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			} 
+
+			waitForTick(99);
+			try {
+				TransactionFailureMonitorImpl.getInstance().emergencyStop();
+				TaskController.emergencyStop();
+				Heartbeat.emergencyStop();
+			} catch (RemoteException e) {
+				e.printStackTrace();
+				throw new RuntimeException(e.getMessage(), e.getCause());
+			}
+		}
+	}
+
+	@Test
+	public void overwritingWriteOnlyTransaction() throws Throwable {
+		TaskController.emergencyStart();
+		Heartbeat.emergencyStart();
+		TestFramework.runOnce(new Threads());
+
+		Assert.assertEquals(3, state("x"));
+		Assert.assertEquals(1, state("y"));
+	}
+}